@@ -98,16 +98,24 @@ public abstract class ByteBufferPool {
      */
     public static final ByteBufferPool SMALL_HEAP = create(SMALL_SIZE, false);
 
+    // intermediate pools of 16, 32 and 64 KiB buffers, always sliced from large buffers
+    static final int INTERMEDIATE_MIN_SHIFT = 14;
+    static final int INTERMEDIATE_MAX_SHIFT = 16;
+    private static final ByteBufferPool[] INTERMEDIATE_DIRECT = intermediatePools(LARGE_DIRECT);
+    private static final ByteBufferPool[] INTERMEDIATE_HEAP = intermediatePools(LARGE_HEAP);
+
     /**
      * A set of buffer pools for each size, which can either be {@link #DIRECT} or {@link #HEAP}.
      */
     public static final class Set {
         private final ByteBufferPool small, normal, large;
+        private final ByteBufferPool[] intermediate;
 
-        Set(final ByteBufferPool small, final ByteBufferPool normal, final ByteBufferPool large) {
+        Set(final ByteBufferPool small, final ByteBufferPool normal, final ByteBufferPool large, final ByteBufferPool[] intermediate) {
             this.small = small;
             this.normal = normal;
             this.large = large;
+            this.intermediate = intermediate;
         }
 
         /**
@@ -137,14 +145,24 @@ public abstract class ByteBufferPool {
             return large;
         }
 
+        /**
+         * Get the pools of buffers between the medium and large sizes for this set, in increasing order of size.  These
+         * pools produce buffers of 16, 32 and 64 KiB, sliced from large buffers.
+         *
+         * @return the intermediate buffer pools for this set
+         */
+        public ByteBufferPool[] getIntermediate() {
+            return intermediate.clone();
+        }
+
         /**
          * The direct buffer source set.
          */
-        public static final Set DIRECT = new Set(SMALL_DIRECT, MEDIUM_DIRECT, LARGE_DIRECT);
+        public static final Set DIRECT = new Set(SMALL_DIRECT, MEDIUM_DIRECT, LARGE_DIRECT, INTERMEDIATE_DIRECT);
         /**
          * The heap buffer source set.
          */
-        public static final Set HEAP = new Set(SMALL_HEAP, MEDIUM_HEAP, LARGE_HEAP);
+        public static final Set HEAP = new Set(SMALL_HEAP, MEDIUM_HEAP, LARGE_HEAP, INTERMEDIATE_HEAP);
     }
 
     /**
@@ -227,6 +245,8 @@ public abstract class ByteBufferPool {
                         SMALL_DIRECT.doFree(buffer);
                     } else if (size == LARGE_SIZE) {
                         LARGE_DIRECT.doFree(buffer);
+                    } else if (isIntermediate(size)) {
+                        INTERMEDIATE_DIRECT[intermediateIndex(size)].doFree(buffer);
                     }
                 }
             } else {
@@ -236,6 +256,8 @@ public abstract class ByteBufferPool {
                     SMALL_HEAP.doFree(buffer);
                 } else if (size == LARGE_SIZE) {
                     LARGE_HEAP.doFree(buffer);
+                } else if (isIntermediate(size)) {
+                    INTERMEDIATE_HEAP[intermediateIndex(size)].doFree(buffer);
                 }
             }
         }
@@ -266,6 +288,8 @@ public abstract class ByteBufferPool {
                             SMALL_DIRECT.doFree(buffer);
                         } else if (size == LARGE_SIZE) {
                             LARGE_DIRECT.doFree(buffer);
+                        } else if (isIntermediate(size)) {
+                            INTERMEDIATE_DIRECT[intermediateIndex(size)].doFree(buffer);
                         }
                     }
                 } else {
@@ -275,6 +299,8 @@ public abstract class ByteBufferPool {
                         SMALL_HEAP.doFree(buffer);
                     } else if (size == LARGE_SIZE) {
                         LARGE_HEAP.doFree(buffer);
+                    } else if (isIntermediate(size)) {
+                        INTERMEDIATE_HEAP[intermediateIndex(size)].doFree(buffer);
                     }
                 }
             }
@@ -347,6 +373,22 @@ public abstract class ByteBufferPool {
         };
     }
 
+    static ByteBufferPool[] intermediatePools(final ByteBufferPool large) {
+        final ByteBufferPool[] pools = new ByteBufferPool[INTERMEDIATE_MAX_SHIFT - INTERMEDIATE_MIN_SHIFT + 1];
+        for (int i = 0; i < pools.length; i ++) {
+            pools[i] = subPool(large, 1 << INTERMEDIATE_MIN_SHIFT + i);
+        }
+        return pools;
+    }
+
+    static boolean isIntermediate(final int size) {
+        return size >= 1 << INTERMEDIATE_MIN_SHIFT && size <= 1 << INTERMEDIATE_MAX_SHIFT;
+    }
+
+    static int intermediateIndex(final int size) {
+        return Integer.numberOfTrailingZeros(size) - INTERMEDIATE_MIN_SHIFT;
+    }
+
     abstract ByteBuffer createBuffer();
 
     final void doFree(final ByteBuffer buffer) {
@@ -0,0 +1,48 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2017 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xnio;
+
+/**
+ * Strategies for choosing the I/O thread of a new channel.
+ */
+public enum IoThreadSelection {
+    /**
+     * Pick a thread at random.
+     */
+    RANDOM,
+    /**
+     * Cycle through the threads in order.
+     */
+    ROUND_ROBIN,
+    /**
+     * Pick the thread with the fewest registered channels.
+     */
+    LEAST_KEYS,
+    /**
+     * Pick two threads at random and use the less loaded one, counting both registered channels and queued work.
+     */
+    TWO_CHOICES,
+    /**
+     * Keep accepted connections which arrive through the same network device queue on the same thread, using the
+     * queue's Linux NAPI ID.  Connections without an ID, such as loopback connections, and outbound channels are
+     * placed as if no strategy were configured.
+     */
+    NAPI_ID,
+    ;
+}
@@ -75,6 +75,14 @@ public final class Options {
      */
     public static final Option<Boolean> REUSE_ADDRESSES = Option.simple(Options.class, "REUSE_ADDRESSES", Boolean.class);
 
+    /**
+     * Configure a TCP server to bind several listening sockets to the same address and port, one per I/O thread, so
+     * that the operating system spreads incoming connections among them and each thread accepts its own.  Only
+     * honored where the platform supports {@code SO_REUSEPORT}; otherwise a single listening socket is used.  The
+     * value type for this option is {@code boolean}.
+     */
+    public static final Option<Boolean> REUSE_PORT = Option.simple(Options.class, "REUSE_PORT", Boolean.class);
+
     /**
      * The send buffer size.  The value type for this option is {@code int}.  This may be used by an XNIO provider
      * directly, or it may be passed to the underlying operating system, depending on the channel type.  Buffer
@@ -111,17 +119,55 @@ public final class Options {
      */
     public static final Option<Boolean> KEEP_ALIVE = Option.simple(Options.class, "KEEP_ALIVE", Boolean.class);
 
+    /**
+     * Configure the number of seconds a TCP connection must be idle before keep-alive probes are sent, when
+     * {@link #KEEP_ALIVE} is enabled.  This option, like the other extended TCP options below, is only honored where
+     * the platform supports it and is otherwise ignored.
+     */
+    public static final Option<Integer> TCP_KEEPIDLE = Option.simple(Options.class, "TCP_KEEPIDLE", Integer.class);
+
+    /**
+     * Configure the number of seconds between TCP keep-alive probes.
+     */
+    public static final Option<Integer> TCP_KEEPINTERVAL = Option.simple(Options.class, "TCP_KEEPINTERVAL", Integer.class);
+
+    /**
+     * Configure the number of unanswered TCP keep-alive probes after which the connection is considered dead.
+     */
+    public static final Option<Integer> TCP_KEEPCOUNT = Option.simple(Options.class, "TCP_KEEPCOUNT", Integer.class);
+
+    /**
+     * Configure a TCP socket to acknowledge received data immediately instead of delaying the acknowledgement.  The
+     * operating system may fall back to delayed acknowledgements on its own, so this is a hint.
+     */
+    public static final Option<Boolean> TCP_QUICKACK = Option.simple(Options.class, "TCP_QUICKACK", Boolean.class);
+
     /**
      * Configure a server with the specified backlog.  The value type for this option is {@code int}.
      */
     public static final Option<Integer> BACKLOG = Option.simple(Options.class, "BACKLOG", Integer.class);
 
+    /**
+     * Configure the maximum number of connections a server accepts each time its listening socket becomes ready.
+     * Larger batches drain bursts of connections with fewer wakeups of the threads the connections are handed to.
+     * The value type for this option is {@code int}.
+     */
+    public static final Option<Integer> ACCEPT_BATCH_SIZE = Option.simple(Options.class, "ACCEPT_BATCH_SIZE", Integer.class);
+
     /**
      * Configure a read timeout for a socket, in milliseconds.  If the given amount of time elapses without
      * a successful read taking place, the socket's next read will throw a {@link ReadTimeoutException}.
      */
     public static final Option<Integer> READ_TIMEOUT = Option.simple(Options.class, "READ_TIMEOUT", Integer.class);
 
+    /**
+     * Configure an idle timeout for a connection, in milliseconds.  If the given amount of time elapses without any
+     * data being read or written, the connection is closed, whether or not the application is currently reading or
+     * writing.  Idle time is measured at a coarse interval, so a connection may stay open for somewhat longer than the
+     * timeout.
+     */
+    public static final Option<Integer> IDLE_TIMEOUT = Option.simple(Options.class, "IDLE_TIMEOUT", Integer.class);
+
     /**
      * Configure a write timeout for a socket, in milliseconds.  If the given amount of time elapses without
      * a successful write taking place, the socket's next write will throw a {@link WriteTimeoutException}.
@@ -467,6 +513,22 @@ public final class Options {
      */
     public static final Option<Integer> WORKER_IO_THREADS = Option.simple(Options.class, "WORKER_IO_THREADS", Integer.class);
 
+    /**
+     * Specify the maximum number of microseconds an I/O thread may spend polling for events and tasks before it blocks.
+     * Spinning avoids the cost of a wakeup at the expense of CPU time; the actual spin time adapts to how often it
+     * finds work.  If not specified or zero, I/O threads block as soon as they run out of work.
+     */
+    public static final Option<Integer> WORKER_IO_SPIN_TIME = Option.simple(Options.class, "WORKER_IO_SPIN_TIME", Integer.class);
+
+    /**
+     * Specify how the worker chooses the I/O thread of a new channel, including connections accepted by its servers.
+     * If not specified, outbound channels are assigned to random threads and accepted connections are spread by a hash
+     * of their addresses.
+     *
+     * @see IoThreadSelection
+     */
+    public static final Option<IoThreadSelection> WORKER_IO_THREAD_SELECTION = Option.simple(Options.class, "WORKER_IO_THREAD_SELECTION", IoThreadSelection.class);
+
     /**
      * Specify the number of I/O threads to devote to reading for split thread channels.  If not specified, a default will be chosen to be
      * roughly half of the worker I/O threads, or the number of threads not specified for writing.
@@ -531,6 +593,14 @@ public final class Options {
      */
     public static final Option<Boolean> CORK = Option.simple(Options.class, "CORK", Boolean.class);
 
+    /**
+     * Specify that small writes made from a connection's I/O thread should be gathered and written to the socket
+     * together once the thread has finished its current round of work, or sooner if enough data has accumulated.  Data
+     * which cannot be written to the socket right away is written when it becomes writable.  An explicit
+     * {@link SuspendableWriteChannel#flush()} will still cause the gathered data to be written immediately.
+     */
+    public static final Option<Boolean> WRITE_COALESCING = Option.simple(Options.class, "WRITE_COALESCING", Boolean.class);
+
     /**
      * The high water mark for a server's connections.  Once this number of connections have been accepted, accepts
      * will be suspended for that server.
@@ -543,6 +613,33 @@ public final class Options {
      */
     public static final Option<Integer> CONNECTION_LOW_WATER = Option.simple(Options.class, "CONNECTION_LOW_WATER", Integer.class);
 
+    /**
+     * The high water mark for data buffered by a sink channel's conduits, in bytes.  Once a write leaves at least
+     * this much data buffered, the channel is no longer writable and its writability listener is called.  Set on a
+     * {@link org.xnio.conduits.ConduitStreamSinkChannel}; zero or less disables tracking.
+     */
+    public static final Option<Integer> WRITE_HIGH_WATER = Option.simple(Options.class, "WRITE_HIGH_WATER", Integer.class);
+
+    /**
+     * The low water mark for data buffered by a sink channel's conduits, in bytes.  Once a write or flush leaves no
+     * more than this much data buffered, a channel which was not writable becomes writable again and its writability
+     * listener is called.  Defaults to half the high water mark.
+     */
+    public static final Option<Integer> WRITE_LOW_WATER = Option.simple(Options.class, "WRITE_LOW_WATER", Integer.class);
+
+    /**
+     * The maximum rate, in connections per second, at which a server accepts new connections.  Connections arriving
+     * faster are left in the listen backlog while accepting is briefly suspended.  If not specified or zero, the rate
+     * is not limited.
+     */
+    public static final Option<Integer> ACCEPT_RATE_LIMIT = Option.simple(Options.class, "ACCEPT_RATE_LIMIT", Integer.class);
+
+    /**
+     * The number of connections a server may accept in a burst above its {@linkplain #ACCEPT_RATE_LIMIT accept rate
+     * limit}.  If not specified, one second's worth of connections may be accepted at once.
+     */
+    public static final Option<Integer> ACCEPT_RATE_BURST = Option.simple(Options.class, "ACCEPT_RATE_BURST", Integer.class);
+
     /**
      * The compression level to apply for compressing streams and channels.
      */
@@ -23,6 +23,7 @@ import org.xnio.conduits.ConduitStreamSinkChannel;
 import org.xnio.conduits.ConduitStreamSourceChannel;
 import org.xnio.conduits.StreamSinkConduit;
 import org.xnio.conduits.StreamSourceConduit;
+import org.xnio.management.ConnectionStatistics;
 
 import static org.xnio._private.Messages.msg;
 
@@ -104,4 +105,13 @@ public abstract class StreamConnection extends Connection implements CloseListen
     public ConduitStreamSinkChannel getSinkChannel() {
         return notNull(sinkChannel);
     }
+
+    /**
+     * Get the I/O statistics of this connection.  The default implementation returns {@code null}.
+     *
+     * @return the statistics, or {@code null} if this connection does not keep any
+     */
+    public ConnectionStatistics getStatistics() {
+        return null;
+    }
 }
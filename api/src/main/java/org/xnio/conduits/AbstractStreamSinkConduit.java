@@ -28,7 +28,7 @@ import org.xnio.channels.StreamSourceChannel;
  *
  * @author <a href="mailto:david.lloyd@redhat.com">David M. Lloyd</a>
  */
-public abstract class AbstractStreamSinkConduit<D extends StreamSinkConduit> extends AbstractSinkConduit<D> implements StreamSinkConduit {
+public abstract class AbstractStreamSinkConduit<D extends StreamSinkConduit> extends AbstractSinkConduit<D> implements StreamSinkConduit, BufferingSinkConduit {
 
     /**
      * Construct a new instance.
@@ -43,6 +43,10 @@ public abstract class AbstractStreamSinkConduit<D extends StreamSinkConduit> ext
         return next.transferFrom(src, position, count);
     }
 
+    public long getBufferedByteCount() {
+        return Conduits.getBufferedByteCount(next);
+    }
+
     public long transferFrom(final StreamSourceChannel source, final long count, final ByteBuffer throughBuffer) throws IOException {
         return next.transferFrom(source, count, throughBuffer);
     }
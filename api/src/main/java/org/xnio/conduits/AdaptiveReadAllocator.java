@@ -0,0 +1,241 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2017 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xnio.conduits;
+
+import static org.xnio._private.Messages.msg;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+import org.xnio.Buffers;
+import org.xnio.ByteBufferPool;
+
+/**
+ * An allocator of read buffers for a single connection, which picks the size of each buffer from a
+ * {@link ByteBufferPool.Set} based on the sizes of the connection's recent reads.  The sizes are the set's small and
+ * medium sizes and its {@linkplain ByteBufferPool.Set#getIntermediate() intermediate} sizes of 16, 32 and 64 KiB; a
+ * single read rarely returns more than a socket receive buffer holds, so large buffers are never used.  A read which
+ * fills its buffer moves the next read up to the next larger size; two reads in a row which would have fit in the next
+ * smaller size move it down.  So a connection which mostly receives small messages does not hold a medium buffer for
+ * each of them, and a bulk transfer is read in bigger pieces.
+ * <p>
+ * The allocator is opt-in: a read listener which hands each buffer of data on, rather than reading into a buffer it
+ * keeps, creates one allocator for its connection and reads through it:
+ * <pre>{@code
+ * final AdaptiveReadAllocator allocator = new AdaptiveReadAllocator();
+ * channel.getReadSetter().set(ch -> {
+ *     try {
+ *         ByteBuffer buffer;
+ *         while ((buffer = allocator.read(ch)) != null) {
+ *             if (! buffer.hasRemaining()) {
+ *                 // end of stream
+ *                 IoUtils.safeClose(ch);
+ *                 return;
+ *             }
+ *             handler.handle(buffer); // frees the buffer when it is done with it
+ *         }
+ *     } catch (IOException e) {
+ *         IoUtils.safeClose(ch);
+ *     }
+ * });
+ * }</pre>
+ * <p>
+ * Like the connection it serves, an instance must not be used by more than one thread at a time.
+ */
+public final class AdaptiveReadAllocator {
+
+    private static final int SMALL = 0;
+    private static final int NORMAL = 1;
+
+    private final ByteBufferPool[] pools;
+    private final long[] readCounts;
+    private long fullReadCount;
+    private int index = NORMAL;
+    private boolean shrinkNext;
+
+    /**
+     * Construct a new instance.
+     *
+     * @param pools the buffer pools to allocate from (must not be {@code null})
+     */
+    public AdaptiveReadAllocator(final ByteBufferPool.Set pools) {
+        if (pools == null) {
+            throw msg.nullParameter("pools");
+        }
+        final ByteBufferPool[] intermediate = pools.getIntermediate();
+        this.pools = new ByteBufferPool[2 + intermediate.length];
+        this.pools[SMALL] = pools.getSmall();
+        this.pools[NORMAL] = pools.getNormal();
+        System.arraycopy(intermediate, 0, this.pools, 2, intermediate.length);
+        readCounts = new long[this.pools.length];
+    }
+
+    /**
+     * Construct a new instance which allocates direct buffers.
+     */
+    public AdaptiveReadAllocator() {
+        this(ByteBufferPool.Set.DIRECT);
+    }
+
+    /**
+     * Get the pool which the next buffer will be allocated from.
+     *
+     * @return the pool for the predicted read size
+     */
+    public ByteBufferPool getPool() {
+        return pools[index];
+    }
+
+    /**
+     * Allocate a buffer for the next read.  The buffer must be freed through {@link ByteBufferPool#free(ByteBuffer)},
+     * and the number of bytes read into it passed to {@link #record(int)} before the next buffer is allocated.
+     *
+     * @return the allocated buffer
+     */
+    public ByteBuffer allocate() {
+        return pools[index].allocate();
+    }
+
+    /**
+     * Record the number of bytes read into the most recently allocated buffer.
+     *
+     * @param bytesRead the number of bytes read; reads which returned no data are ignored
+     */
+    public void record(final int bytesRead) {
+        if (bytesRead <= 0) {
+            return;
+        }
+        final int index = this.index;
+        readCounts[index] ++;
+        if (bytesRead >= pools[index].getSize()) {
+            fullReadCount ++;
+            if (index < pools.length - 1) {
+                this.index = index + 1;
+            }
+            shrinkNext = false;
+        } else if (index > SMALL && bytesRead <= pools[index - 1].getSize()) {
+            if (shrinkNext) {
+                this.index = index - 1;
+                shrinkNext = false;
+            } else {
+                shrinkNext = true;
+            }
+        } else {
+            shrinkNext = false;
+        }
+    }
+
+    /**
+     * Read from a conduit into a buffer of the predicted size.
+     *
+     * @param conduit the conduit to read from
+     * @return the flipped buffer holding the data read, which must be freed through
+     *      {@link ByteBufferPool#free(ByteBuffer)}; {@code null} if no data was available; or an empty buffer if the
+     *      end of the stream was reached
+     * @throws IOException if the read fails
+     */
+    public ByteBuffer read(final StreamSourceConduit conduit) throws IOException {
+        final ByteBuffer buffer = allocate();
+        boolean ok = false;
+        try {
+            final int res = conduit.read(buffer);
+            if (res > 0) {
+                record(res);
+                buffer.flip();
+                ok = true;
+                return buffer;
+            }
+            return res == 0 ? null : Buffers.EMPTY_BYTE_BUFFER;
+        } finally {
+            if (! ok) ByteBufferPool.free(buffer);
+        }
+    }
+
+    /**
+     * Read from a channel into a buffer of the predicted size.
+     *
+     * @param channel the channel to read from
+     * @return the flipped buffer holding the data read, which must be freed through
+     *      {@link ByteBufferPool#free(ByteBuffer)}; {@code null} if no data was available; or an empty buffer if the
+     *      end of the stream was reached
+     * @throws IOException if the read fails
+     */
+    public ByteBuffer read(final ReadableByteChannel channel) throws IOException {
+        final ByteBuffer buffer = allocate();
+        boolean ok = false;
+        try {
+            final int res = channel.read(buffer);
+            if (res > 0) {
+                record(res);
+                buffer.flip();
+                ok = true;
+                return buffer;
+            }
+            return res == 0 ? null : Buffers.EMPTY_BYTE_BUFFER;
+        } finally {
+            if (! ok) ByteBufferPool.free(buffer);
+        }
+    }
+
+    /**
+     * Get the number of reads which returned data into a small buffer.
+     *
+     * @return the number of small reads
+     */
+    public long getSmallReadCount() {
+        return readCounts[SMALL];
+    }
+
+    /**
+     * Get the number of reads which returned data into a medium buffer.
+     *
+     * @return the number of medium reads
+     */
+    public long getNormalReadCount() {
+        return readCounts[NORMAL];
+    }
+
+    /**
+     * Get the number of reads which returned data into a buffer larger than a medium one.
+     *
+     * @return the number of large reads
+     */
+    public long getLargeReadCount() {
+        long count = 0L;
+        for (int i = NORMAL + 1; i < readCounts.length; i ++) {
+            count += readCounts[i];
+        }
+        return count;
+    }
+
+    /**
+     * Get the number of reads which filled their buffer, and so may have been split into more reads than needed.
+     *
+     * @return the number of full reads
+     */
+    public long getFullReadCount() {
+        return fullReadCount;
+    }
+
+    public String toString() {
+        return String.format("%s (small=%d normal=%d large=%d full=%d, next %d bytes)", super.toString(), Long.valueOf(readCounts[SMALL]),
+            Long.valueOf(readCounts[NORMAL]), Long.valueOf(getLargeReadCount()), Long.valueOf(fullReadCount), Integer.valueOf(pools[index].getSize()));
+    }
+}
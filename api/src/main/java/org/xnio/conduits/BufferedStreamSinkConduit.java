@@ -151,7 +151,9 @@ public final class BufferedStreamSinkConduit extends AbstractStreamSinkConduit<S
                 buffer.flip();
                 try {
                     for (;;) {
-                        super.write(buffer);
+                        if (super.write(buffer) == 0) {
+                            return false;
+                        }
                         if (! buffer.hasRemaining()) {
                             if (terminate) {
                                 pooledBuffer.free();
@@ -186,6 +188,16 @@ public final class BufferedStreamSinkConduit extends AbstractStreamSinkConduit<S
         return flushLocal() && super.flush();
     }
 
+    public long getBufferedByteCount() {
+        long count;
+        try {
+            count = pooledBuffer.getResource().position();
+        } catch (IllegalStateException ignored) {
+            count = 0L;
+        }
+        return count + super.getBufferedByteCount();
+    }
+
     public void truncateWrites() throws IOException {
         pooledBuffer.free();
         super.truncateWrites();
@@ -0,0 +1,36 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2017 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xnio.conduits;
+
+/**
+ * A sink conduit which can report how much written data it is holding.  This is what the write water marks of a
+ * {@link ConduitStreamSinkChannel} are measured against.
+ *
+ * @see org.xnio.Options#WRITE_HIGH_WATER
+ */
+public interface BufferingSinkConduit extends SinkConduit {
+
+    /**
+     * Get the number of bytes which have been written to this conduit, or to the conduits it writes to, but have not
+     * yet been passed on to the underlying transport.
+     *
+     * @return the number of buffered bytes
+     */
+    long getBufferedByteCount();
+}
@@ -23,7 +23,9 @@ import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.util.concurrent.TimeUnit;
 import org.xnio.ChannelListener;
+import org.xnio.ChannelListeners;
 import org.xnio.Option;
+import org.xnio.Options;
 import org.xnio.XnioExecutor;
 import org.xnio.XnioIoThread;
 import org.xnio.XnioWorker;
@@ -44,6 +46,10 @@ public final class ConduitStreamSinkChannel implements StreamSinkChannel, WriteL
     private StreamSinkConduit conduit;
     private ChannelListener<? super ConduitStreamSinkChannel> writeListener;
     private ChannelListener<? super ConduitStreamSinkChannel> closeListener;
+    private ChannelListener<? super ConduitStreamSinkChannel> writabilityListener;
+    private int writeHighWater;
+    private int writeLowWater = -1;
+    private boolean writable = true;
 
     /**
      * Construct a new instance.
@@ -91,6 +97,62 @@ public final class ConduitStreamSinkChannel implements StreamSinkChannel, WriteL
         this.closeListener = closeListener;
     }
 
+    /**
+     * Get the listener which is called when this channel's writability changes.
+     *
+     * @return the writability listener
+     * @see #isWritable()
+     */
+    public ChannelListener<? super ConduitStreamSinkChannel> getWritabilityListener() {
+        return writabilityListener;
+    }
+
+    /**
+     * Set the listener which is called when this channel's writability changes.  The listener is called by the
+     * write or flush operation which moves the amount of buffered data past one of the
+     * {@linkplain Options#WRITE_HIGH_WATER write water marks}.
+     *
+     * @param writabilityListener the writability listener
+     * @see #isWritable()
+     */
+    public void setWritabilityListener(final ChannelListener<? super ConduitStreamSinkChannel> writabilityListener) {
+        this.writabilityListener = writabilityListener;
+    }
+
+    /**
+     * Determine whether the data buffered by this channel's conduits is within the {@link Options#WRITE_HIGH_WATER}
+     * mark.  A producer which sees {@code false} here should stop generating data, and keep flushing until the
+     * writability listener reports that the buffered data has dropped to the {@link Options#WRITE_LOW_WATER} mark.
+     * Buffered data is only counted by conduits which are {@link BufferingSinkConduit}s.
+     *
+     * @return {@code true} if the channel is writable, {@code false} if too much data is buffered
+     */
+    public boolean isWritable() {
+        return writable;
+    }
+
+    private void checkWritability() {
+        final int high = writeHighWater;
+        final long buffered = Conduits.getBufferedByteCount(conduit);
+        if (writable) {
+            if (buffered >= high) {
+                writable = false;
+                ChannelListeners.invokeChannelListener(this, writabilityListener);
+            }
+        } else {
+            if (buffered <= Math.min(getWriteLowWater(), high)) {
+                writable = true;
+                ChannelListeners.invokeChannelListener(this, writabilityListener);
+            }
+        }
+    }
+
+    private int getWriteLowWater() {
+        final int low = writeLowWater;
+        // a negative low water mark is replaced by the default
+        return low < 0 ? writeHighWater >> 1 : low;
+    }
+
     public ChannelListener.Setter<ConduitStreamSinkChannel> getWriteSetter() {
         return new WriteListenerSettable.Setter<ConduitStreamSinkChannel>(this);
     }
@@ -101,17 +163,21 @@ public final class ConduitStreamSinkChannel implements StreamSinkChannel, WriteL
 
     @Override
     public int writeFinal(ByteBuffer src) throws IOException {
-        return conduit.writeFinal(src);
+        final int res = conduit.writeFinal(src);
+        if (writeHighWater > 0) checkWritability();
+        return res;
     }
 
     @Override
     public long writeFinal(ByteBuffer[] srcs, int offset, int length) throws IOException {
-        return conduit.writeFinal(srcs, offset, length);
+        final long res = conduit.writeFinal(srcs, offset, length);
+        if (writeHighWater > 0) checkWritability();
+        return res;
     }
 
     @Override
     public long writeFinal(ByteBuffer[] srcs) throws IOException {
-        return conduit.writeFinal(srcs, 0, srcs.length);
+        return writeFinal(srcs, 0, srcs.length);
     }
 
     public void suspendWrites() {
@@ -139,38 +205,65 @@ public final class ConduitStreamSinkChannel implements StreamSinkChannel, WriteL
     }
 
     public long transferFrom(final FileChannel src, final long position, final long count) throws IOException {
-        return conduit.transferFrom(src, position, count);
+        final long res = conduit.transferFrom(src, position, count);
+        if (writeHighWater > 0) checkWritability();
+        return res;
     }
 
     public long transferFrom(final StreamSourceChannel source, final long count, final ByteBuffer throughBuffer) throws IOException {
-        return conduit.transferFrom(source, count, throughBuffer);
+        final long res = conduit.transferFrom(source, count, throughBuffer);
+        if (writeHighWater > 0) checkWritability();
+        return res;
     }
 
     public int write(final ByteBuffer dst) throws IOException {
-        return conduit.write(dst);
+        final int res = conduit.write(dst);
+        if (writeHighWater > 0) checkWritability();
+        return res;
     }
 
     public long write(final ByteBuffer[] srcs) throws IOException {
-        return conduit.write(srcs, 0, srcs.length);
+        return write(srcs, 0, srcs.length);
     }
 
     public long write(final ByteBuffer[] dsts, final int offs, final int len) throws IOException {
-        return conduit.write(dsts, offs, len);
+        final long res = conduit.write(dsts, offs, len);
+        if (writeHighWater > 0) checkWritability();
+        return res;
     }
 
     public boolean flush() throws IOException {
-        return conduit.flush();
+        final boolean flushed = conduit.flush();
+        if (writeHighWater > 0) checkWritability();
+        return flushed;
     }
 
     public boolean supportsOption(final Option<?> option) {
-        return configurable.supportsOption(option);
+        return option == Options.WRITE_HIGH_WATER || option == Options.WRITE_LOW_WATER || configurable.supportsOption(option);
     }
 
     public <T> T getOption(final Option<T> option) throws IOException {
+        if (option == Options.WRITE_HIGH_WATER) {
+            return option.cast(Integer.valueOf(writeHighWater));
+        } else if (option == Options.WRITE_LOW_WATER) {
+            return option.cast(Integer.valueOf(getWriteLowWater()));
+        }
         return configurable.getOption(option);
     }
 
     public <T> T setOption(final Option<T> option, final T value) throws IllegalArgumentException, IOException {
+        if (option == Options.WRITE_HIGH_WATER) {
+            final int old = writeHighWater;
+            writeHighWater = Options.WRITE_HIGH_WATER.cast(value, Integer.valueOf(0)).intValue();
+            if (writeHighWater <= 0) {
+                writable = true;
+            }
+            return option.cast(Integer.valueOf(old));
+        } else if (option == Options.WRITE_LOW_WATER) {
+            final int old = getWriteLowWater();
+            writeLowWater = Options.WRITE_LOW_WATER.cast(value, Integer.valueOf(-1)).intValue();
+            return option.cast(Integer.valueOf(old));
+        }
         return configurable.setOption(option, value);
     }
 
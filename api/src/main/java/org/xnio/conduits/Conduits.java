@@ -183,6 +183,17 @@ public final class Conduits {
         return false;
     }
 
+    /**
+     * Get the number of bytes held by a sink conduit which have not yet been passed on to the underlying transport.
+     *
+     * @param conduit the conduit
+     * @return the number of buffered bytes, or 0 if the conduit does not report them
+     * @see BufferingSinkConduit
+     */
+    public static long getBufferedByteCount(SinkConduit conduit) {
+        return conduit instanceof BufferingSinkConduit ? ((BufferingSinkConduit) conduit).getBufferedByteCount() : 0L;
+    }
+
     private static final FileChannel NULL_FILE_CHANNEL;
     private static final ByteBuffer DRAIN_BUFFER = ByteBuffer.allocateDirect(16384);
 
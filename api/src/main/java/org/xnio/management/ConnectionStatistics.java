@@ -0,0 +1,82 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2017 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xnio.management;
+
+/**
+ * I/O statistics for a single connection.  The counters are kept by the thread using the connection without any
+ * synchronization, so when read from another thread they may lag slightly behind.
+ */
+public interface ConnectionStatistics {
+
+    /**
+     * Get the number of bytes read from the connection.
+     *
+     * @return the number of bytes read
+     */
+    long getBytesRead();
+
+    /**
+     * Get the number of bytes written to the connection.
+     *
+     * @return the number of bytes written
+     */
+    long getBytesWritten();
+
+    /**
+     * Get the number of reads made on the underlying socket.
+     *
+     * @return the number of reads
+     */
+    long getReadCount();
+
+    /**
+     * Get the number of writes made on the underlying socket.
+     *
+     * @return the number of writes
+     */
+    long getWriteCount();
+
+    /**
+     * Get the number of reads which returned no data because none was available.
+     *
+     * @return the number of empty reads
+     */
+    long getEmptyReadCount();
+
+    /**
+     * Get the number of writes which wrote no data because the socket could not take any.
+     *
+     * @return the number of empty writes
+     */
+    long getEmptyWriteCount();
+
+    /**
+     * Get the number of bytes transferred from the connection directly into files.
+     *
+     * @return the number of bytes transferred to files
+     */
+    long getTransferToBytes();
+
+    /**
+     * Get the number of bytes transferred from files directly to the connection.
+     *
+     * @return the number of bytes transferred from files
+     */
+    long getTransferFromBytes();
+}
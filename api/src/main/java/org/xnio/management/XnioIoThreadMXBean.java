@@ -0,0 +1,171 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2017 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xnio.management;
+
+/**
+ * Management statistics for a single I/O thread of a worker.
+ */
+public interface XnioIoThreadMXBean {
+
+    /**
+     * Get the name of the provider.
+     *
+     * @return the name of the provider
+     */
+    String getProviderName();
+
+    /**
+     * Get the name of the worker which owns the thread.
+     *
+     * @return the worker's name
+     */
+    String getWorkerName();
+
+    /**
+     * Get the thread's name.
+     *
+     * @return the thread's name
+     */
+    String getName();
+
+    /**
+     * Get the current spin budget, in microseconds.  The thread polls for up to this long before blocking for events;
+     * the budget adapts between a fraction of the configured maximum and the maximum according to how often
+     * spinning finds work.
+     *
+     * @return the current spin budget, or 0 if spinning is not enabled
+     */
+    long getSpinTime();
+
+    /**
+     * Get the number of times the thread spun before blocking or finding work.
+     *
+     * @return the spin count
+     */
+    long getSpinCount();
+
+    /**
+     * Get the number of spins which found work before the spin budget ran out.
+     *
+     * @return the successful spin count
+     */
+    long getSpinHitCount();
+
+    /**
+     * Get the number of times the thread blocked waiting for events.
+     *
+     * @return the block count
+     */
+    long getBlockCount();
+
+    /**
+     * Get the number of times another thread asked for this thread's attention, for example by submitting a task or
+     * changing the interest set of a channel.
+     *
+     * @return the wakeup request count
+     */
+    long getWakeupRequestCount();
+
+    /**
+     * Get the number of wakeup requests which actually had to wake the thread's selector.  Requests made while the
+     * thread is busy, or after another request already woke it, are not counted.
+     *
+     * @return the issued wakeup count
+     */
+    long getWakeupCount();
+
+    /**
+     * Get an estimate of the number of channels registered with the thread.
+     *
+     * @return the registered channel count estimate
+     */
+    int getRegisteredKeyCount();
+
+    /**
+     * Get the number of tasks the thread ran in its most recent loop iteration.
+     *
+     * @return the recent task count
+     */
+    int getRecentTaskCount();
+
+    /**
+     * Get the total time the thread has spent selecting, including time spent blocked waiting for events, in
+     * nanoseconds.
+     *
+     * @return the select time
+     */
+    long getSelectTime();
+
+    /**
+     * Get the total time the thread has spent running queued tasks, in nanoseconds.
+     *
+     * @return the task time
+     */
+    long getTaskTime();
+
+    /**
+     * Get the total time the thread has spent running delayed and repeating tasks, in nanoseconds.
+     *
+     * @return the delayed task time
+     */
+    long getDelayedTaskTime();
+
+    /**
+     * Get the total time the thread has spent handling ready channels, in nanoseconds.
+     *
+     * @return the selected key handling time
+     */
+    long getSelectedKeyTime();
+
+    /**
+     * Get the number of event loop iterations the thread has run.
+     *
+     * @return the iteration count
+     */
+    long getIterationCount();
+
+    /**
+     * Get the total number of ready channels the thread has handled.
+     *
+     * @return the selected key count
+     */
+    long getSelectedKeyCount();
+
+    /**
+     * Get the event loop iteration rate since the previous call to this method.
+     *
+     * @return the number of iterations per second
+     */
+    double getIterationsPerSecond();
+
+    /**
+     * Get the average number of ready channels handled per event loop iteration.
+     *
+     * @return the average number of selected keys per iteration
+     */
+    double getKeysPerIteration();
+
+    /**
+     * Get the number of times the thread was found stuck in a single task or channel handler for longer than the
+     * watchdog threshold.  Always 0 if the provider has no watchdog or it is not enabled.
+     *
+     * @return the blocked count
+     */
+    long getBlockedCount();
+}
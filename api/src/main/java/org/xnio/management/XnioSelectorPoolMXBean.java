@@ -0,0 +1,104 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2017 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xnio.management;
+
+/**
+ * Management statistics for a pool of selectors which a provider shares among threads that block on channels.
+ */
+public interface XnioSelectorPoolMXBean {
+
+    /**
+     * Get the name of the provider.
+     *
+     * @return the name of the provider
+     */
+    String getProviderName();
+
+    /**
+     * Get the name of the pool.
+     *
+     * @return the pool name
+     */
+    String getName();
+
+    /**
+     * Get the maximum number of selectors the pool keeps open.  Borrowers which cannot wait may briefly take it over.
+     *
+     * @return the maximum pool size
+     */
+    int getMaxSize();
+
+    /**
+     * Get the number of selectors currently open, whether borrowed or idle.
+     *
+     * @return the pool size
+     */
+    int getSize();
+
+    /**
+     * Get the number of open selectors which are not currently borrowed.
+     *
+     * @return the idle selector count
+     */
+    int getIdleCount();
+
+    /**
+     * Get the total number of times a selector was borrowed from the pool.
+     *
+     * @return the borrow count
+     */
+    long getBorrowCount();
+
+    /**
+     * Get the number of borrows which had to wait because every selector was in use and the pool was at its maximum
+     * size.
+     *
+     * @return the waiting borrow count
+     */
+    long getWaitCount();
+
+    /**
+     * Get the total time threads have spent waiting to borrow a selector, in nanoseconds.
+     *
+     * @return the total wait time
+     */
+    long getWaitTime();
+
+    /**
+     * Get the longest time a thread has waited to borrow a selector, in nanoseconds.
+     *
+     * @return the maximum wait time
+     */
+    long getMaxWaitTime();
+
+    /**
+     * Get the number of idle selectors which were closed because they went unused for longer than the idle timeout.
+     *
+     * @return the eviction count
+     */
+    long getEvictionCount();
+
+    /**
+     * Get the number of extra selectors opened, and closed again on return, because the pool was exhausted and the
+     * borrower could not wait.
+     *
+     * @return the overflow count
+     */
+    long getOverflowCount();
+}
@@ -66,4 +66,50 @@ public interface XnioServerMXBean {
      */
     int getConnectionLimitLowWater();
 
+    /**
+     * Get the number of accepted connections which have been handed to their I/O threads but not yet taken up by
+     * the accept listener.
+     *
+     * @return the accept queue size
+     */
+    default int getAcceptQueueSize() {
+        return 0;
+    }
+
+    /**
+     * Get the number of batches of accepted connections handed from the accepting thread to other I/O threads.
+     *
+     * @return the handoff count
+     */
+    default long getAcceptHandoffCount() {
+        return 0L;
+    }
+
+    /**
+     * Get the total time batches of accepted connections have waited between being handed off and being taken up
+     * by their I/O threads, in nanoseconds.
+     *
+     * @return the total handoff time
+     */
+    default long getAcceptHandoffTime() {
+        return 0L;
+    }
+
+    /**
+     * Get the number of connections admitted by the server's accept rate limit.
+     *
+     * @return the admitted connection count
+     */
+    default long getAcceptAdmittedCount() {
+        return 0L;
+    }
+
+    /**
+     * Get the number of times accepting was deferred because the server's accept rate limit was reached.
+     *
+     * @return the deferred accept count
+     */
+    default long getAcceptDeferredCount() {
+        return 0L;
+    }
 }
@@ -18,6 +18,7 @@
 
 package org.xnio.management;
 
+import java.util.Collections;
 import java.util.Set;
 
 
@@ -80,4 +81,93 @@ public interface XnioWorkerMXBean {
      * @return set of {@link XnioServerMXBean}
      */
     Set<XnioServerMXBean> getServerMXBeans();
+
+    /**
+     * Get the management beans of the worker's I/O threads.
+     * @return set of {@link XnioIoThreadMXBean}, empty if the provider does not expose its I/O threads
+     */
+    default Set<XnioIoThreadMXBean> getIoThreadMXBeans() {
+        return Collections.emptySet();
+    }
+
+    /**
+     * Get the number of bytes read from the worker's connections, both open and closed.  Workers which do not keep
+     * connection statistics return zero from this and the other connection totals.
+     *
+     * @return the number of bytes read
+     * @see ConnectionStatistics#getBytesRead()
+     */
+    default long getBytesRead() {
+        return 0L;
+    }
+
+    /**
+     * Get the number of bytes written to the worker's connections.
+     *
+     * @return the number of bytes written
+     * @see ConnectionStatistics#getBytesWritten()
+     */
+    default long getBytesWritten() {
+        return 0L;
+    }
+
+    /**
+     * Get the number of socket reads made on the worker's connections.
+     *
+     * @return the number of reads
+     * @see ConnectionStatistics#getReadCount()
+     */
+    default long getReadCount() {
+        return 0L;
+    }
+
+    /**
+     * Get the number of socket writes made on the worker's connections.
+     *
+     * @return the number of writes
+     * @see ConnectionStatistics#getWriteCount()
+     */
+    default long getWriteCount() {
+        return 0L;
+    }
+
+    /**
+     * Get the number of reads on the worker's connections which returned no data.
+     *
+     * @return the number of empty reads
+     * @see ConnectionStatistics#getEmptyReadCount()
+     */
+    default long getEmptyReadCount() {
+        return 0L;
+    }
+
+    /**
+     * Get the number of writes on the worker's connections which wrote no data.
+     *
+     * @return the number of empty writes
+     * @see ConnectionStatistics#getEmptyWriteCount()
+     */
+    default long getEmptyWriteCount() {
+        return 0L;
+    }
+
+    /**
+     * Get the number of bytes transferred from the worker's connections directly into files.
+     *
+     * @return the number of bytes transferred to files
+     * @see ConnectionStatistics#getTransferToBytes()
+     */
+    default long getTransferToBytes() {
+        return 0L;
+    }
+
+    /**
+     * Get the number of bytes transferred from files directly to the worker's connections.
+     *
+     * @return the number of bytes transferred from files
+     * @see ConnectionStatistics#getTransferFromBytes()
+     */
+    default long getTransferFromBytes() {
+        return 0L;
+    }
 }
@@ -32,6 +32,7 @@ import java.io.InterruptedIOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.ClosedChannelException;
 import java.nio.channels.FileChannel;
+import java.security.AccessController;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.concurrent.TimeUnit;
@@ -45,10 +46,12 @@ import javax.net.ssl.SSLSession;
 import org.xnio.Buffers;
 import org.xnio.Pool;
 import org.xnio.Pooled;
+import org.xnio.ReadPropertyAction;
 import org.xnio.XnioIoThread;
 import org.xnio.XnioWorker;
 import org.xnio.channels.StreamSinkChannel;
 import org.xnio.channels.StreamSourceChannel;
+import org.xnio.conduits.BufferingSinkConduit;
 import org.xnio.conduits.ConduitReadableByteChannel;
 import org.xnio.conduits.ConduitWritableByteChannel;
 import org.xnio.conduits.Conduits;
@@ -57,9 +60,17 @@ import org.xnio.conduits.StreamSinkConduit;
 import org.xnio.conduits.StreamSourceConduit;
 import org.xnio.conduits.WriteReadyHandler;
 
-final class JsseStreamConduit implements StreamSourceConduit, StreamSinkConduit, Runnable {
+final class JsseStreamConduit implements StreamSourceConduit, StreamSinkConduit, BufferingSinkConduit, Runnable {
 
     private static final boolean TRACE_SSL = Boolean.getBoolean("org.xnio.ssl.TRACE_SSL");
+    private static final boolean RELEASE_IDLE_BUFFERS;
+    /** Stands in for the buffers once the conduit is terminated. */
+    private static final Pooled<ByteBuffer> FREED_BUFFER = Buffers.pooledWrapper(Buffers.EMPTY_BYTE_BUFFER);
+
+    static {
+        RELEASE_IDLE_BUFFERS = Boolean.parseBoolean(AccessController.doPrivileged(new ReadPropertyAction("xnio.ssl.release-idle-buffers", "true")));
+        FREED_BUFFER.free();
+    }
 
     //================================================================
     //
@@ -71,12 +82,8 @@ final class JsseStreamConduit implements StreamSourceConduit, StreamSinkConduit,
     private final SSLEngine engine;
     private final StreamSourceConduit sourceConduit;
     private final StreamSinkConduit sinkConduit;
-    /** The buffer into which incoming SSL data is written. */
-    private final Pooled<ByteBuffer> receiveBuffer;
-    /** The buffer from which outbound SSL data is sent. */
-    private final Pooled<ByteBuffer> sendBuffer;
-    /** The buffer into which inbound clear data is written. */
-    private final Pooled<ByteBuffer> readBuffer;
+    private final Pool<ByteBuffer> socketBufferPool;
+    private final Pool<ByteBuffer> applicationBufferPool;
 
     //================================================================
     //
@@ -87,6 +94,14 @@ final class JsseStreamConduit implements StreamSourceConduit, StreamSinkConduit,
     // always inline tasks, for now
     private int state = FLAG_INLINE_TASKS;
 
+    // the buffers are null while released to their pools, see releaseIdleBuffers()
+    /** The buffer into which incoming SSL data is written. */
+    private Pooled<ByteBuffer> receiveBuffer;
+    /** The buffer from which outbound SSL data is sent. */
+    private Pooled<ByteBuffer> sendBuffer;
+    /** The buffer into which inbound clear data is written. */
+    private Pooled<ByteBuffer> readBuffer;
+
     // tasks counter - protected by {@code this}
     private int tasks;
 
@@ -141,8 +156,79 @@ final class JsseStreamConduit implements StreamSourceConduit, StreamSinkConduit,
         this.engine = engine;
         this.sourceConduit = sourceConduit;
         this.sinkConduit = sinkConduit;
+        this.socketBufferPool = socketBufferPool;
+        this.applicationBufferPool = applicationBufferPool;
         sourceConduit.setReadReadyHandler(readReady);
         sinkConduit.setWriteReadyHandler(writeReady);
+        releaseIdleBuffers();
+    }
+
+    //================================================================
+    //
+    // Buffers
+    //
+    //================================================================
+
+    private ByteBuffer receiveBuffer() {
+        Pooled<ByteBuffer> receiveBuffer = this.receiveBuffer;
+        if (receiveBuffer == null) {
+            this.receiveBuffer = receiveBuffer = socketBufferPool.allocate();
+            receiveBuffer.getResource().clear().limit(0);
+        }
+        return receiveBuffer.getResource();
+    }
+
+    private ByteBuffer sendBuffer() {
+        Pooled<ByteBuffer> sendBuffer = this.sendBuffer;
+        if (sendBuffer == null) {
+            this.sendBuffer = sendBuffer = socketBufferPool.allocate();
+        }
+        return sendBuffer.getResource();
+    }
+
+    private ByteBuffer readBuffer() {
+        Pooled<ByteBuffer> readBuffer = this.readBuffer;
+        if (readBuffer == null) {
+            this.readBuffer = readBuffer = applicationBufferPool.allocate();
+        }
+        return readBuffer.getResource();
+    }
+
+    /**
+     * Give the buffers which hold no data back to their pools if neither reads nor writes are resumed.  A connection
+     * with a resumed handler is likely to need its buffers again as soon as it is ready, so it keeps them.
+     *
+     * @param state the current state
+     */
+    private void releaseIdleBuffers(final int state) {
+        if (allAreClear(state, READ_FLAG_RESUMED | WRITE_FLAG_RESUMED | READ_FLAG_UP_RESUMED | WRITE_FLAG_UP_RESUMED)) {
+            releaseIdleBuffers();
+        }
+    }
+
+    /**
+     * Give the buffers which hold no data back to their pools, so that an idle connection does not keep roughly three
+     * packets' worth of memory.  They are allocated again by the next I/O operation which needs them.
+     */
+    private void releaseIdleBuffers() {
+        if (! RELEASE_IDLE_BUFFERS) {
+            return;
+        }
+        final Pooled<ByteBuffer> receiveBuffer = this.receiveBuffer;
+        if (receiveBuffer != null && receiveBuffer != FREED_BUFFER && ! receiveBuffer.getResource().hasRemaining()) {
+            this.receiveBuffer = null;
+            receiveBuffer.free();
+        }
+        final Pooled<ByteBuffer> sendBuffer = this.sendBuffer;
+        if (sendBuffer != null && sendBuffer != FREED_BUFFER && sendBuffer.getResource().position() == 0) {
+            this.sendBuffer = null;
+            sendBuffer.free();
+        }
+        final Pooled<ByteBuffer> readBuffer = this.readBuffer;
+        if (readBuffer != null && readBuffer != FREED_BUFFER && readBuffer.getResource().position() == 0) {
+            this.readBuffer = null;
+            readBuffer.free();
+        }
     }
 
     //================================================================
@@ -346,9 +432,10 @@ final class JsseStreamConduit implements StreamSourceConduit, StreamSinkConduit,
     }
 
     boolean markTerminated() {
-        readBuffer.free();
-        receiveBuffer.free();
-        sendBuffer.free();
+        if (readBuffer != null) readBuffer.free();
+        if (receiveBuffer != null) receiveBuffer.free();
+        if (sendBuffer != null) sendBuffer.free();
+        readBuffer = receiveBuffer = sendBuffer = FREED_BUFFER;
         if (anyAreClear(state, READ_FLAG_SHUTDOWN | WRITE_FLAG_FINISHED)) {
             state |= READ_FLAG_SHUTDOWN | WRITE_FLAG_SHUTDOWN | WRITE_FLAG_SHUTDOWN2 | WRITE_FLAG_SHUTDOWN3 | WRITE_FLAG_FINISHED;
             return true;
@@ -571,6 +658,7 @@ final class JsseStreamConduit implements StreamSourceConduit, StreamSinkConduit,
                     state &= ~READ_FLAG_UP_RESUMED;
                     sourceConduit.suspendReads();
                 }
+                releaseIdleBuffers(state);
             }
         } finally {
             this.state = state;
@@ -757,6 +845,7 @@ final class JsseStreamConduit implements StreamSourceConduit, StreamSinkConduit,
                     state &= ~WRITE_FLAG_UP_RESUMED;
                     sinkConduit.suspendWrites();
                 }
+                releaseIdleBuffers(state);
             }
         } finally {
             this.state = state;
@@ -827,7 +916,7 @@ final class JsseStreamConduit implements StreamSourceConduit, StreamSinkConduit,
                     }
                     performIO(IO_GOAL_READ, NO_BUFFERS, 0, 0, NO_BUFFERS, 0, 0);
                 }
-                if (allAreClear(this.state, READ_FLAG_EOF) || this.receiveBuffer.getResource().hasRemaining()) {
+                if (allAreClear(this.state, READ_FLAG_EOF) || receiveBuffer != null && receiveBuffer.getResource().hasRemaining()) {
                     // potentially unread data :(
                     final EOFException exception = msg.connectionClosedEarly();
                     try {
@@ -926,7 +1015,7 @@ final class JsseStreamConduit implements StreamSourceConduit, StreamSinkConduit,
         }
         if (anyAreSet(state, READ_FLAG_EOF)) {
             // read data
-            if (readBuffer.getResource().position() > 0) {
+            if (readBuffer != null && readBuffer.getResource().position() > 0) {
                 final ByteBuffer readBufferResource = readBuffer.getResource();
                 readBufferResource.flip();
                 try {
@@ -934,6 +1023,7 @@ final class JsseStreamConduit implements StreamSourceConduit, StreamSinkConduit,
                     return Buffers.copy(dst, readBufferResource);
                 } finally {
                     readBufferResource.compact();
+                    releaseIdleBuffers();
                 }
             }
             return -1;
@@ -965,7 +1055,7 @@ final class JsseStreamConduit implements StreamSourceConduit, StreamSinkConduit,
         if (anyAreSet(state, READ_FLAG_SHUTDOWN)) {
             return -1;
         } else if (anyAreSet(state, READ_FLAG_EOF)){
-            if (readBuffer.getResource().position() > 0) {
+            if (readBuffer != null && readBuffer.getResource().position() > 0) {
                 final ByteBuffer readBufferResource = readBuffer.getResource();
                 readBufferResource.flip();
                 try {
@@ -973,6 +1063,7 @@ final class JsseStreamConduit implements StreamSourceConduit, StreamSinkConduit,
                     return Buffers.copy(dsts, offs, len, readBufferResource);
                 } finally {
                     readBufferResource.compact();
+                    releaseIdleBuffers();
                 }
             }
             return -1;
@@ -1077,6 +1168,17 @@ final class JsseStreamConduit implements StreamSourceConduit, StreamSinkConduit,
         }
     }
 
+    public long getBufferedByteCount() {
+        long count;
+        try {
+            // wrapped data, which is a little larger than what was written
+            count = sendBuffer == null ? 0L : sendBuffer.getResource().position();
+        } catch (IllegalStateException ignored) {
+            count = 0L;
+        }
+        return count + Conduits.getBufferedByteCount(sinkConduit);
+    }
+
     public boolean flush() throws IOException {
         int state = this.state;
         if (allAreSet(state, WRITE_FLAG_FINISHED)) {
@@ -1161,12 +1263,12 @@ final class JsseStreamConduit implements StreamSourceConduit, StreamSinkConduit,
             return 0L;
         }
         final SSLEngine engine = this.engine;
-        final ByteBuffer sendBuffer = this.sendBuffer.getResource();
-        final ByteBuffer receiveBuffer = this.receiveBuffer.getResource();
-        final ByteBuffer readBuffer = this.readBuffer.getResource();
+        // the buffers are only taken from their pools once a step needs them
+        ByteBuffer sendBuffer = null;
+        ByteBuffer receiveBuffer = null;
+        ByteBuffer readBuffer = null;
         // unwrap into our read buffer if necessary to avoid underflow problems
-        final ByteBuffer[] realDsts = Arrays.copyOfRange(dsts, dstOff, dstLen + 1);
-        realDsts[dstLen] = readBuffer;
+        ByteBuffer[] realDsts = null;
 
         long remaining = max(Buffers.remaining(srcs, srcOff, srcLen), Buffers.remaining(dsts, dstOff, dstLen));
         boolean wrap = goal == IO_GOAL_READ ? anyAreSet(state, READ_FLAG_NEEDS_WRITE | FLAG_FLUSH_NEEDED) : allAreSet(state, FLAG_FLUSH_NEEDED) || allAreClear(state, WRITE_FLAG_NEEDS_READ);
@@ -1186,8 +1288,9 @@ final class JsseStreamConduit implements StreamSourceConduit, StreamSinkConduit,
         try {
             for (;;) {
                 if (TRACE_SSL) msg.trace("TLS begin IO operation");
-                if (goal == IO_GOAL_READ && remaining > 0 && readBuffer.position() > 0) {
+                if (goal == IO_GOAL_READ && remaining > 0 && this.readBuffer != null && this.readBuffer.getResource().position() > 0) {
                     // read data
+                    if (readBuffer == null) readBuffer = readBuffer();
                     readBuffer.flip();
                     try {
                         if (TRACE_SSL) msg.tracef("TLS copy unwrapped data from %s to %s", Buffers.debugString(readBuffer), Buffers.debugString(dsts, dstOff, dstLen));
@@ -1205,6 +1308,7 @@ final class JsseStreamConduit implements StreamSourceConduit, StreamSinkConduit,
                 }
                 assert ! (wrap && unwrap);
                 if (wrap) {
+                    if (sendBuffer == null) sendBuffer = sendBuffer();
                     if (TRACE_SSL) msg.tracef("TLS wrap from %s to %s", Buffers.debugString(srcs, srcOff, srcLen), Buffers.debugString(sendBuffer));
                     result = engine.wrap(srcs, srcOff, srcLen, sendBuffer);
                     WRAP_RESULT: switch (result.getStatus()) {
@@ -1354,6 +1458,12 @@ final class JsseStreamConduit implements StreamSourceConduit, StreamSinkConduit,
                         }
                     }
                 } else if (unwrap) {
+                    if (receiveBuffer == null) receiveBuffer = receiveBuffer();
+                    if (realDsts == null) {
+                        if (readBuffer == null) readBuffer = readBuffer();
+                        realDsts = Arrays.copyOfRange(dsts, dstOff, dstLen + 1);
+                        realDsts[dstLen] = readBuffer;
+                    }
                     if (TRACE_SSL) msg.tracef("TLS unwrap from %s to %s", Buffers.debugString(receiveBuffer), Buffers.debugString(realDsts, 0, dstLen + 1));
                     // use dstLen + 1 so that any leftovers are unwrapped into our read buffer to avoid underflow
                     // * offset is 0 because realDsts is a copyOfRange of the original dsts with one extra buf at the end
@@ -1588,6 +1698,10 @@ final class JsseStreamConduit implements StreamSourceConduit, StreamSinkConduit,
             }
         } finally {
             this.state = state;
+            if (xfer == 0L) {
+                // the operation is waiting on the peer or the network
+                releaseIdleBuffers(state);
+            }
             if (wakeupReads) {
                 wakeupReads();
             }
@@ -0,0 +1,140 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2017 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xnio.conduits;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+
+import org.junit.Test;
+import org.xnio.ByteBufferPool;
+
+/**
+ * Test for {@link AdaptiveReadAllocator}.
+ */
+public class AdaptiveReadAllocatorTestCase {
+
+    @Test
+    public void growAndShrink() {
+        final ByteBufferPool.Set set = ByteBufferPool.Set.HEAP;
+        final ByteBufferPool[] intermediate = set.getIntermediate();
+        final AdaptiveReadAllocator allocator = new AdaptiveReadAllocator(set);
+        assertSame(set.getNormal(), allocator.getPool());
+        // a full read grows right away
+        allocator.record(ByteBufferPool.MEDIUM_SIZE);
+        assertSame(intermediate[0], allocator.getPool());
+        assertEquals(0x4000, allocator.getPool().getSize());
+        assertEquals(1L, allocator.getFullReadCount());
+        // it takes two small reads in a row to shrink
+        allocator.record(100);
+        assertSame(intermediate[0], allocator.getPool());
+        allocator.record(ByteBufferPool.MEDIUM_SIZE + 1);
+        allocator.record(100);
+        assertSame(intermediate[0], allocator.getPool());
+        allocator.record(100);
+        assertSame(set.getNormal(), allocator.getPool());
+        allocator.record(10);
+        allocator.record(10);
+        assertSame(set.getSmall(), allocator.getPool());
+        // empty reads tell nothing
+        allocator.record(0);
+        allocator.record(-1);
+        assertSame(set.getSmall(), allocator.getPool());
+        assertEquals(0L, allocator.getSmallReadCount());
+        assertEquals(3L, allocator.getNormalReadCount());
+        assertEquals(4L, allocator.getLargeReadCount());
+    }
+
+    @Test
+    public void growthIsCapped() {
+        final ByteBufferPool.Set set = ByteBufferPool.Set.HEAP;
+        final ByteBufferPool[] intermediate = set.getIntermediate();
+        assertEquals(3, intermediate.length);
+        final AdaptiveReadAllocator allocator = new AdaptiveReadAllocator(set);
+        for (int i = 0; i < 10; i ++) {
+            allocator.record(allocator.getPool().getSize());
+        }
+        // a bulk transfer never moves past 64 KiB
+        assertSame(intermediate[2], allocator.getPool());
+        assertEquals(0x10000, allocator.getPool().getSize());
+        assertEquals(10L, allocator.getFullReadCount());
+        // and steps back down one size at a time
+        allocator.record(0x8000);
+        allocator.record(0x8000);
+        assertSame(intermediate[1], allocator.getPool());
+        allocator.record(0x4000);
+        allocator.record(0x4000);
+        assertSame(intermediate[0], allocator.getPool());
+    }
+
+    @Test
+    public void intermediateBuffersArePooled() {
+        for (ByteBufferPool pool : ByteBufferPool.Set.HEAP.getIntermediate()) {
+            final ByteBuffer buffer = pool.allocate();
+            assertEquals(pool.getSize(), buffer.capacity());
+            assertFalse(buffer.isDirect());
+            ByteBufferPool.free(buffer);
+            // freed into its own pool, so it is handed out again once the other slices of its large buffer are
+            final ByteBuffer[] buffers = new ByteBuffer[ByteBufferPool.LARGE_SIZE / pool.getSize() + 1];
+            pool.allocate(buffers, 0);
+            boolean found = false;
+            for (ByteBuffer allocated : buffers) {
+                found |= allocated == buffer;
+            }
+            ByteBufferPool.free(buffers, 0, buffers.length);
+            assertTrue(found);
+        }
+    }
+
+    @Test
+    public void readFromChannel() throws Exception {
+        final ByteBufferPool.Set set = ByteBufferPool.Set.HEAP;
+        final AdaptiveReadAllocator allocator = new AdaptiveReadAllocator(set);
+        allocator.record(10);
+        allocator.record(10);
+        assertSame(set.getSmall(), allocator.getPool());
+        final byte[] bytes = new byte[100];
+        for (int i = 0; i < bytes.length; i ++) {
+            bytes[i] = (byte) i;
+        }
+        final ReadableByteChannel channel = Channels.newChannel(new ByteArrayInputStream(bytes));
+        ByteBuffer buffer = allocator.read(channel);
+        assertEquals(ByteBufferPool.SMALL_SIZE, buffer.remaining());
+        assertEquals(0, buffer.get(0));
+        ByteBufferPool.free(buffer);
+        // the small buffer was filled, so the rest is read into a medium one
+        assertSame(set.getNormal(), allocator.getPool());
+        buffer = allocator.read(channel);
+        assertEquals(bytes.length - ByteBufferPool.SMALL_SIZE, buffer.remaining());
+        assertEquals(ByteBufferPool.MEDIUM_SIZE, buffer.capacity());
+        assertEquals(ByteBufferPool.SMALL_SIZE, buffer.get(0));
+        ByteBufferPool.free(buffer);
+        buffer = allocator.read(channel);
+        assertFalse(buffer.hasRemaining());
+        assertEquals(1L, allocator.getSmallReadCount());
+        assertEquals(3L, allocator.getNormalReadCount());
+        assertEquals(1L, allocator.getFullReadCount());
+    }
+}
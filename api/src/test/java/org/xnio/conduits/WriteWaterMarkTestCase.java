@@ -0,0 +1,101 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2017 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.xnio.conduits;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.xnio.Buffers;
+import org.xnio.ChannelListener;
+import org.xnio.Options;
+import org.xnio.channels.Configurable;
+import org.xnio.mock.ConduitMock;
+import org.xnio.mock.XnioWorkerMock;
+
+/**
+ * Test for the {@link Options#WRITE_HIGH_WATER} and {@link Options#WRITE_LOW_WATER} marks of
+ * {@link ConduitStreamSinkChannel}.
+ */
+public class WriteWaterMarkTestCase {
+
+    private ConduitMock mock;
+    private ConduitStreamSinkChannel channel;
+    private final AtomicInteger changes = new AtomicInteger();
+
+    @Before
+    public void init() {
+        final XnioWorkerMock worker = new XnioWorkerMock();
+        mock = new ConduitMock(worker, worker.chooseThread());
+        mock.enableWrites(false);
+        final BufferedStreamSinkConduit conduit = new BufferedStreamSinkConduit(mock, Buffers.pooledWrapper(ByteBuffer.allocate(100)));
+        channel = new ConduitStreamSinkChannel(Configurable.EMPTY, conduit);
+        channel.setWritabilityListener(new ChannelListener<ConduitStreamSinkChannel>() {
+            public void handleEvent(final ConduitStreamSinkChannel channel) {
+                changes.incrementAndGet();
+            }
+        });
+    }
+
+    @Test
+    public void disabledByDefault() throws Exception {
+        assertTrue(channel.supportsOption(Options.WRITE_HIGH_WATER));
+        assertEquals(0, channel.getOption(Options.WRITE_HIGH_WATER).intValue());
+        assertEquals(80, channel.write(ByteBuffer.allocate(80)));
+        assertTrue(channel.isWritable());
+        assertEquals(0, changes.get());
+    }
+
+    @Test
+    public void crossHighAndLowWater() throws Exception {
+        channel.setOption(Options.WRITE_HIGH_WATER, 50);
+        assertEquals(25, channel.getOption(Options.WRITE_LOW_WATER).intValue());
+        channel.setOption(Options.WRITE_LOW_WATER, 10);
+        assertEquals(40, channel.write(ByteBuffer.allocate(40)));
+        assertTrue(channel.isWritable());
+        assertEquals(0, changes.get());
+        assertEquals(20, channel.write(ByteBuffer.allocate(20)));
+        assertFalse(channel.isWritable());
+        assertEquals(1, changes.get());
+        // still above the low mark
+        assertFalse(channel.flush());
+        assertFalse(channel.isWritable());
+        assertEquals(1, changes.get());
+        mock.enableWrites(true);
+        assertTrue(channel.flush());
+        assertTrue(channel.isWritable());
+        assertEquals(2, changes.get());
+        assertEquals(60, mock.getWrittenBytes().position());
+    }
+
+    @Test
+    public void disableWhileUnwritable() throws Exception {
+        channel.setOption(Options.WRITE_HIGH_WATER, 10);
+        channel.write(ByteBuffer.allocate(20));
+        assertFalse(channel.isWritable());
+        channel.setOption(Options.WRITE_HIGH_WATER, 0);
+        assertTrue(channel.isWritable());
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2017 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.xnio.ssl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.xnio.ssl.mock.SSLEngineMock.CLOSE_MSG;
+
+import java.io.IOError;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.xnio.BufferAllocator;
+import org.xnio.ByteBufferSlicePool;
+import org.xnio.Pool;
+import org.xnio.Pooled;
+import org.xnio.conduits.ConduitStreamSourceChannel;
+import org.xnio.mock.StreamConnectionMock;
+
+/**
+ * Test that {@link JsseStreamConduit} gives its buffers back to the pools while the connection is idle.
+ */
+public class JsseSslIdleBufferTestCase extends AbstractSslConnectionTest {
+
+    private final AtomicInteger outstanding = new AtomicInteger();
+    private final AtomicInteger allocated = new AtomicInteger();
+
+    @Override
+    protected SslConnection createSslConnection() {
+        final Pool<ByteBuffer> socketBufferPool = new CountingPool(new ByteBufferSlicePool(BufferAllocator.BYTE_BUFFER_ALLOCATOR, 17000, 17000 * 16));
+        final Pool<ByteBuffer> applicationBufferPool = new CountingPool(new ByteBufferSlicePool(BufferAllocator.BYTE_BUFFER_ALLOCATOR, 17000, 17000 * 16));
+        final StreamConnectionMock connectionMock = new StreamConnectionMock(conduitMock);
+        final SslConnection connection = new JsseSslConnection(connectionMock, engineMock, socketBufferPool, applicationBufferPool);
+        try {
+            connection.startHandshake();
+        } catch (IOException e) {
+            throw new IOError(e);
+        }
+        return connection;
+    }
+
+    @Test
+    public void releaseWhileIdle() throws Exception {
+        assertEquals(0, outstanding.get());
+        assertEquals(10, sinkConduit.write(ByteBuffer.wrap("write data".getBytes("UTF-8"))));
+        sinkConduit.flush();
+        assertEquals(0, outstanding.get());
+        assertWrittenMessage("write data");
+        final ByteBuffer dst = ByteBuffer.allocate(20);
+        assertEquals(0, sourceConduit.read(dst));
+        assertEquals(0, outstanding.get());
+        conduitMock.setReadData("read data");
+        conduitMock.enableReads(true);
+        assertEquals(9, sourceConduit.read(dst));
+        assertEquals(0, sourceConduit.read(dst));
+        assertEquals(0, outstanding.get());
+        assertReadMessage(dst, "read data");
+    }
+
+    @Test
+    public void takeOnlyNeededBuffers() throws Exception {
+        final int before = allocated.get();
+        assertEquals(10, sinkConduit.write(ByteBuffer.wrap("write data".getBytes("UTF-8"))));
+        // a wrap needs neither the receive buffer nor the read buffer
+        assertEquals(before + 1, allocated.get());
+        assertWrittenMessage("write data");
+    }
+
+    @Test
+    public void keepWhileResumed() throws Exception {
+        final ByteBuffer dst = ByteBuffer.allocate(20);
+        final AtomicInteger whileResumed = new AtomicInteger(-1);
+        final AtomicInteger whileSuspended = new AtomicInteger(-1);
+        final CountDownLatch latch = new CountDownLatch(1);
+        final ConduitStreamSourceChannel sourceChannel = connection.getSourceChannel();
+        sourceChannel.setReadListener(channel -> {
+            try {
+                if (channel.read(dst) == 0) {
+                    // a connection waiting for reads keeps its buffers rather than taking them again on every readiness event
+                    whileResumed.set(outstanding.get());
+                    channel.suspendReads();
+                    whileSuspended.set(outstanding.get());
+                    latch.countDown();
+                }
+            } catch (IOException e) {
+                throw new IOError(e);
+            }
+        });
+        sourceChannel.resumeReads();
+        assertTrue(latch.await(10L, TimeUnit.SECONDS));
+        assertTrue(whileResumed.get() > 0);
+        assertEquals(0, whileSuspended.get());
+    }
+
+    @Test
+    public void keepUnsentData() throws Exception {
+        conduitMock.enableWrites(false);
+        sinkConduit.write(ByteBuffer.wrap("write data".getBytes("UTF-8")));
+        sinkConduit.flush();
+        // the wrapped data is still waiting in the send buffer
+        assertEquals(1, outstanding.get());
+        conduitMock.enableWrites(true);
+        sinkConduit.flush();
+        assertEquals(0, outstanding.get());
+        assertWrittenMessage("write data");
+        sinkConduit.terminateWrites();
+        sinkConduit.flush();
+        assertWrittenMessage("write data", CLOSE_MSG);
+    }
+
+    private final class CountingPool implements Pool<ByteBuffer> {
+        private final Pool<ByteBuffer> delegate;
+
+        CountingPool(final Pool<ByteBuffer> delegate) {
+            this.delegate = delegate;
+        }
+
+        public Pooled<ByteBuffer> allocate() {
+            final Pooled<ByteBuffer> pooled = delegate.allocate();
+            outstanding.incrementAndGet();
+            allocated.incrementAndGet();
+            return new Pooled<ByteBuffer>() {
+                private boolean freed;
+
+                public void discard() {
+                    free();
+                }
+
+                public void free() {
+                    if (! freed) {
+                        freed = true;
+                        outstanding.decrementAndGet();
+                        pooled.free();
+                    }
+                }
+
+                public ByteBuffer getResource() throws IllegalStateException {
+                    return pooled.getResource();
+                }
+
+                public void close() {
+                    free();
+                }
+            };
+        }
+    }
+}
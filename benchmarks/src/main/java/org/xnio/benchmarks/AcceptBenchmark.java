@@ -0,0 +1,130 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2017 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xnio.benchmarks;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xnio.IoUtils;
+import org.xnio.OptionMap;
+import org.xnio.Options;
+import org.xnio.StreamConnection;
+import org.xnio.Xnio;
+import org.xnio.XnioWorker;
+import org.xnio.channels.AcceptingChannel;
+
+/**
+ * Measures the rate at which a server accepts loopback connections, with and without skipping the socket options that
+ * accepted sockets already have.  Each fork reads {@code xnio.nio.accept.skip-inherited-options} once, so the
+ * parameter is applied before the provider is first used.
+ * <p>
+ * The option sets are ones where the two paths differ.  With the server's default options, every accepted socket
+ * otherwise gets keep-alive, out-of-band inlining and {@code TCP_NODELAY} set to the values it already has.  The
+ * keep-alive timers are set once on the listening socket and inherited when skipping, rather than set on every
+ * accepted socket; they need a JDK with the extended socket options.  Options such as enabling keep-alive or
+ * {@code TCP_NODELAY} are not inherited from the listener, so they cost the same either way and are left out.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AcceptBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Server {
+        @Param({"true", "false"})
+        String skipInheritedOptions;
+
+        @Param({"defaults", "keep-alive-timers"})
+        String options;
+
+        XnioWorker worker;
+        AcceptingChannel<StreamConnection> server;
+        InetSocketAddress address;
+        final BlockingQueue<StreamConnection> accepted = new LinkedBlockingQueue<StreamConnection>();
+
+        @Setup(Level.Trial)
+        public void setUp() throws Exception {
+            System.setProperty("xnio.nio.accept.skip-inherited-options", skipInheritedOptions);
+            worker = Xnio.getInstance("nio").createWorker(OptionMap.create(Options.WORKER_IO_THREADS, 1, Options.THREAD_DAEMON, true));
+            server = worker.createStreamConnectionServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), channel -> {
+                StreamConnection connection;
+                try {
+                    while ((connection = channel.accept()) != null) {
+                        accepted.add(connection);
+                    }
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }, serverOptions());
+            address = server.getLocalAddress(InetSocketAddress.class);
+            server.resumeAccepts();
+        }
+
+        private OptionMap serverOptions() {
+            switch (options) {
+                case "keep-alive-timers":
+                    return OptionMap.builder()
+                            .set(Options.TCP_KEEPIDLE, 60)
+                            .set(Options.TCP_KEEPINTERVAL, 10)
+                            .set(Options.TCP_KEEPCOUNT, 5)
+                            .getMap();
+                default:
+                    return OptionMap.EMPTY;
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws Exception {
+            IoUtils.safeClose(server);
+            worker.shutdown();
+            worker.awaitTermination(10L, TimeUnit.SECONDS);
+        }
+    }
+
+    @Benchmark
+    public void accept(Server server) throws Exception {
+        final Socket socket = new Socket();
+        try {
+            socket.setSoLinger(true, 0);
+            socket.connect(server.address);
+            IoUtils.safeClose(server.accepted.take());
+        } finally {
+            IoUtils.safeClose(socket);
+        }
+    }
+}
@@ -0,0 +1,240 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2017 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.xnio.benchmarks;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.security.KeyStore;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.TrustManagerFactory;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xnio.ChannelListener;
+import org.xnio.IoUtils;
+import org.xnio.OptionMap;
+import org.xnio.Options;
+import org.xnio.Xnio;
+import org.xnio.XnioWorker;
+import org.xnio.channels.AcceptingChannel;
+import org.xnio.conduits.ConduitStreamSinkChannel;
+import org.xnio.conduits.ConduitStreamSourceChannel;
+import org.xnio.ssl.JsseXnioSsl;
+import org.xnio.ssl.SslConnection;
+import org.xnio.ssl.XnioSsl;
+
+/**
+ * Measures the time to open a TLS connection and the direct memory taken by idle TLS connections, with and without
+ * releasing the SSL buffers of idle connections.  Each operation opens a loopback connection and sends one byte over
+ * it, so that the handshake completes, and then leaves it idle.  Once the given number of connections is idle, the
+ * oldest is closed for each new one.  The {@code directBytesPerConnection} counter is the growth of direct memory
+ * divided by the number of idle connections, counting both ends.  The buffer pool never gives memory back, so the
+ * counter shows the peak.  Each fork reads {@code xnio.ssl.release-idle-buffers} once, so the parameter is applied
+ * before the first TLS connection is made.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1, time = 10)
+@Fork(1)
+public class IdleSslConnectionBenchmark {
+
+    private static final String KEY_STORE = "keystore.jks";
+    private static final char[] KEY_STORE_PASSWORD = "jboss-remoting-test".toCharArray();
+
+    @State(Scope.Benchmark)
+    public static class Endpoints {
+        @Param({"true", "false"})
+        String releaseIdleBuffers;
+
+        @Param({"200"})
+        int connections;
+
+        XnioWorker worker;
+        XnioSsl ssl;
+        AcceptingChannel<SslConnection> server;
+        InetSocketAddress address;
+        final Queue<SslConnection> accepted = new ConcurrentLinkedQueue<SslConnection>();
+        final Semaphore greeted = new Semaphore(0);
+        final Queue<SslConnection> clients = new ArrayDeque<SslConnection>();
+
+        @Setup(Level.Trial)
+        public void setUp() throws Exception {
+            System.setProperty("xnio.ssl.release-idle-buffers", releaseIdleBuffers);
+            final Xnio xnio = Xnio.getInstance("nio");
+            worker = xnio.createWorker(OptionMap.create(Options.WORKER_IO_THREADS, 1, Options.THREAD_DAEMON, true));
+            ssl = new JsseXnioSsl(xnio, OptionMap.EMPTY, createSslContext());
+            server = ssl.createSslConnectionServer(worker, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), channel -> {
+                SslConnection connection;
+                try {
+                    while ((connection = channel.accept()) != null) {
+                        final SslConnection accepted = connection;
+                        connection.getSourceChannel().setReadListener(source -> {
+                            final int res = drain(source);
+                            if (res > 0) {
+                                greeted.release();
+                            } else if (res == -1) {
+                                IoUtils.safeClose(accepted);
+                            }
+                        });
+                        connection.getSourceChannel().resumeReads();
+                        this.accepted.add(connection);
+                    }
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            }, OptionMap.create(Options.TCP_NODELAY, true));
+            address = server.getLocalAddress(InetSocketAddress.class);
+            server.resumeAccepts();
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws Exception {
+            SslConnection connection;
+            while ((connection = clients.poll()) != null) {
+                IoUtils.safeClose(connection);
+            }
+            while ((connection = accepted.poll()) != null) {
+                IoUtils.safeClose(connection);
+            }
+            IoUtils.safeClose(server);
+            worker.shutdown();
+            worker.awaitTermination(10L, TimeUnit.SECONDS);
+        }
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Memory {
+        public long directBytesPerConnection;
+        long before;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            before = directMemoryUsed();
+        }
+    }
+
+    @Benchmark
+    public void openIdleConnection(Endpoints endpoints, Memory memory) throws Exception {
+        if (endpoints.clients.size() == endpoints.connections) {
+            IoUtils.safeClose(endpoints.clients.poll());
+        }
+        endpoints.clients.add(endpoints.ssl.openSslConnection(endpoints.worker, endpoints.address, IdleSslConnectionBenchmark::greet, OptionMap.create(Options.TCP_NODELAY, true)).get());
+        if (! endpoints.greeted.tryAcquire(10L, TimeUnit.SECONDS)) {
+            throw new IllegalStateException("Handshake did not complete");
+        }
+        memory.directBytesPerConnection = (directMemoryUsed() - memory.before) / endpoints.clients.size();
+    }
+
+    /**
+     * Send one byte and then just keep reading, all from the connection's I/O thread.
+     */
+    private static void greet(final SslConnection connection) {
+        final ByteBuffer greeting = ByteBuffer.wrap(new byte[] { 1 });
+        final ConduitStreamSinkChannel sink = connection.getSinkChannel();
+        sink.setWriteListener(channel -> {
+            try {
+                if (greeting.hasRemaining()) {
+                    channel.write(greeting);
+                }
+                if (! greeting.hasRemaining() && channel.flush()) {
+                    channel.suspendWrites();
+                }
+            } catch (IOException e) {
+                IoUtils.safeClose(connection);
+            }
+        });
+        sink.resumeWrites();
+        connection.getSourceChannel().setReadListener(source -> {
+            if (drain(source) == -1) {
+                IoUtils.safeClose(connection);
+            }
+        });
+        connection.getSourceChannel().resumeReads();
+    }
+
+    /**
+     * Read whatever is available.
+     *
+     * @return 1 if data was read, 0 if none was, or -1 at the end of the stream or on failure
+     */
+    private static int drain(final ConduitStreamSourceChannel channel) {
+        final ByteBuffer buffer = ByteBuffer.allocate(64);
+        int result = 0;
+        try {
+            int res;
+            while ((res = channel.read(buffer)) > 0) {
+                result = 1;
+                buffer.clear();
+            }
+            return res == -1 ? -1 : result;
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    private static long directMemoryUsed() {
+        for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+            if (pool.getName().equals("direct")) {
+                return pool.getMemoryUsed();
+            }
+        }
+        throw new IllegalStateException("No direct buffer pool");
+    }
+
+    private static SSLContext createSslContext() throws Exception {
+        final KeyStore keyStore = KeyStore.getInstance("JKS");
+        try (InputStream in = IdleSslConnectionBenchmark.class.getClassLoader().getResourceAsStream(KEY_STORE)) {
+            keyStore.load(in, KEY_STORE_PASSWORD);
+        }
+        final KeyManagerFactory keyManagerFactory = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        keyManagerFactory.init(keyStore, KEY_STORE_PASSWORD);
+        final TrustManagerFactory trustManagerFactory = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+        trustManagerFactory.init(keyStore);
+        final SSLContext sslContext = SSLContext.getInstance("TLS");
+        sslContext.init(keyManagerFactory.getKeyManagers(), trustManagerFactory.getTrustManagers(), null);
+        return sslContext;
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2017 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xnio.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xnio.OptionMap;
+import org.xnio.Options;
+import org.xnio.Xnio;
+import org.xnio.XnioIoThread;
+import org.xnio.XnioWorker;
+
+/**
+ * Measures the rate at which other threads can hand tasks to a single I/O thread via {@link XnioIoThread#execute(Runnable)}.
+ * Each producer keeps a bounded number of tasks in flight so that the result reflects sustained throughput rather
+ * than the speed at which an unbounded queue can grow.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(8)
+public class IoThreadExecuteBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Worker {
+        XnioWorker worker;
+        XnioIoThread ioThread;
+
+        @Setup(Level.Trial)
+        public void setUp() throws Exception {
+            worker = Xnio.getInstance("nio").createWorker(OptionMap.create(Options.WORKER_IO_THREADS, 1, Options.THREAD_DAEMON, true));
+            ioThread = worker.getIoThread(0);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws Exception {
+            worker.shutdown();
+            worker.awaitTermination(10L, TimeUnit.SECONDS);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Producer {
+        @Param("256")
+        int window;
+
+        final AtomicInteger outstanding = new AtomicInteger();
+        final Runnable task = outstanding::decrementAndGet;
+
+        @TearDown(Level.Iteration)
+        public void drain() {
+            while (outstanding.get() > 0) {
+                Thread.yield();
+            }
+        }
+    }
+
+    @Benchmark
+    public void execute(Worker worker, Producer producer) {
+        final AtomicInteger outstanding = producer.outstanding;
+        while (outstanding.get() >= producer.window) {
+            Thread.yield();
+        }
+        outstanding.incrementAndGet();
+        worker.ioThread.execute(producer.task);
+    }
+}
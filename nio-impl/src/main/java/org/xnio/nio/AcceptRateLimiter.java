@@ -0,0 +1,145 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2017 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xnio.nio;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.xnio.OptionMap;
+import org.xnio.Options;
+
+import static org.xnio.nio.Log.log;
+
+/**
+ * A token bucket which limits the rate at which a server accepts connections.  The bucket is kept as the single
+ * theoretical arrival time of the next connection (the "virtual scheduling" form of the generic cell rate algorithm),
+ * so admitting a connection is one compare-and-set and several accepting threads may share a limiter.  A server without
+ * a rate limit does not consult the limiter at all, and only counts the connections it accepts.
+ */
+final class AcceptRateLimiter {
+
+    private static final AtomicLongFieldUpdater<AcceptRateLimiter> arrivalUpdater = AtomicLongFieldUpdater.newUpdater(AcceptRateLimiter.class, "arrival");
+
+    private final int rate;
+    private final int burst;
+    // nanoseconds per token, and how far ahead of time a burst may run
+    private final long interval;
+    private final long tolerance;
+
+    private volatile long arrival;
+    private final LongAdder admitted = new LongAdder();
+    private final LongAdder deferred = new LongAdder();
+
+    AcceptRateLimiter(final int rate, final int burst, final long now) {
+        this.rate = rate;
+        this.burst = burst;
+        if (rate > 0) {
+            interval = Math.max(1L, TimeUnit.SECONDS.toNanos(1L) / rate);
+            tolerance = (burst - 1) * interval;
+        } else {
+            interval = 0L;
+            tolerance = 0L;
+        }
+        arrival = now;
+    }
+
+    static AcceptRateLimiter create(final OptionMap optionMap) {
+        final int rate = optionMap.get(Options.ACCEPT_RATE_LIMIT, 0);
+        if (rate < 0) {
+            throw log.parameterOutOfRange("acceptRateLimit");
+        }
+        final int burst = optionMap.get(Options.ACCEPT_RATE_BURST, Math.max(1, rate));
+        if (burst < 1) {
+            throw log.parameterOutOfRange("acceptRateBurst");
+        }
+        return new AcceptRateLimiter(rate, burst, System.nanoTime());
+    }
+
+    /**
+     * Determine whether connections are limited at all.  If not, there is no need to call {@link #acquire(long)} or
+     * {@link #refund()}.
+     *
+     * @return {@code true} if a token must be taken for each connection
+     */
+    boolean isLimited() {
+        return interval != 0L;
+    }
+
+    /**
+     * Try to take a token for one connection.  Only call this if the limiter {@linkplain #isLimited() is limited}.
+     *
+     * @param now the current time
+     * @return 0 if the connection may be accepted, otherwise the number of nanoseconds until a token is available
+     */
+    long acquire(final long now) {
+        long oldVal;
+        do {
+            oldVal = arrival;
+            final long wait = oldVal - tolerance - now;
+            if (wait > 0L) {
+                deferred.increment();
+                return wait;
+            }
+        } while (! arrivalUpdater.compareAndSet(this, oldVal, Math.max(oldVal, now) + interval));
+        return 0L;
+    }
+
+    /**
+     * Give back the token taken for a connection which was not accepted after all, either because nothing was waiting
+     * or because the connection could not be set up.
+     */
+    void refund() {
+        arrivalUpdater.getAndAdd(this, -interval);
+    }
+
+    /**
+     * Count a connection which was accepted, whether or not the limiter is limited.
+     */
+    void admitted() {
+        admitted.increment();
+    }
+
+    /**
+     * Convert a wait returned by {@link #acquire(long)} to whole milliseconds, rounding up so that the token is
+     * available by the time the wait is over.
+     *
+     * @param waitNanos the wait in nanoseconds
+     * @return the wait in milliseconds
+     */
+    static long toMillis(final long waitNanos) {
+        return (waitNanos + 999999L) / 1000000L;
+    }
+
+    int getRate() {
+        return rate;
+    }
+
+    int getBurst() {
+        return burst;
+    }
+
+    long getAdmittedCount() {
+        return admitted.sum();
+    }
+
+    long getDeferredCount() {
+        return deferred.sum();
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2017 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xnio.nio;
+
+import java.io.IOException;
+import java.net.Socket;
+import java.net.SocketOption;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.security.AccessController;
+
+import org.xnio.Option;
+import org.xnio.Options;
+import org.xnio.ReadPropertyAction;
+
+/**
+ * The options a server applies to each accepted socket, fixed whenever the server's options change.
+ * <p>
+ * An accepted socket starts out with the state of the listening socket, which already carries the options that can
+ * be set on a listener.  So the first socket accepted with a given set of options is probed for the values it starts
+ * out with, and every later socket only gets the options whose starting value is wrong.  In the common case this
+ * leaves no per-socket calls at all.
+ */
+final class AcceptedSocketOptions {
+    static final boolean SKIP_INHERITED;
+
+    static {
+        SKIP_INHERITED = Boolean.parseBoolean(AccessController.doPrivileged(new ReadPropertyAction("xnio.nio.accept.skip-inherited-options", "true")));
+    }
+
+    private static final int KEEP_ALIVE = 1 << 0;
+    private static final int OOB_INLINE = 1 << 1;
+    private static final int TCP_NODELAY = 1 << 2;
+    private static final int SEND_BUFFER = 1 << 3;
+    private static final int KEEP_IDLE = 1 << 4;
+    private static final int KEEP_INTERVAL = 1 << 5;
+    private static final int KEEP_COUNT = 1 << 6;
+    private static final int QUICK_ACK = 1 << 7;
+
+    private static final int ALL = KEEP_ALIVE | OOB_INLINE | TCP_NODELAY | SEND_BUFFER | KEEP_IDLE | KEEP_INTERVAL | KEEP_COUNT | QUICK_ACK;
+    private static final int UNKNOWN = -1;
+
+    private final boolean keepAlive;
+    private final boolean oobInline;
+    private final boolean tcpNoDelay;
+    private final int sendBuffer;
+    private final int keepIdle;
+    private final int keepInterval;
+    private final int keepCount;
+    private final int quickAck;
+
+    // the options which have to be set on each socket, or UNKNOWN until the first socket is probed
+    private volatile int required = SKIP_INHERITED ? UNKNOWN : ALL;
+
+    /**
+     * Construct a new instance.
+     *
+     * @param keepAlive {@code true} to enable keep-alive
+     * @param oobInline {@code true} to receive out-of-band data inline
+     * @param tcpNoDelay {@code true} to disable Nagle's algorithm
+     * @param sendBuffer the send buffer size, or -1 to leave it alone
+     * @param keepIdle the keep-alive idle time in seconds, or -1 to leave it alone
+     * @param keepInterval the keep-alive probe interval in seconds, or -1 to leave it alone
+     * @param keepCount the keep-alive probe count, or -1 to leave it alone
+     * @param quickAck 1 to enable quick acknowledgements, 0 to disable them, or -1 to leave them alone
+     */
+    AcceptedSocketOptions(final boolean keepAlive, final boolean oobInline, final boolean tcpNoDelay, final int sendBuffer, final int keepIdle, final int keepInterval, final int keepCount, final int quickAck) {
+        this.keepAlive = keepAlive;
+        this.oobInline = oobInline;
+        this.tcpNoDelay = tcpNoDelay;
+        this.sendBuffer = sendBuffer;
+        this.keepIdle = keepIdle;
+        this.keepInterval = keepInterval;
+        this.keepCount = keepCount;
+        this.quickAck = quickAck;
+    }
+
+    /**
+     * Determine whether a server option is one of the options applied to accepted sockets.
+     *
+     * @param option the option
+     * @return {@code true} if it is
+     */
+    static boolean isAcceptedSocketOption(final Option<?> option) {
+        return option == Options.KEEP_ALIVE
+            || option == Options.TCP_OOB_INLINE
+            || option == Options.TCP_NODELAY
+            || option == Options.SEND_BUFFER
+            || option == Options.TCP_KEEPIDLE
+            || option == Options.TCP_KEEPINTERVAL
+            || option == Options.TCP_KEEPCOUNT
+            || option == Options.TCP_QUICKACK;
+    }
+
+    /**
+     * Set the options which accepted sockets inherit on a listening socket.
+     *
+     * @param listener the listening socket
+     * @throws IOException if setting an option failed
+     */
+    void applyTo(final ServerSocketChannel listener) throws IOException {
+        if (SKIP_INHERITED) {
+            // quick ACK mode is not carried over to accepted sockets, so it is always set per socket
+            NioSocketOptions.setTcpOptions(listener, keepIdle, keepInterval, keepCount, -1);
+        }
+    }
+
+    /**
+     * Set these options on an accepted socket.
+     *
+     * @param channel the accepted socket
+     * @throws IOException if setting an option failed
+     */
+    void applyTo(final SocketChannel channel) throws IOException {
+        int required = this.required;
+        if (required == UNKNOWN) {
+            // racing probes of two sockets from the same listener come to the same answer
+            this.required = required = probe(channel);
+        }
+        if (required == 0) {
+            return;
+        }
+        final Socket socket = channel.socket();
+        if ((required & KEEP_ALIVE) != 0) socket.setKeepAlive(keepAlive);
+        if ((required & OOB_INLINE) != 0) socket.setOOBInline(oobInline);
+        if ((required & TCP_NODELAY) != 0) socket.setTcpNoDelay(tcpNoDelay);
+        if ((required & SEND_BUFFER) != 0 && sendBuffer > 0) socket.setSendBufferSize(sendBuffer);
+        NioSocketOptions.setTcpOptions(channel,
+                (required & KEEP_IDLE) != 0 ? keepIdle : -1,
+                (required & KEEP_INTERVAL) != 0 ? keepInterval : -1,
+                (required & KEEP_COUNT) != 0 ? keepCount : -1,
+                (required & QUICK_ACK) != 0 ? quickAck : -1);
+    }
+
+    private int probe(final SocketChannel channel) throws IOException {
+        final Socket socket = channel.socket();
+        int required = 0;
+        if (socket.getKeepAlive() != keepAlive) required |= KEEP_ALIVE;
+        if (socket.getOOBInline() != oobInline) required |= OOB_INLINE;
+        if (socket.getTcpNoDelay() != tcpNoDelay) required |= TCP_NODELAY;
+        if (sendBuffer > 0 && socket.getSendBufferSize() != sendBuffer) required |= SEND_BUFFER;
+        if (keepIdle != -1 && differs(channel, NioSocketOptions.TCP_KEEPIDLE, Integer.valueOf(keepIdle))) required |= KEEP_IDLE;
+        if (keepInterval != -1 && differs(channel, NioSocketOptions.TCP_KEEPINTERVAL, Integer.valueOf(keepInterval))) required |= KEEP_INTERVAL;
+        if (keepCount != -1 && differs(channel, NioSocketOptions.TCP_KEEPCOUNT, Integer.valueOf(keepCount))) required |= KEEP_COUNT;
+        if (quickAck != -1) required |= QUICK_ACK;
+        return required;
+    }
+
+    private static <T> boolean differs(final SocketChannel channel, final SocketOption<T> option, final T value) throws IOException {
+        return NioSocketOptions.isSupported(channel, option) && ! value.equals(channel.getOption(option));
+    }
+}
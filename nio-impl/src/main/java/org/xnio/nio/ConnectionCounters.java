@@ -0,0 +1,183 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2017 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xnio.nio;
+
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.ConcurrentModificationException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToLongFunction;
+
+import org.xnio.management.ConnectionStatistics;
+
+/**
+ * The I/O counters of one connection.  They are plain fields, written only by the thread using the connection; the
+ * worker totals read them from other threads without synchronization, so a total may miss the latest I/O.
+ */
+final class ConnectionCounters implements ConnectionStatistics {
+    long bytesRead;
+    long bytesWritten;
+    long readCount;
+    long writeCount;
+    long emptyReadCount;
+    long emptyWriteCount;
+    long transferToBytes;
+    long transferFromBytes;
+
+    void read(final long res) {
+        readCount ++;
+        if (res > 0L) {
+            bytesRead += res;
+        } else if (res == 0L) {
+            emptyReadCount ++;
+        }
+    }
+
+    void written(final long res) {
+        writeCount ++;
+        if (res > 0L) {
+            bytesWritten += res;
+        } else {
+            emptyWriteCount ++;
+        }
+    }
+
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    public long getReadCount() {
+        return readCount;
+    }
+
+    public long getWriteCount() {
+        return writeCount;
+    }
+
+    public long getEmptyReadCount() {
+        return emptyReadCount;
+    }
+
+    public long getEmptyWriteCount() {
+        return emptyWriteCount;
+    }
+
+    public long getTransferToBytes() {
+        return transferToBytes;
+    }
+
+    public long getTransferFromBytes() {
+        return transferFromBytes;
+    }
+
+    /**
+     * The counters of a worker's connections.  A connection's counters are added to the worker's running totals when it
+     * closes; the counters of open connections are found by walking the keys of each I/O thread's selector, so nothing is
+     * registered when a connection opens.  The totals of open connections may lag slightly behind.
+     */
+    static final class Totals implements ConnectionStatistics {
+        private final NioXnioWorker worker;
+        private final LongAdder bytesRead = new LongAdder();
+        private final LongAdder bytesWritten = new LongAdder();
+        private final LongAdder readCount = new LongAdder();
+        private final LongAdder writeCount = new LongAdder();
+        private final LongAdder emptyReadCount = new LongAdder();
+        private final LongAdder emptyWriteCount = new LongAdder();
+        private final LongAdder transferToBytes = new LongAdder();
+        private final LongAdder transferFromBytes = new LongAdder();
+
+        Totals(final NioXnioWorker worker) {
+            this.worker = worker;
+        }
+
+        void closed(final ConnectionCounters counters) {
+            bytesRead.add(counters.bytesRead);
+            bytesWritten.add(counters.bytesWritten);
+            readCount.add(counters.readCount);
+            writeCount.add(counters.writeCount);
+            emptyReadCount.add(counters.emptyReadCount);
+            emptyWriteCount.add(counters.emptyWriteCount);
+            transferToBytes.add(counters.transferToBytes);
+            transferFromBytes.add(counters.transferFromBytes);
+        }
+
+        private long sum(final LongAdder closedTotal, final ToLongFunction<ConnectionCounters> counter) {
+            long sum = closedTotal.sum();
+            for (WorkerThread thread : worker.getAll()) {
+                sum += sumOpen(thread.getSelector(), counter);
+            }
+            return sum;
+        }
+
+        private static long sumOpen(final Selector selector, final ToLongFunction<ConnectionCounters> counter) {
+            for (;;) try {
+                long sum = 0L;
+                for (SelectionKey key : selector.keys()) {
+                    // a cancelled key belongs to a connection which is closing, and whose counters are (or soon will be) in the running totals
+                    final Object attachment = key.attachment();
+                    if (attachment instanceof NioSocketConduit && key.isValid()) {
+                        sum += counter.applyAsLong(((NioSocketConduit) attachment).getCounters());
+                    }
+                }
+                return sum;
+            } catch (ConcurrentModificationException ignored) {
+                // the I/O thread registered or dropped a key while we walked its selector; walk it again
+            } catch (ClosedSelectorException ignored) {
+                return 0L;
+            }
+        }
+
+        public long getBytesRead() {
+            return sum(bytesRead, c -> c.bytesRead);
+        }
+
+        public long getBytesWritten() {
+            return sum(bytesWritten, c -> c.bytesWritten);
+        }
+
+        public long getReadCount() {
+            return sum(readCount, c -> c.readCount);
+        }
+
+        public long getWriteCount() {
+            return sum(writeCount, c -> c.writeCount);
+        }
+
+        public long getEmptyReadCount() {
+            return sum(emptyReadCount, c -> c.emptyReadCount);
+        }
+
+        public long getEmptyWriteCount() {
+            return sum(emptyWriteCount, c -> c.emptyWriteCount);
+        }
+
+        public long getTransferToBytes() {
+            return sum(transferToBytes, c -> c.transferToBytes);
+        }
+
+        public long getTransferFromBytes() {
+            return sum(transferFromBytes, c -> c.transferFromBytes);
+        }
+    }
+}
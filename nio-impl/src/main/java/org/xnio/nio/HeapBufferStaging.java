@@ -0,0 +1,172 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2017 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.xnio.nio;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.ScatteringByteChannel;
+import java.security.AccessController;
+
+import org.xnio.Buffers;
+import org.xnio.ByteBufferPool;
+import org.xnio.ReadPropertyAction;
+
+/**
+ * Socket and pipe I/O on heap buffers.  The JDK copies a heap buffer into a temporary direct buffer as large as the
+ * whole transfer, and keeps that buffer cached on the calling thread for good, so a few large heap writes leave every
+ * I/O thread holding a large amount of direct memory.  When staging is enabled, heap buffers are instead copied
+ * through pooled direct buffers of at most 64 KiB, one chunk per system call.
+ */
+final class HeapBufferStaging {
+    static final boolean ENABLED;
+    // the largest intermediate direct pool, whose buffers are sliced from large ones
+    private static final ByteBufferPool CHUNK_POOL;
+    static final int CHUNK_SIZE;
+
+    static {
+        ENABLED = Boolean.parseBoolean(AccessController.doPrivileged(new ReadPropertyAction("xnio.nio.stage-heap-buffers", "false")));
+        final ByteBufferPool[] intermediate = ByteBufferPool.Set.DIRECT.getIntermediate();
+        CHUNK_POOL = intermediate[intermediate.length - 1];
+        CHUNK_SIZE = CHUNK_POOL.getSize();
+    }
+
+    private HeapBufferStaging() {
+    }
+
+    static int write(final GatheringByteChannel channel, final ByteBuffer src) throws IOException {
+        if (ENABLED && ! src.isDirect() && src.hasRemaining()) {
+            return (int) stagedWrite(channel, new ByteBuffer[] { src }, 0, 1);
+        }
+        return channel.write(src);
+    }
+
+    static long write(final GatheringByteChannel channel, final ByteBuffer[] srcs, final int offset, final int length) throws IOException {
+        if (ENABLED && hasHeapRemaining(srcs, offset, length)) {
+            return stagedWrite(channel, srcs, offset, length);
+        }
+        return channel.write(srcs, offset, length);
+    }
+
+    static int read(final ScatteringByteChannel channel, final ByteBuffer dst) throws IOException {
+        if (ENABLED && ! dst.isDirect() && dst.hasRemaining()) {
+            return (int) stagedRead(channel, new ByteBuffer[] { dst }, 0, 1);
+        }
+        return channel.read(dst);
+    }
+
+    static long read(final ScatteringByteChannel channel, final ByteBuffer[] dsts, final int offset, final int length) throws IOException {
+        if (ENABLED && hasHeapRemaining(dsts, offset, length)) {
+            return stagedRead(channel, dsts, offset, length);
+        }
+        return channel.read(dsts, offset, length);
+    }
+
+    private static boolean hasHeapRemaining(final ByteBuffer[] buffers, final int offset, final int length) {
+        for (int i = 0; i < length; i ++) {
+            final ByteBuffer buffer = buffers[offset + i];
+            if (! buffer.isDirect() && buffer.hasRemaining()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static ByteBuffer allocate(final long count) {
+        return (count <= ByteBufferPool.MEDIUM_SIZE ? ByteBufferPool.MEDIUM_DIRECT : CHUNK_POOL).allocate();
+    }
+
+    /**
+     * Write the sources one chunk at a time, stopping at the first chunk the channel does not take in full.  The
+     * sources are only advanced by what was actually written.
+     */
+    static long stagedWrite(final GatheringByteChannel channel, final ByteBuffer[] srcs, final int offset, final int length) throws IOException {
+        final long cnt = Buffers.remaining(srcs, offset, length);
+        final ByteBuffer buffer = allocate(cnt);
+        try {
+            final int end = offset + length;
+            int idx = offset;
+            long total = 0L;
+            while (total < cnt) {
+                buffer.clear();
+                for (int i = idx; i < end && buffer.hasRemaining(); i ++) {
+                    final ByteBuffer src = srcs[i];
+                    final int pos = src.position();
+                    final int lim = src.limit();
+                    src.limit(pos + Math.min(lim - pos, buffer.remaining()));
+                    buffer.put(src);
+                    src.limit(lim);
+                    src.position(pos);
+                }
+                buffer.flip();
+                final int staged = buffer.remaining();
+                final int res = channel.write(buffer);
+                total += res;
+                for (int n = res; n > 0; ) {
+                    final ByteBuffer src = srcs[idx];
+                    final int k = Math.min(src.remaining(), n);
+                    src.position(src.position() + k);
+                    n -= k;
+                    if (! src.hasRemaining()) {
+                        idx ++;
+                    }
+                }
+                if (res < staged) {
+                    break;
+                }
+            }
+            return total;
+        } finally {
+            ByteBufferPool.free(buffer);
+        }
+    }
+
+    /**
+     * Read into the destinations one chunk at a time, stopping at the first chunk the channel does not fill.  End of
+     * stream is only reported if nothing was read before it.
+     */
+    static long stagedRead(final ScatteringByteChannel channel, final ByteBuffer[] dsts, final int offset, final int length) throws IOException {
+        final long cnt = Buffers.remaining(dsts, offset, length);
+        final ByteBuffer buffer = allocate(cnt);
+        try {
+            long total = 0L;
+            while (total < cnt) {
+                buffer.clear();
+                if (cnt - total < buffer.remaining()) {
+                    buffer.limit((int) (cnt - total));
+                }
+                final int wanted = buffer.remaining();
+                final int res = channel.read(buffer);
+                if (res <= 0) {
+                    return total == 0L ? res : total;
+                }
+                buffer.flip();
+                Buffers.copy(dsts, offset, length, buffer);
+                total += res;
+                if (res < wanted) {
+                    break;
+                }
+            }
+            return total;
+        } finally {
+            ByteBufferPool.free(buffer);
+        }
+    }
+}
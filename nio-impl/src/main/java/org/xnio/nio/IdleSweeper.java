@@ -0,0 +1,156 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2017 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xnio.nio;
+
+import java.security.AccessController;
+import java.util.ArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.xnio.ReadPropertyAction;
+
+/**
+ * Closes the idle connections of one I/O thread.  Each connection with an idle timeout sits in the bucket of a coarse
+ * wheel for the tick of its deadline.  Traffic only updates the connection's last activity time; the connection is
+ * moved when the sweep finds it in its bucket still active, and closed when it finds it idle.  So there is one task
+ * per tick for the whole thread, rather than one timer per connection that would be reset on every read or write.
+ * <p>
+ * The wheel is touched only by the owning thread.  The coarse clock advances once per tick, and only while some
+ * connection is being watched, so activity is recorded to within a tick and a connection is closed between one and
+ * two ticks after its timeout has passed.
+ */
+final class IdleSweeper implements Runnable {
+    static final long TICK;
+
+    static {
+        TICK = Math.max(1L, Long.parseLong(AccessController.doPrivileged(new ReadPropertyAction("xnio.nio.idle-timeout.tick", "1000"))));
+    }
+
+    private static final int BUCKET_COUNT = 64;
+    private static final long START_TIME = System.nanoTime();
+
+    private final WorkerThread thread;
+    private final ArrayList<NioSocketConduit>[] buckets;
+    private volatile long now;
+
+    // owner-only state
+    private ArrayList<NioSocketConduit> spare = new ArrayList<NioSocketConduit>();
+    private long currentTick;
+    private int size;
+    private boolean scheduled;
+
+    @SuppressWarnings("unchecked")
+    IdleSweeper(final WorkerThread thread) {
+        this.thread = thread;
+        final ArrayList<NioSocketConduit>[] buckets = new ArrayList[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i ++) {
+            buckets[i] = new ArrayList<NioSocketConduit>();
+        }
+        this.buckets = buckets;
+    }
+
+    private static long clock() {
+        return (System.nanoTime() - START_TIME) / 1000000L;
+    }
+
+    /**
+     * Get the coarse time, in milliseconds, to record as a connection's last activity.  May be called from any thread.
+     *
+     * @return the time of the most recent tick
+     */
+    long now() {
+        return now;
+    }
+
+    /**
+     * Start watching a connection.  Owner only.
+     *
+     * @param conduit the connection's conduit
+     */
+    void add(final NioSocketConduit conduit) {
+        assert Thread.currentThread() == thread;
+        if (! scheduled) {
+            // the clock stood still while nothing was being watched
+            final long now = clock();
+            this.now = now;
+            currentTick = now / TICK;
+        }
+        conduit.touch(now);
+        size ++;
+        insert(conduit, now + TICK + conduit.getIdleTimeout());
+        schedule();
+    }
+
+    int size() {
+        return size;
+    }
+
+    private void insert(final NioSocketConduit conduit, final long deadline) {
+        // never into a bucket which this tick's sweep has already passed
+        final long tick = Math.max(deadline / TICK, currentTick + 1L);
+        buckets[(int) (tick & (BUCKET_COUNT - 1))].add(conduit);
+    }
+
+    private void schedule() {
+        if (! scheduled && size > 0) try {
+            thread.executeAfter(this, TICK, TimeUnit.MILLISECONDS);
+            scheduled = true;
+        } catch (RejectedExecutionException ignored) {
+            // the thread is exiting and will close its channels anyway
+        }
+    }
+
+    public void run() {
+        scheduled = false;
+        final long now = clock();
+        this.now = now;
+        final long tick = now / TICK;
+        final long last = Math.min(tick, currentTick + BUCKET_COUNT);
+        for (long t = currentTick + 1L; t <= last; t ++) {
+            currentTick = t;
+            final int idx = (int) (t & (BUCKET_COUNT - 1));
+            final ArrayList<NioSocketConduit> bucket = buckets[idx];
+            if (bucket.isEmpty()) {
+                continue;
+            }
+            buckets[idx] = spare;
+            for (NioSocketConduit conduit : bucket) {
+                final int timeout = conduit.getIdleTimeout();
+                if (timeout <= 0 || ! conduit.getSocketChannel().isOpen()) {
+                    size --;
+                    conduit.setIdleWatched(false);
+                    continue;
+                }
+                // the last activity is only known to within a tick
+                final long deadline = conduit.getLastActivity() + TICK + timeout;
+                if (deadline <= now) {
+                    size --;
+                    conduit.setIdleWatched(false);
+                    conduit.idleTimedOut();
+                } else {
+                    insert(conduit, deadline);
+                }
+            }
+            bucket.clear();
+            spare = bucket;
+        }
+        currentTick = tick;
+        schedule();
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2017 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xnio.nio;
+
+import java.nio.channels.SelectionKey;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import static java.lang.System.nanoTime;
+import static org.xnio.nio.Log.log;
+
+/**
+ * A single daemon thread which samples the activity of every running I/O thread, and reports threads which have
+ * been stuck in one task or one ready key for longer than a threshold.
+ * <p>
+ * The I/O threads only publish a sequence number and the current activity, so the event loop takes no locks and
+ * reads no clocks on the watchdog's behalf.  A blocked activity is reported once.
+ */
+final class IoThreadWatchdog extends Thread {
+
+    private static final Object lock = new Object();
+    private static IoThreadWatchdog instance;
+
+    private final long thresholdNanos;
+    private final long intervalMillis;
+    private final ConcurrentHashMap<WorkerThread, Sample> threads = new ConcurrentHashMap<WorkerThread, Sample>();
+
+    IoThreadWatchdog(final long thresholdMillis) {
+        super("XNIO I/O thread watchdog");
+        setDaemon(true);
+        thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+        intervalMillis = Math.max(10L, thresholdMillis / 4L);
+    }
+
+    static void register(final WorkerThread thread, final long thresholdMillis) {
+        synchronized (lock) {
+            IoThreadWatchdog watchdog = instance;
+            if (watchdog == null) {
+                watchdog = instance = new IoThreadWatchdog(thresholdMillis);
+                watchdog.start();
+            }
+            watchdog.threads.put(thread, new Sample());
+        }
+    }
+
+    static void unregister(final WorkerThread thread) {
+        synchronized (lock) {
+            final IoThreadWatchdog watchdog = instance;
+            if (watchdog != null) {
+                watchdog.threads.remove(thread);
+            }
+        }
+    }
+
+    public void run() {
+        for (;;) {
+            try {
+                Thread.sleep(intervalMillis);
+            } catch (InterruptedException e) {
+                return;
+            }
+            final long now = nanoTime();
+            for (Map.Entry<WorkerThread, Sample> entry : threads.entrySet()) {
+                check(entry.getKey(), entry.getValue(), now);
+            }
+        }
+    }
+
+    void check(final WorkerThread thread, final Sample sample, final long now) {
+        final long sequence = thread.getActivitySequence();
+        final Object activity = thread.getActivity();
+        if (sequence != sample.sequence || activity == null) {
+            sample.sequence = sequence;
+            sample.since = now;
+            return;
+        }
+        final long elapsed = now - sample.since;
+        if (elapsed < thresholdNanos || sample.reported == sequence) {
+            return;
+        }
+        sample.reported = sequence;
+        thread.incrementBlockedCount();
+        final Throwable trace = new Throwable("Stack trace of " + thread.getName());
+        trace.setStackTrace(thread.getStackTrace());
+        log.ioThreadBlocked(thread.getName(), TimeUnit.NANOSECONDS.toMillis(elapsed), describe(activity), trace);
+    }
+
+    private static String describe(final Object activity) {
+        if (activity instanceof SelectionKey) {
+            final SelectionKey key = (SelectionKey) activity;
+            return "handling of channel " + key.channel() + " (" + key.attachment() + ")";
+        }
+        return "task " + activity;
+    }
+
+    static final class Sample {
+        long sequence = -1L;
+        long since;
+        long reported = -1L;
+    }
+}
@@ -125,6 +125,10 @@ interface Log extends BasicLogger {
     @Message(id = 8000, value = "Received an I/O error on selection: %s")
     void selectionError(IOException e);
 
+    @LogMessage(level = WARN)
+    @Message(id = 8001, value = "I/O thread %s has been blocked for %d ms in %s")
+    void ioThreadBlocked(String threadName, long millis, String activity, @Cause Throwable stackTrace);
+
     // Trace
 
     @LogMessage(level = TRACE)
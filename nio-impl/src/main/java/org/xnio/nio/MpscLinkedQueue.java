@@ -0,0 +1,108 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2017 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xnio.nio;
+
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * An unbounded, lock-free, multiple-producer single-consumer linked queue.  Any thread may {@link #offer(Object) offer}
+ * items, but only one thread (typically the owning I/O thread) may {@link #poll()} or {@link #isEmpty() inspect} the
+ * queue.
+ *
+ * @param <E> the element type
+ */
+final class MpscLinkedQueue<E> {
+
+    // consumer-owned
+    private Node<E> head;
+
+    @SuppressWarnings("unused")
+    private volatile Node<E> tail;
+
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<MpscLinkedQueue, Node> tailUpdater = AtomicReferenceFieldUpdater.newUpdater(MpscLinkedQueue.class, Node.class, "tail");
+
+    MpscLinkedQueue() {
+        final Node<E> stub = new Node<E>(null);
+        head = stub;
+        tail = stub;
+    }
+
+    /**
+     * Add an item to the queue.  May be called from any thread.
+     *
+     * @param item the item to add (must not be {@code null})
+     */
+    @SuppressWarnings("unchecked")
+    void offer(final E item) {
+        assert item != null;
+        final Node<E> node = new Node<E>(item);
+        final Node<E> prev = tailUpdater.getAndSet(this, node);
+        prev.lazySetNext(node);
+    }
+
+    /**
+     * Remove the item at the head of the queue.  Must only be called from the consumer thread.
+     *
+     * @return the item, or {@code null} if the queue is empty
+     */
+    E poll() {
+        final Node<E> head = this.head;
+        Node<E> next = head.next;
+        if (next == null) {
+            if (head == tail) {
+                return null;
+            }
+            // a producer has swapped the tail but not yet linked it in; it will do so momentarily
+            do {
+                next = head.next;
+            } while (next == null);
+        }
+        final E item = next.item;
+        next.item = null;
+        this.head = next;
+        return item;
+    }
+
+    /**
+     * Determine whether the queue is empty.  Must only be called from the consumer thread.
+     *
+     * @return {@code true} if the queue is empty, {@code false} otherwise
+     */
+    boolean isEmpty() {
+        return head == tail;
+    }
+
+    static final class Node<E> {
+        E item;
+        @SuppressWarnings("unused")
+        volatile Node<E> next;
+
+        @SuppressWarnings("rawtypes")
+        private static final AtomicReferenceFieldUpdater<Node, Node> nextUpdater = AtomicReferenceFieldUpdater.newUpdater(Node.class, Node.class, "next");
+
+        Node(final E item) {
+            this.item = item;
+        }
+
+        void lazySetNext(final Node<E> next) {
+            nextUpdater.lazySet(this, next);
+        }
+    }
+}
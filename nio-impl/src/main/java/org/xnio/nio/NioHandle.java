@@ -18,25 +18,58 @@
 
 package org.xnio.nio;
 
+import java.io.IOException;
 import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectableChannel;
 import java.nio.channels.SelectionKey;
+import java.security.AccessController;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+
+import org.xnio.ReadPropertyAction;
+import org.xnio.Xnio;
 
 import static org.xnio.Bits.allAreClear;
 import static org.xnio.Bits.allAreSet;
+import static org.xnio.nio.Log.log;
 
 /**
  * @author <a href="mailto:david.lloyd@redhat.com">David M. Lloyd</a>
  */
 abstract class NioHandle {
+    static final boolean PARK_AWAIT;
+
+    static {
+        PARK_AWAIT = Boolean.parseBoolean(AccessController.doPrivileged(new ReadPropertyAction("xnio.nio.park-await", "false")));
+    }
+
+    private static final int USER_MASK = 0xff;
+    private static final int AWAIT_SHIFT = 8;
+
     private final WorkerThread workerThread;
     private final SelectionKey selectionKey;
 
+    /**
+     * When parking is enabled, the ops resumed by the user in the low byte and the ops awaited by parked threads in
+     * the next byte; the interest set of the key is the union of the two.
+     */
+    private volatile int parkState;
+    // parked threads, guarded by this
+    private Waiter waiters;
+
+    private static final AtomicIntegerFieldUpdater<NioHandle> parkStateUpdater = AtomicIntegerFieldUpdater.newUpdater(NioHandle.class, "parkState");
+
     protected NioHandle(final WorkerThread workerThread, final SelectionKey selectionKey) {
         this.workerThread = workerThread;
         this.selectionKey = selectionKey;
     }
 
     void resume(final int ops) {
+        if (PARK_AWAIT) {
+            addParkState(ops);
+            return;
+        }
         try {
             if (! allAreSet(selectionKey.interestOps(), ops)) {
                 workerThread.setOps(selectionKey, ops);
@@ -50,6 +83,10 @@ abstract class NioHandle {
                 handleReady(ops);
             }
         });
+        if (PARK_AWAIT) {
+            addParkState(ops);
+            return;
+        }
         try {
             if (! allAreSet(selectionKey.interestOps(), ops)) {
                 workerThread.setOps(selectionKey, ops);
@@ -58,6 +95,10 @@ abstract class NioHandle {
     }
 
     void suspend(final int ops) {
+        if (PARK_AWAIT) {
+            removeParkState(ops);
+            return;
+        }
         try {
             if (! allAreClear(selectionKey.interestOps(), ops)) {
                 workerThread.clearOps(selectionKey, ops);
@@ -66,6 +107,9 @@ abstract class NioHandle {
     }
 
     boolean isResumed(final int ops) {
+        if (PARK_AWAIT) {
+            return selectionKey.isValid() && allAreSet(parkState, ops);
+        }
         try {
             return allAreSet(selectionKey.interestOps(), ops);
         } catch (CancelledKeyException ignored) {
@@ -73,6 +117,179 @@ abstract class NioHandle {
         }
     }
 
+    void await(final SelectableChannel channel, final int op) throws IOException {
+        await(channel, op, 0L, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Wait for the given operation on the channel.  With parking enabled, a thread other than the owning I/O thread
+     * parks until the I/O thread sees the operation become ready, so that no temporary selector is needed; otherwise
+     * the channel is registered with a temporary selector as usual.
+     *
+     * @param channel the channel
+     * @param op the operation to wait for
+     * @param time the maximum time to wait, or 0 to wait indefinitely
+     * @param unit the time unit
+     * @throws IOException if an I/O error occurs or the thread is interrupted
+     */
+    void await(final SelectableChannel channel, final int op, final long time, final TimeUnit unit) throws IOException {
+        if (! PARK_AWAIT || Thread.currentThread() == workerThread) {
+            final NioXnio xnio = (NioXnio) workerThread.getWorker().getXnio();
+            if (time <= 0L) {
+                SelectorUtils.await(xnio, channel, op);
+            } else {
+                SelectorUtils.await(xnio, channel, op, time, unit);
+            }
+            return;
+        }
+        Xnio.checkBlockingAllowed();
+        final Waiter waiter = new Waiter(Thread.currentThread(), op);
+        synchronized (this) {
+            waiter.next = waiters;
+            waiters = waiter;
+        }
+        addParkState(op << AWAIT_SHIFT);
+        try {
+            if (! selectionKey.isValid()) {
+                return;
+            }
+            if (time <= 0L) {
+                while (! waiter.ready && ! Thread.currentThread().isInterrupted()) {
+                    LockSupport.park(this);
+                }
+            } else {
+                final long deadline = System.nanoTime() + unit.toNanos(time);
+                long remaining;
+                while (! waiter.ready && ! Thread.currentThread().isInterrupted() && (remaining = deadline - System.nanoTime()) > 0L) {
+                    LockSupport.parkNanos(this, remaining);
+                }
+            }
+            if (Thread.currentThread().isInterrupted()) {
+                throw log.interruptedIO();
+            }
+        } finally {
+            if (! waiter.ready) {
+                removeWaiter(waiter);
+            }
+        }
+    }
+
+    /**
+     * Wake the threads parked for any of the given ready ops, and drop the ops which the user has not resumed.  Only
+     * called from the owning I/O thread when parking is enabled.
+     *
+     * @param readyOps the ready ops of the key
+     * @return the ready ops to pass on to {@link #handleReady(int)}
+     */
+    int releaseWaiters(final int readyOps) {
+        final int state = parkState;
+        final int released = (state >>> AWAIT_SHIFT) & readyOps;
+        if (released != 0) {
+            synchronized (this) {
+                Waiter prev = null;
+                for (Waiter waiter = waiters; waiter != null; waiter = waiter.next) {
+                    if ((waiter.op & released) != 0) {
+                        if (prev == null) {
+                            waiters = waiter.next;
+                        } else {
+                            prev.next = waiter.next;
+                        }
+                        waiter.ready = true;
+                        LockSupport.unpark(waiter.thread);
+                    } else {
+                        prev = waiter;
+                    }
+                }
+                updateAwaitedOps();
+            }
+        }
+        removeParkState(0);
+        return readyOps & parkState & USER_MASK;
+    }
+
+    /**
+     * Wake every parked thread because the key is being cancelled.
+     */
+    void releaseAllWaiters() {
+        if (PARK_AWAIT && parkState >>> AWAIT_SHIFT != 0) {
+            synchronized (this) {
+                for (Waiter waiter = waiters; waiter != null; waiter = waiter.next) {
+                    waiter.ready = true;
+                    LockSupport.unpark(waiter.thread);
+                }
+                waiters = null;
+                updateAwaitedOps();
+            }
+        }
+    }
+
+    private void removeWaiter(final Waiter waiter) {
+        synchronized (this) {
+            Waiter prev = null;
+            for (Waiter current = waiters; current != null; current = current.next) {
+                if (current == waiter) {
+                    if (prev == null) {
+                        waiters = current.next;
+                    } else {
+                        prev.next = current.next;
+                    }
+                    break;
+                }
+                prev = current;
+            }
+            updateAwaitedOps();
+        }
+        // the interest op is left for the I/O thread to drop the next time it comes up
+    }
+
+    // call with lock held
+    private void updateAwaitedOps() {
+        int awaited = 0;
+        for (Waiter waiter = waiters; waiter != null; waiter = waiter.next) {
+            awaited |= waiter.op;
+        }
+        int oldVal;
+        do {
+            oldVal = parkState;
+        } while (! parkStateUpdater.compareAndSet(this, oldVal, oldVal & USER_MASK | awaited << AWAIT_SHIFT));
+    }
+
+    private void addParkState(final int bits) {
+        int oldVal;
+        do {
+            oldVal = parkState;
+            if (allAreSet(oldVal, bits)) {
+                break;
+            }
+        } while (! parkStateUpdater.compareAndSet(this, oldVal, oldVal | bits));
+        final int ops = (bits | bits >>> AWAIT_SHIFT) & USER_MASK;
+        try {
+            if (! allAreSet(selectionKey.interestOps(), ops)) {
+                workerThread.setOps(selectionKey, ops);
+            }
+        } catch (CancelledKeyException ignored) {}
+    }
+
+    private void removeParkState(final int ops) {
+        int oldVal, newVal;
+        do {
+            oldVal = parkState;
+            newVal = oldVal & ~ops;
+        } while (oldVal != newVal && ! parkStateUpdater.compareAndSet(this, oldVal, newVal));
+        try {
+            final int unwanted = selectionKey.interestOps() & ~(newVal | newVal >>> AWAIT_SHIFT) & USER_MASK;
+            if (unwanted != 0) {
+                workerThread.clearOps(selectionKey, unwanted);
+                // re-check in case a thread started waiting or the user resumed while the ops were being cleared
+                final int state = parkState;
+                final int wanted = unwanted & (state | state >>> AWAIT_SHIFT);
+                if (wanted != 0) {
+                    workerThread.setOps(selectionKey, wanted);
+                }
+            }
+        } catch (CancelledKeyException ignored) {}
+    }
+
     abstract void handleReady(final int ops);
 
     abstract void forceTermination();
@@ -86,4 +303,17 @@ abstract class NioHandle {
     SelectionKey getSelectionKey() {
         return selectionKey;
     }
+
+    static final class Waiter {
+        final Thread thread;
+        final int op;
+        volatile boolean ready;
+        // guarded by the handle
+        Waiter next;
+
+        Waiter(final Thread thread, final int op) {
+            this.thread = thread;
+            this.op = op;
+        }
+    }
 }
@@ -114,7 +114,7 @@ final class NioPipeSinkConduit extends NioHandle implements StreamSinkConduit {
     }
 
     public int write(final ByteBuffer src) throws IOException {
-        int res = sinkChannel.write(src);
+        int res = HeapBufferStaging.write(sinkChannel, src);
         checkWriteTimeout(res > 0);
         return res;
     }
@@ -123,7 +123,7 @@ final class NioPipeSinkConduit extends NioHandle implements StreamSinkConduit {
         if (length == 1) {
             return write(srcs[offset]);
         }
-        long res = sinkChannel.write(srcs, offset, length);
+        long res = HeapBufferStaging.write(sinkChannel, srcs, offset, length);
         checkWriteTimeout(res > 0L);
         return res;
     }
@@ -184,12 +184,12 @@ final class NioPipeSinkConduit extends NioHandle implements StreamSinkConduit {
 
     public void awaitWritable() throws IOException {
         Xnio.checkBlockingAllowed();
-        SelectorUtils.await((NioXnio)getWorker().getXnio(), sinkChannel, SelectionKey.OP_WRITE);
+        await(sinkChannel, SelectionKey.OP_WRITE);
     }
 
     public void awaitWritable(final long time, final TimeUnit timeUnit) throws IOException {
         Xnio.checkBlockingAllowed();
-        SelectorUtils.await((NioXnio)getWorker().getXnio(), sinkChannel, SelectionKey.OP_WRITE, time, timeUnit);
+        await(sinkChannel, SelectionKey.OP_WRITE, time, timeUnit);
     }
 
     public XnioIoThread getWriteThread() {
@@ -117,7 +117,7 @@ final class NioPipeSourceConduit extends NioHandle implements StreamSourceCondui
     public int read(final ByteBuffer dst) throws IOException {
         int res;
         try {
-            res = sourceChannel.read(dst);
+            res = HeapBufferStaging.read(sourceChannel, dst);
         } catch (ClosedChannelException e) {
             return -1;
         }
@@ -131,7 +131,7 @@ final class NioPipeSourceConduit extends NioHandle implements StreamSourceCondui
         }
         long res;
         try {
-            res = sourceChannel.read(dsts, offset, length);
+            res = HeapBufferStaging.read(sourceChannel, dsts, offset, length);
         } catch (ClosedChannelException e) {
             return -1L;
         }
@@ -177,12 +177,12 @@ final class NioPipeSourceConduit extends NioHandle implements StreamSourceCondui
 
     public void awaitReadable() throws IOException {
         Xnio.checkBlockingAllowed();
-        SelectorUtils.await((NioXnio)getWorker().getXnio(), sourceChannel, SelectionKey.OP_READ);
+        await(sourceChannel, SelectionKey.OP_READ);
     }
 
     public void awaitReadable(final long time, final TimeUnit timeUnit) throws IOException {
         Xnio.checkBlockingAllowed();
-        SelectorUtils.await((NioXnio)getWorker().getXnio(), sourceChannel, SelectionKey.OP_READ, time, timeUnit);
+        await(sourceChannel, SelectionKey.OP_READ, time, timeUnit);
     }
 
     public XnioIoThread getReadThread() {
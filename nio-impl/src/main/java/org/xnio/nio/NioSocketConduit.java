@@ -31,6 +31,9 @@ import java.nio.channels.SocketChannel;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 import org.xnio.Bits;
+import org.xnio.Buffers;
+import org.xnio.ByteBufferPool;
+import org.xnio.IoUtils;
 import org.xnio.Xnio;
 import org.xnio.XnioIoThread;
 import org.xnio.XnioWorker;
@@ -38,17 +41,19 @@ import org.xnio.channels.ReadTimeoutException;
 import org.xnio.channels.StreamSinkChannel;
 import org.xnio.channels.StreamSourceChannel;
 import org.xnio.channels.WriteTimeoutException;
+import org.xnio.conduits.BufferingSinkConduit;
 import org.xnio.conduits.Conduits;
 import org.xnio.conduits.ReadReadyHandler;
 import org.xnio.conduits.StreamSinkConduit;
 import org.xnio.conduits.StreamSourceConduit;
 import org.xnio.conduits.WriteReadyHandler;
 
-final class NioSocketConduit extends NioHandle implements StreamSourceConduit, StreamSinkConduit {
+final class NioSocketConduit extends NioHandle implements StreamSourceConduit, StreamSinkConduit, BufferingSinkConduit {
     private final SocketChannel socketChannel;
     private final NioSocketStreamConnection connection;
     private ReadReadyHandler readReadyHandler;
     private WriteReadyHandler writeReadyHandler;
+    private final ConnectionCounters counters = new ConnectionCounters();
 
     @SuppressWarnings("unused")
     private volatile int readTimeout;
@@ -64,6 +69,26 @@ final class NioSocketConduit extends NioHandle implements StreamSourceConduit, S
     @SuppressWarnings("rawtypes")
     private static final AtomicIntegerFieldUpdater<NioSocketConduit> writeTimeoutUpdater = AtomicIntegerFieldUpdater.newUpdater(NioSocketConduit.class, "writeTimeout");
 
+    @SuppressWarnings("unused")
+    private volatile int idleTimeout;
+    private long lastActivity;
+    // owner-only
+    private boolean idleWatched;
+
+    private static final AtomicIntegerFieldUpdater<NioSocketConduit> idleTimeoutUpdater = AtomicIntegerFieldUpdater.newUpdater(NioSocketConduit.class, "idleTimeout");
+
+    private static final ByteBufferPool COALESCE_POOL = ByteBufferPool.MEDIUM_DIRECT;
+
+    private volatile boolean writeCoalescing;
+    // data written but not yet sent to the socket; guarded by this
+    private volatile ByteBuffer coalesced;
+    // the write interest is only held to send the coalesced data; guarded by this
+    private volatile boolean flushResumed;
+    // guarded by this
+    private boolean terminatePending;
+    // owner-only
+    private boolean flushQueued;
+
     NioSocketConduit(final WorkerThread workerThread, final SelectionKey selectionKey, final NioSocketStreamConnection connection) {
         super(workerThread, selectionKey);
         this.connection = connection;
@@ -90,8 +115,10 @@ final class NioSocketConduit extends NioHandle implements StreamSourceConduit, S
             } catch (Throwable ignored) {
             }
             if (Bits.allAreSet(ops, SelectionKey.OP_WRITE)) try {
-                if (isWriteShutdown()) suspendWrites();
-                writeReadyHandler.writeReady();
+                if (coalesced == null && ! flushResumed || coalescedWriteReady()) {
+                    if (isWriteShutdown()) suspendWrites();
+                    writeReadyHandler.writeReady();
+                }
             } catch (Throwable ignored) {
             }
         } catch (CancelledKeyException ignored) {}
@@ -115,6 +142,193 @@ final class NioSocketConduit extends NioHandle implements StreamSourceConduit, S
         if (write != null) write.terminated();
     }
 
+    // Idle timeout
+
+    int getAndSetIdleTimeout(int newVal) {
+        final int oldVal = idleTimeoutUpdater.getAndSet(this, newVal);
+        if (newVal > 0) {
+            final WorkerThread thread = getWorkerThread();
+            if (Thread.currentThread() == thread) {
+                watchIdle();
+            } else {
+                thread.execute(new Runnable() {
+                    public void run() {
+                        watchIdle();
+                    }
+                });
+            }
+        }
+        return oldVal;
+    }
+
+    int getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    private void watchIdle() {
+        // a conduit whose timeout was cleared stays on the wheel until the next sweep finds it
+        if (! idleWatched && idleTimeout > 0 && socketChannel.isOpen()) {
+            idleWatched = true;
+            getWorkerThread().getIdleSweeper().add(this);
+        }
+    }
+
+    void setIdleWatched(final boolean idleWatched) {
+        this.idleWatched = idleWatched;
+    }
+
+    void touch(final long now) {
+        lastActivity = now;
+    }
+
+    long getLastActivity() {
+        return lastActivity;
+    }
+
+    void idleTimedOut() {
+        log.tracef("Closing idle connection %s", connection);
+        IoUtils.safeClose(connection);
+    }
+
+    // Write coalescing
+
+    boolean getAndSetWriteCoalescing(final boolean newVal) {
+        final boolean oldVal = writeCoalescing;
+        writeCoalescing = newVal;
+        return oldVal;
+    }
+
+    boolean isWriteCoalescing() {
+        return writeCoalescing;
+    }
+
+    private synchronized long writeCoalesced(final ByteBuffer[] srcs, final int offset, final int length) throws IOException {
+        final long cnt = Buffers.remaining(srcs, offset, length);
+        ByteBuffer buffer = coalesced;
+        if (writeCoalescing && Thread.currentThread() == getWorkerThread()) {
+            if (buffer == null && cnt < COALESCE_POOL.getSize()) {
+                coalesced = buffer = COALESCE_POOL.allocate();
+            }
+            if (buffer != null && cnt <= buffer.remaining()) {
+                Buffers.copy(buffer, srcs, offset, length);
+                if (! flushQueued) {
+                    flushQueued = true;
+                    getWorkerThread().flushAtEndOfLoop(this);
+                }
+                return cnt;
+            }
+        }
+        final long res;
+        if (buffer == null) {
+            res = HeapBufferStaging.write(socketChannel, srcs, offset, length);
+            counters.written(res);
+            checkWriteTimeout(res > 0L);
+            return res;
+        }
+        // too much to gather, so send it along with what was gathered before it
+        final ByteBuffer[] all = new ByteBuffer[length + 1];
+        all[0] = buffer;
+        System.arraycopy(srcs, offset, all, 1, length);
+        buffer.flip();
+        try {
+            res = HeapBufferStaging.write(socketChannel, all, 0, all.length);
+        } finally {
+            buffer.compact();
+        }
+        counters.written(res);
+        checkWriteTimeout(res > 0L);
+        if (buffer.position() == 0) {
+            releaseCoalesced();
+        }
+        return cnt - Buffers.remaining(srcs, offset, length);
+    }
+
+    // holding this
+    private boolean drainCoalesced() throws IOException {
+        final ByteBuffer buffer = coalesced;
+        if (buffer == null) {
+            return true;
+        }
+        final int res;
+        buffer.flip();
+        try {
+            res = socketChannel.write(buffer);
+        } finally {
+            buffer.compact();
+        }
+        counters.written(res);
+        checkWriteTimeout(res > 0);
+        if (buffer.position() > 0) {
+            return false;
+        }
+        releaseCoalesced();
+        return true;
+    }
+
+    // holding this
+    private void releaseCoalesced() {
+        final ByteBuffer buffer = coalesced;
+        if (buffer != null) {
+            coalesced = null;
+            ByteBufferPool.free(buffer);
+        }
+    }
+
+    public long getBufferedByteCount() {
+        if (coalesced == null) {
+            return 0L;
+        }
+        synchronized (this) {
+            final ByteBuffer buffer = coalesced;
+            return buffer == null ? 0L : buffer.position();
+        }
+    }
+
+    synchronized void discardCoalesced() {
+        terminatePending = false;
+        releaseCoalesced();
+    }
+
+    /**
+     * Send the data gathered during this loop iteration.  If the socket cannot take all of it, the write interest is
+     * held until it can, without telling a write handler which did not ask for it.  Owner only.
+     */
+    void flushCoalesced() {
+        flushQueued = false;
+        try {
+            if (! flush()) synchronized (this) {
+                if (coalesced != null && ! isResumed(SelectionKey.OP_WRITE)) {
+                    flushResumed = true;
+                    resume(SelectionKey.OP_WRITE);
+                }
+            }
+        } catch (IOException e) {
+            log.tracef(e, "Failed to send coalesced writes on %s", connection);
+            IoUtils.safeClose(connection);
+        }
+    }
+
+    private boolean coalescedWriteReady() {
+        final boolean flushed;
+        try {
+            flushed = flush();
+        } catch (IOException e) {
+            log.tracef(e, "Failed to send coalesced writes on %s", connection);
+            IoUtils.safeClose(connection);
+            return false;
+        }
+        synchronized (this) {
+            if (! flushResumed) {
+                return true;
+            }
+            if (flushed) {
+                flushResumed = false;
+                suspend(SelectionKey.OP_WRITE);
+            }
+            return false;
+        }
+    }
+
     // Write methods
 
     int getAndSetWriteTimeout(int newVal) {
@@ -126,6 +340,9 @@ final class NioSocketConduit extends NioHandle implements StreamSourceConduit, S
     }
 
     private void checkWriteTimeout(final boolean xfer) throws WriteTimeoutException {
+        if (xfer && idleTimeout > 0) {
+            lastActivity = getWorkerThread().getIdleSweeper().now();
+        }
         int timeout = writeTimeout;
         if (timeout > 0) {
             if (xfer) {
@@ -140,7 +357,11 @@ final class NioSocketConduit extends NioHandle implements StreamSourceConduit, S
     }
 
     public final long transferFrom(final FileChannel src, final long position, final long count) throws IOException {
+        if (coalesced != null && ! flush()) {
+            return 0L;
+        }
         long res = src.transferTo(position, count, socketChannel);
+        counters.transferFromBytes += res;
         checkWriteTimeout(res > 0L);
         return res;
     }
@@ -150,7 +371,11 @@ final class NioSocketConduit extends NioHandle implements StreamSourceConduit, S
     }
 
     public int write(final ByteBuffer src) throws IOException {
-        int res = socketChannel.write(src);
+        if (writeCoalescing || coalesced != null) {
+            return (int) writeCoalesced(new ByteBuffer[] { src }, 0, 1);
+        }
+        int res = HeapBufferStaging.write(socketChannel, src);
+        counters.written(res);
         checkWriteTimeout(res > 0);
         return res;
     }
@@ -159,7 +384,11 @@ final class NioSocketConduit extends NioHandle implements StreamSourceConduit, S
         if (length == 1) {
             return write(srcs[offset]);
         }
-        long res = socketChannel.write(srcs, offset, length);
+        if (writeCoalescing || coalesced != null) {
+            return writeCoalesced(srcs, offset, length);
+        }
+        long res = HeapBufferStaging.write(socketChannel, srcs, offset, length);
+        counters.written(res);
         checkWriteTimeout(res > 0L);
         return res;
     }
@@ -175,10 +404,30 @@ final class NioSocketConduit extends NioHandle implements StreamSourceConduit, S
     }
 
     public boolean flush() throws IOException {
+        if (coalesced == null) {
+            return true;
+        }
+        synchronized (this) {
+            if (! drainCoalesced()) {
+                return false;
+            }
+            if (! terminatePending) {
+                return true;
+            }
+            terminatePending = false;
+        }
+        terminateWrites();
         return true;
     }
 
     public void terminateWrites() throws IOException {
+        if (coalesced != null) synchronized (this) {
+            if (! drainCoalesced()) {
+                // finished by the flush which sends the rest
+                terminatePending = true;
+                return;
+            }
+        }
         if (connection.writeClosed()) try {
             if (getSelectionKey().isValid()) {
                 suspend(SelectionKey.OP_WRITE);
@@ -195,6 +444,9 @@ final class NioSocketConduit extends NioHandle implements StreamSourceConduit, S
     }
 
     public void truncateWrites() throws IOException {
+        if (coalesced != null) {
+            discardCoalesced();
+        }
         terminateWrites();
     }
 
@@ -210,11 +462,25 @@ final class NioSocketConduit extends NioHandle implements StreamSourceConduit, S
     }
 
     public void resumeWrites() {
-        resume(SelectionKey.OP_WRITE);
+        if (writeCoalescing || coalesced != null) synchronized (this) {
+            flushResumed = false;
+            resume(SelectionKey.OP_WRITE);
+        } else {
+            resume(SelectionKey.OP_WRITE);
+        }
     }
 
     public void suspendWrites() {
-        suspend(SelectionKey.OP_WRITE);
+        if (writeCoalescing || coalesced != null) synchronized (this) {
+            if (coalesced != null) {
+                // keep the interest until the coalesced data is sent
+                flushResumed = true;
+            } else {
+                suspend(SelectionKey.OP_WRITE);
+            }
+        } else {
+            suspend(SelectionKey.OP_WRITE);
+        }
     }
 
     public void wakeupWrites() {
@@ -222,7 +488,7 @@ final class NioSocketConduit extends NioHandle implements StreamSourceConduit, S
     }
 
     public boolean isWriteResumed() {
-        return isResumed(SelectionKey.OP_WRITE);
+        return isResumed(SelectionKey.OP_WRITE) && ! flushResumed;
     }
 
     public void awaitWritable() throws IOException {
@@ -230,7 +496,7 @@ final class NioSocketConduit extends NioHandle implements StreamSourceConduit, S
         if (isWriteShutdown()) {
             return;
         }
-        SelectorUtils.await((NioXnio)getWorker().getXnio(), socketChannel, SelectionKey.OP_WRITE);
+        await(socketChannel, SelectionKey.OP_WRITE);
     }
 
     public void awaitWritable(final long time, final TimeUnit timeUnit) throws IOException {
@@ -238,7 +504,7 @@ final class NioSocketConduit extends NioHandle implements StreamSourceConduit, S
         if (isWriteShutdown()) {
             return;
         }
-        SelectorUtils.await((NioXnio)getWorker().getXnio(), socketChannel, SelectionKey.OP_WRITE, time, timeUnit);
+        await(socketChannel, SelectionKey.OP_WRITE, time, timeUnit);
     }
 
     public XnioIoThread getWriteThread() {
@@ -260,6 +526,9 @@ final class NioSocketConduit extends NioHandle implements StreamSourceConduit, S
     }
 
     private void checkReadTimeout(final boolean xfer) throws ReadTimeoutException {
+        if (xfer && idleTimeout > 0) {
+            lastActivity = getWorkerThread().getIdleSweeper().now();
+        }
         int timeout = readTimeout;
         if (timeout > 0) {
             if (xfer) {
@@ -275,6 +544,7 @@ final class NioSocketConduit extends NioHandle implements StreamSourceConduit, S
 
     public long transferTo(final long position, final long count, final FileChannel target) throws IOException {
         long res = target.transferFrom(socketChannel, position, count);
+        counters.transferToBytes += res;
         checkReadTimeout(res > 0L);
         return res;
     }
@@ -286,10 +556,11 @@ final class NioSocketConduit extends NioHandle implements StreamSourceConduit, S
     public int read(final ByteBuffer dst) throws IOException {
         int res;
         try {
-            res = socketChannel.read(dst);
+            res = HeapBufferStaging.read(socketChannel, dst);
         } catch (ClosedChannelException e) {
             return -1;
         }
+        counters.read(res);
         if (res != -1) checkReadTimeout(res > 0);
         else terminateReads();
         return res;
@@ -301,10 +572,11 @@ final class NioSocketConduit extends NioHandle implements StreamSourceConduit, S
         }
         long res;
         try {
-            res = socketChannel.read(dsts, offset, length);
+            res = HeapBufferStaging.read(socketChannel, dsts, offset, length);
         } catch (ClosedChannelException e) {
             return -1L;
         }
+        counters.read(res);
         if (res != -1L) checkReadTimeout(res > 0L);
         else terminateReads();
         return res;
@@ -355,12 +627,12 @@ final class NioSocketConduit extends NioHandle implements StreamSourceConduit, S
 
     public void awaitReadable() throws IOException {
         Xnio.checkBlockingAllowed();
-        SelectorUtils.await((NioXnio)getWorker().getXnio(), socketChannel, SelectionKey.OP_READ);
+        await(socketChannel, SelectionKey.OP_READ);
     }
 
     public void awaitReadable(final long time, final TimeUnit timeUnit) throws IOException {
         Xnio.checkBlockingAllowed();
-        SelectorUtils.await((NioXnio)getWorker().getXnio(), socketChannel, SelectionKey.OP_READ, time, timeUnit);
+        await(socketChannel, SelectionKey.OP_READ, time, timeUnit);
     }
 
     public XnioIoThread getReadThread() {
@@ -374,4 +646,8 @@ final class NioSocketConduit extends NioHandle implements StreamSourceConduit, S
     SocketChannel getSocketChannel() {
         return socketChannel;
     }
+
+    ConnectionCounters getCounters() {
+        return counters;
+    }
 }
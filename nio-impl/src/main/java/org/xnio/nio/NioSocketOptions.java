@@ -0,0 +1,183 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2017 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xnio.nio;
+
+import java.io.IOException;
+import java.net.SocketOption;
+import java.net.StandardSocketOptions;
+import java.nio.channels.NetworkChannel;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+
+import org.xnio.Option;
+import org.xnio.OptionMap;
+import org.xnio.Options;
+
+import static org.xnio.nio.Log.log;
+
+/**
+ * Socket options which are not available on every JDK this provider runs on, looked up reflectively.  An option
+ * which is not available is {@code null}.
+ */
+final class NioSocketOptions {
+
+    private NioSocketOptions() {
+    }
+
+    private static final String EXTENDED_SOCKET_OPTIONS = "jdk.net.ExtendedSocketOptions";
+
+    /**
+     * {@code SO_REUSEPORT}, from Java 9.
+     */
+    static final SocketOption<Boolean> SO_REUSEPORT = lookup(StandardSocketOptions.class.getName(), "SO_REUSEPORT");
+
+    /**
+     * {@code SO_INCOMING_NAPI_ID}, from Java 15 on Linux.
+     */
+    static final SocketOption<Integer> SO_INCOMING_NAPI_ID = lookup(EXTENDED_SOCKET_OPTIONS, "SO_INCOMING_NAPI_ID");
+
+    /**
+     * {@code TCP_KEEPIDLE}, from Java 11.
+     */
+    static final SocketOption<Integer> TCP_KEEPIDLE = lookup(EXTENDED_SOCKET_OPTIONS, "TCP_KEEPIDLE");
+
+    /**
+     * {@code TCP_KEEPINTERVAL}, from Java 11.
+     */
+    static final SocketOption<Integer> TCP_KEEPINTERVAL = lookup(EXTENDED_SOCKET_OPTIONS, "TCP_KEEPINTERVAL");
+
+    /**
+     * {@code TCP_KEEPCOUNT}, from Java 11.
+     */
+    static final SocketOption<Integer> TCP_KEEPCOUNT = lookup(EXTENDED_SOCKET_OPTIONS, "TCP_KEEPCOUNT");
+
+    /**
+     * {@code TCP_QUICKACK}, from Java 10 on Linux.
+     */
+    static final SocketOption<Boolean> TCP_QUICKACK = lookup(EXTENDED_SOCKET_OPTIONS, "TCP_QUICKACK");
+
+    @SuppressWarnings("unchecked")
+    private static <T> SocketOption<T> lookup(final String className, final String fieldName) {
+        return AccessController.doPrivileged(new PrivilegedAction<SocketOption<T>>() {
+            public SocketOption<T> run() {
+                try {
+                    return (SocketOption<T>) Class.forName(className, true, NioSocketOptions.class.getClassLoader()).getField(fieldName).get(null);
+                } catch (Throwable t) {
+                    log.tracef("Socket option %s.%s is not available", className, fieldName);
+                    return null;
+                }
+            }
+        });
+    }
+
+    /**
+     * Determine whether the given channel supports an option.
+     *
+     * @param channel the channel
+     * @param option the option, or {@code null} if it is not available
+     * @return {@code true} if the option is available and supported by the channel
+     */
+    static boolean isSupported(final NetworkChannel channel, final SocketOption<?> option) {
+        return option != null && channel.supportedOptions().contains(option);
+    }
+
+    /**
+     * Get the socket option behind one of the extended TCP options of {@link Options}.
+     *
+     * @param option the XNIO option
+     * @param <T> the option value type
+     * @return the socket option, or {@code null} if there is none or it is not available
+     */
+    @SuppressWarnings("unchecked")
+    static <T> SocketOption<T> forOption(final Option<T> option) {
+        if (option == Options.TCP_KEEPIDLE) {
+            return (SocketOption<T>) TCP_KEEPIDLE;
+        } else if (option == Options.TCP_KEEPINTERVAL) {
+            return (SocketOption<T>) TCP_KEEPINTERVAL;
+        } else if (option == Options.TCP_KEEPCOUNT) {
+            return (SocketOption<T>) TCP_KEEPCOUNT;
+        } else if (option == Options.TCP_QUICKACK) {
+            return (SocketOption<T>) TCP_QUICKACK;
+        } else {
+            return null;
+        }
+    }
+
+    /**
+     * Apply the extended TCP options found in an option map to a channel, skipping the ones the channel does not
+     * support.
+     *
+     * @param channel the channel
+     * @param optionMap the option map
+     * @throws IOException if setting an option failed
+     */
+    static void setTcpOptions(final NetworkChannel channel, final OptionMap optionMap) throws IOException {
+        setTcpOptions(channel, optionMap.get(Options.TCP_KEEPIDLE, -1), optionMap.get(Options.TCP_KEEPINTERVAL, -1), optionMap.get(Options.TCP_KEEPCOUNT, -1), optionMap.contains(Options.TCP_QUICKACK) ? optionMap.get(Options.TCP_QUICKACK, false) ? 1 : 0 : -1);
+    }
+
+    /**
+     * Apply extended TCP options to a channel, skipping the ones the channel does not support.
+     *
+     * @param channel the channel
+     * @param keepIdle the keep-alive idle time in seconds, or -1 to leave it alone
+     * @param keepInterval the keep-alive probe interval in seconds, or -1 to leave it alone
+     * @param keepCount the keep-alive probe count, or -1 to leave it alone
+     * @param quickAck 1 to enable quick acknowledgements, 0 to disable them, or -1 to leave them alone
+     * @throws IOException if setting an option failed
+     */
+    static void setTcpOptions(final NetworkChannel channel, final int keepIdle, final int keepInterval, final int keepCount, final int quickAck) throws IOException {
+        if (keepIdle != -1) setIfSupported(channel, TCP_KEEPIDLE, Integer.valueOf(keepIdle));
+        if (keepInterval != -1) setIfSupported(channel, TCP_KEEPINTERVAL, Integer.valueOf(keepInterval));
+        if (keepCount != -1) setIfSupported(channel, TCP_KEEPCOUNT, Integer.valueOf(keepCount));
+        if (quickAck != -1) setIfSupported(channel, TCP_QUICKACK, Boolean.valueOf(quickAck != 0));
+    }
+
+    /**
+     * Get the NAPI ID of the device queue through which a connection's packets arrive.
+     *
+     * @param channel the connected channel
+     * @return the ID, or 0 if it is unknown
+     */
+    static int getIncomingNapiId(final NetworkChannel channel) {
+        if (isSupported(channel, SO_INCOMING_NAPI_ID)) try {
+            final Integer id = channel.getOption(SO_INCOMING_NAPI_ID);
+            return id == null ? 0 : id.intValue();
+        } catch (IOException ignored) {
+        }
+        return 0;
+    }
+
+    /**
+     * Set an option on a channel if the channel supports it.
+     *
+     * @param channel the channel
+     * @param option the option, or {@code null} if it is not available
+     * @param value the value
+     * @param <T> the option value type
+     * @return {@code true} if the option was set, {@code false} if it is not supported
+     * @throws IOException if setting the option failed
+     */
+    static <T> boolean setIfSupported(final NetworkChannel channel, final SocketOption<T> option, final T value) throws IOException {
+        if (! isSupported(channel, option)) {
+            return false;
+        }
+        channel.setOption(option, value);
+        return true;
+    }
+}
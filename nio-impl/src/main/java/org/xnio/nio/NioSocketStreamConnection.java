@@ -22,12 +22,16 @@ import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.Socket;
 import java.net.SocketAddress;
+import java.net.SocketOption;
 import java.nio.channels.ClosedChannelException;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.SocketChannel;
 import java.util.Set;
 import org.xnio.Option;
 import org.xnio.Options;
+import org.xnio.management.ConnectionStatistics;
+
+import static org.xnio.nio.Log.log;
 
 /**
  * @author <a href="mailto:david.lloyd@redhat.com">David M. Lloyd</a>
@@ -58,6 +62,7 @@ final class NioSocketStreamConnection extends AbstractNioStreamConnection {
 
     private static final Set<Option<?>> OPTIONS = Option.setBuilder()
             .add(Options.CLOSE_ABORT)
+            .add(Options.IDLE_TIMEOUT)
             .add(Options.IP_TRAFFIC_CLASS)
             .add(Options.KEEP_ALIVE)
             .add(Options.READ_TIMEOUT)
@@ -65,16 +70,19 @@ final class NioSocketStreamConnection extends AbstractNioStreamConnection {
             .add(Options.SEND_BUFFER)
             .add(Options.TCP_NODELAY)
             .add(Options.TCP_OOB_INLINE)
+            .add(Options.WRITE_COALESCING)
             .add(Options.WRITE_TIMEOUT)
             .create();
 
     public boolean supportsOption(final Option<?> option) {
-        return OPTIONS.contains(option);
+        return OPTIONS.contains(option) || NioSocketOptions.isSupported(conduit.getSocketChannel(), NioSocketOptions.forOption(option));
     }
 
     public <T> T getOption(final Option<T> option) throws IOException {
         if (option == Options.CLOSE_ABORT) {
             return option.cast(Boolean.valueOf(conduit.getSocketChannel().socket().getSoLinger() == 0));
+        } else if (option == Options.IDLE_TIMEOUT) {
+            return option.cast(Integer.valueOf(conduit.getIdleTimeout()));
         } else if (option == Options.IP_TRAFFIC_CLASS) {
             return option.cast(Integer.valueOf(conduit.getSocketChannel().socket().getTrafficClass()));
         } else if (option == Options.KEEP_ALIVE) {
@@ -89,9 +97,15 @@ final class NioSocketStreamConnection extends AbstractNioStreamConnection {
             return option.cast(Boolean.valueOf(conduit.getSocketChannel().socket().getTcpNoDelay()));
         } else if (option == Options.TCP_OOB_INLINE) {
             return option.cast(Boolean.valueOf(conduit.getSocketChannel().socket().getOOBInline()));
+        } else if (option == Options.WRITE_COALESCING) {
+            return option.cast(Boolean.valueOf(conduit.isWriteCoalescing()));
         } else if (option == Options.WRITE_TIMEOUT) {
             return option.cast(Integer.valueOf(conduit.getWriteTimeout()));
         } else {
+            final SocketOption<T> socketOption = NioSocketOptions.forOption(option);
+            if (NioSocketOptions.isSupported(conduit.getSocketChannel(), socketOption)) {
+                return conduit.getSocketChannel().getOption(socketOption);
+            }
             return null;
         }
     }
@@ -101,6 +115,8 @@ final class NioSocketStreamConnection extends AbstractNioStreamConnection {
         if (option == Options.CLOSE_ABORT) {
             result = option.cast(Boolean.valueOf(conduit.getSocketChannel().socket().getSoLinger() == 0));
             conduit.getSocketChannel().socket().setSoLinger(Options.CLOSE_ABORT.cast(value, Boolean.FALSE).booleanValue(), 0);
+        } else if (option == Options.IDLE_TIMEOUT) {
+            result = option.cast(Integer.valueOf(conduit.getAndSetIdleTimeout(value == null ? 0 : Options.IDLE_TIMEOUT.cast(value).intValue())));
         } else if (option == Options.IP_TRAFFIC_CLASS) {
             result = option.cast(Integer.valueOf(conduit.getSocketChannel().socket().getTrafficClass()));
             conduit.getSocketChannel().socket().setTrafficClass(Options.IP_TRAFFIC_CLASS.cast(value).intValue());
@@ -121,10 +137,20 @@ final class NioSocketStreamConnection extends AbstractNioStreamConnection {
         } else if (option == Options.TCP_OOB_INLINE) {
             result = option.cast(Boolean.valueOf(conduit.getSocketChannel().socket().getOOBInline()));
             conduit.getSocketChannel().socket().setOOBInline(Options.TCP_OOB_INLINE.cast(value, Boolean.FALSE).booleanValue());
+        } else if (option == Options.WRITE_COALESCING) {
+            result = option.cast(Boolean.valueOf(conduit.getAndSetWriteCoalescing(Options.WRITE_COALESCING.cast(value, Boolean.FALSE).booleanValue())));
         } else if (option == Options.WRITE_TIMEOUT) {
             result = option.cast(Integer.valueOf(conduit.getAndSetWriteTimeout(value == null ? 0 : Options.WRITE_TIMEOUT.cast(value).intValue())));
         } else {
-            return null;
+            final SocketOption<T> socketOption = NioSocketOptions.forOption(option);
+            if (! NioSocketOptions.isSupported(conduit.getSocketChannel(), socketOption)) {
+                return null;
+            }
+            if (value == null) {
+                throw log.optionOutOfRange(option.getName());
+            }
+            result = conduit.getSocketChannel().getOption(socketOption);
+            conduit.getSocketChannel().setOption(socketOption, option.cast(value));
         }
         return result;
     }
@@ -135,11 +161,17 @@ final class NioSocketStreamConnection extends AbstractNioStreamConnection {
             conduit.getSocketChannel().close();
         } catch (ClosedChannelException ignored) {
         } finally {
+            conduit.discardCoalesced();
+            conduit.getWorkerThread().getWorker().getConnectionTotals().closed(conduit.getCounters());
             final ChannelClosed closedHandle = this.closedHandle;
             if (closedHandle!= null) closedHandle.channelClosed();
         }
     }
 
+    public ConnectionStatistics getStatistics() {
+        return conduit.getCounters();
+    }
+
     protected void notifyWriteClosed() {
         conduit.writeTerminated();
     }
@@ -23,9 +23,7 @@ import static org.xnio.nio.Log.log;
 import static org.xnio.nio.Log.tcpServerLog;
 
 import java.io.IOException;
-import java.net.InetSocketAddress;
 import java.net.ServerSocket;
-import java.net.Socket;
 import java.net.SocketAddress;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.ServerSocketChannel;
@@ -41,7 +39,6 @@ import org.jboss.logging.Logger;
 import org.xnio.ChannelListener;
 import org.xnio.ManagementRegistration;
 import org.xnio.IoUtils;
-import org.xnio.LocalSocketAddress;
 import org.xnio.Option;
 import org.xnio.OptionMap;
 import org.xnio.Options;
@@ -60,20 +57,33 @@ final class NioTcpServer extends AbstractNioChannel<NioTcpServer> implements Acc
     private final NioTcpServerHandle[] handles;
 
     private final ServerSocketChannel channel;
+    // either the one channel shared by every thread, or one channel bound with SO_REUSEPORT per thread
+    private final ServerSocketChannel[] channels;
     private final ServerSocket socket;
     private final ManagementRegistration mbeanHandle;
+    private final AcceptRateLimiter rateLimiter;
+    private volatile AcceptedSocketOptions acceptedSocketOptions;
 
     private static final Set<Option<?>> options = Option.setBuilder()
             .add(Options.REUSE_ADDRESSES)
+            .add(Options.REUSE_PORT)
             .add(Options.RECEIVE_BUFFER)
             .add(Options.SEND_BUFFER)
             .add(Options.KEEP_ALIVE)
             .add(Options.TCP_OOB_INLINE)
             .add(Options.TCP_NODELAY)
+            .add(Options.TCP_KEEPIDLE)
+            .add(Options.TCP_KEEPINTERVAL)
+            .add(Options.TCP_KEEPCOUNT)
+            .add(Options.TCP_QUICKACK)
             .add(Options.CONNECTION_HIGH_WATER)
             .add(Options.CONNECTION_LOW_WATER)
             .add(Options.READ_TIMEOUT)
+            .add(Options.IDLE_TIMEOUT)
+            .add(Options.WRITE_COALESCING)
             .add(Options.WRITE_TIMEOUT)
+            .add(Options.ACCEPT_RATE_LIMIT)
+            .add(Options.ACCEPT_RATE_BURST)
             .create();
 
     @SuppressWarnings("unused")
@@ -85,11 +95,23 @@ final class NioTcpServer extends AbstractNioChannel<NioTcpServer> implements Acc
     @SuppressWarnings("unused")
     private volatile int sendBuffer = -1;
     @SuppressWarnings("unused")
+    private volatile int keepIdle = -1;
+    @SuppressWarnings("unused")
+    private volatile int keepInterval = -1;
+    @SuppressWarnings("unused")
+    private volatile int keepCount = -1;
+    @SuppressWarnings("unused")
+    private volatile int quickAck = -1;
+    @SuppressWarnings("unused")
     private volatile long connectionStatus = CONN_LOW_MASK | CONN_HIGH_MASK;
     @SuppressWarnings("unused")
     private volatile int readTimeout;
     @SuppressWarnings("unused")
     private volatile int writeTimeout;
+    @SuppressWarnings("unused")
+    private volatile int idleTimeout;
+    @SuppressWarnings("unused")
+    private volatile int writeCoalescing;
     private volatile int tokenConnectionCount;
     volatile boolean resumed;
 
@@ -106,19 +128,27 @@ final class NioTcpServer extends AbstractNioChannel<NioTcpServer> implements Acc
     private static final AtomicIntegerFieldUpdater<NioTcpServer> oobInlineUpdater = AtomicIntegerFieldUpdater.newUpdater(NioTcpServer.class, "oobInline");
     private static final AtomicIntegerFieldUpdater<NioTcpServer> tcpNoDelayUpdater = AtomicIntegerFieldUpdater.newUpdater(NioTcpServer.class, "tcpNoDelay");
     private static final AtomicIntegerFieldUpdater<NioTcpServer> sendBufferUpdater = AtomicIntegerFieldUpdater.newUpdater(NioTcpServer.class, "sendBuffer");
+    private static final AtomicIntegerFieldUpdater<NioTcpServer> keepIdleUpdater = AtomicIntegerFieldUpdater.newUpdater(NioTcpServer.class, "keepIdle");
+    private static final AtomicIntegerFieldUpdater<NioTcpServer> keepIntervalUpdater = AtomicIntegerFieldUpdater.newUpdater(NioTcpServer.class, "keepInterval");
+    private static final AtomicIntegerFieldUpdater<NioTcpServer> keepCountUpdater = AtomicIntegerFieldUpdater.newUpdater(NioTcpServer.class, "keepCount");
+    private static final AtomicIntegerFieldUpdater<NioTcpServer> quickAckUpdater = AtomicIntegerFieldUpdater.newUpdater(NioTcpServer.class, "quickAck");
     private static final AtomicIntegerFieldUpdater<NioTcpServer> readTimeoutUpdater = AtomicIntegerFieldUpdater.newUpdater(NioTcpServer.class, "readTimeout");
     private static final AtomicIntegerFieldUpdater<NioTcpServer> writeTimeoutUpdater = AtomicIntegerFieldUpdater.newUpdater(NioTcpServer.class, "writeTimeout");
+    private static final AtomicIntegerFieldUpdater<NioTcpServer> idleTimeoutUpdater = AtomicIntegerFieldUpdater.newUpdater(NioTcpServer.class, "idleTimeout");
+    private static final AtomicIntegerFieldUpdater<NioTcpServer> writeCoalescingUpdater = AtomicIntegerFieldUpdater.newUpdater(NioTcpServer.class, "writeCoalescing");
 
     private static final AtomicLongFieldUpdater<NioTcpServer> connectionStatusUpdater = AtomicLongFieldUpdater.newUpdater(NioTcpServer.class, "connectionStatus");
 
-    NioTcpServer(final NioXnioWorker worker, final ServerSocketChannel channel, final OptionMap optionMap) throws IOException {
+    NioTcpServer(final NioXnioWorker worker, final ServerSocketChannel[] channels, final OptionMap optionMap) throws IOException {
         super(worker);
-        this.channel = channel;
+        this.channel = channels[0];
+        this.channels = channels;
         final WorkerThread[] threads = worker.getAll();
         final int threadCount = threads.length;
         if (threadCount == 0) {
             throw log.noThreads();
         }
+        assert channels.length == 1 || channels.length == threadCount;
         final int tokens = optionMap.get(Options.BALANCING_TOKENS, -1);
         final int connections = optionMap.get(Options.BALANCING_CONNECTIONS, 16);
         if (tokens != -1) {
@@ -147,12 +177,32 @@ final class NioTcpServer extends AbstractNioChannel<NioTcpServer> implements Acc
         if (optionMap.contains(Options.TCP_NODELAY)) {
             tcpNoDelayUpdater.lazySet(this, optionMap.get(Options.TCP_NODELAY, false) ? 1 : 0);
         }
+        if (optionMap.contains(Options.TCP_KEEPIDLE)) {
+            keepIdleUpdater.lazySet(this, checkPositive(optionMap.get(Options.TCP_KEEPIDLE, -1), "keepIdle"));
+        }
+        if (optionMap.contains(Options.TCP_KEEPINTERVAL)) {
+            keepIntervalUpdater.lazySet(this, checkPositive(optionMap.get(Options.TCP_KEEPINTERVAL, -1), "keepInterval"));
+        }
+        if (optionMap.contains(Options.TCP_KEEPCOUNT)) {
+            keepCountUpdater.lazySet(this, checkPositive(optionMap.get(Options.TCP_KEEPCOUNT, -1), "keepCount"));
+        }
+        if (optionMap.contains(Options.TCP_QUICKACK)) {
+            quickAckUpdater.lazySet(this, optionMap.get(Options.TCP_QUICKACK, false) ? 1 : 0);
+        }
+        updateAcceptedSocketOptions();
         if (optionMap.contains(Options.READ_TIMEOUT)) {
             readTimeoutUpdater.lazySet(this, optionMap.get(Options.READ_TIMEOUT, 0));
         }
         if (optionMap.contains(Options.WRITE_TIMEOUT)) {
             writeTimeoutUpdater.lazySet(this, optionMap.get(Options.WRITE_TIMEOUT, 0));
         }
+        if (optionMap.contains(Options.IDLE_TIMEOUT)) {
+            idleTimeoutUpdater.lazySet(this, optionMap.get(Options.IDLE_TIMEOUT, 0));
+        }
+        if (optionMap.contains(Options.WRITE_COALESCING)) {
+            writeCoalescingUpdater.lazySet(this, optionMap.get(Options.WRITE_COALESCING, false) ? 1 : 0);
+        }
+        rateLimiter = AcceptRateLimiter.create(optionMap);
         int perThreadLow, perThreadLowRem;
         int perThreadHigh, perThreadHighRem;
         if (optionMap.contains(Options.CONNECTION_HIGH_WATER) || optionMap.contains(Options.CONNECTION_LOW_WATER)) {
@@ -179,7 +229,7 @@ final class NioTcpServer extends AbstractNioChannel<NioTcpServer> implements Acc
         }
         final NioTcpServerHandle[] handles = new NioTcpServerHandle[threadCount];
         for (int i = 0, length = threadCount; i < length; i++) {
-            final SelectionKey key = threads[i].registerChannel(channel);
+            final SelectionKey key = threads[i].registerChannel(channels.length == 1 ? channel : channels[i]);
             handles[i] = new NioTcpServerHandle(this, key, threads[i], i < perThreadHighRem ? perThreadHigh + 1 : perThreadHigh, i < perThreadLowRem ? perThreadLow + 1 : perThreadLow);
             key.attach(handles[i]);
         }
@@ -227,6 +277,27 @@ final class NioTcpServer extends AbstractNioChannel<NioTcpServer> implements Acc
                     public int getConnectionLimitLowWater() {
                         return getLowWater(connectionStatus);
                     }
+
+                    public int getAcceptQueueSize() {
+                        // every thread accepts and registers its own connections
+                        return 0;
+                    }
+
+                    public long getAcceptHandoffCount() {
+                        return 0L;
+                    }
+
+                    public long getAcceptHandoffTime() {
+                        return 0L;
+                    }
+
+                    public long getAcceptAdmittedCount() {
+                        return rateLimiter.getAdmittedCount();
+                    }
+
+                    public long getAcceptDeferredCount() {
+                        return rateLimiter.getDeferredCount();
+                    }
                 }
         );
 
@@ -242,6 +313,9 @@ final class NioTcpServer extends AbstractNioChannel<NioTcpServer> implements Acc
 
     public void close() throws IOException {
         try {
+            for (int i = 1; i < channels.length; i ++) {
+                safeClose(channels[i]);
+            }
             channel.close();
         } finally {
             for (NioTcpServerHandle handle : handles) {
@@ -258,6 +332,8 @@ final class NioTcpServer extends AbstractNioChannel<NioTcpServer> implements Acc
     public <T> T getOption(final Option<T> option) throws UnsupportedOptionException, IOException {
         if (option == Options.REUSE_ADDRESSES) {
             return option.cast(Boolean.valueOf(socket.getReuseAddress()));
+        } else if (option == Options.REUSE_PORT) {
+            return option.cast(Boolean.valueOf(channels.length > 1));
         } else if (option == Options.RECEIVE_BUFFER) {
             return option.cast(Integer.valueOf(socket.getReceiveBufferSize()));
         } else if (option == Options.SEND_BUFFER) {
@@ -269,14 +345,34 @@ final class NioTcpServer extends AbstractNioChannel<NioTcpServer> implements Acc
             return option.cast(Boolean.valueOf(oobInline != 0));
         } else if (option == Options.TCP_NODELAY) {
             return option.cast(Boolean.valueOf(tcpNoDelay != 0));
+        } else if (option == Options.TCP_KEEPIDLE) {
+            final int value = keepIdle;
+            return value == -1 ? null : option.cast(Integer.valueOf(value));
+        } else if (option == Options.TCP_KEEPINTERVAL) {
+            final int value = keepInterval;
+            return value == -1 ? null : option.cast(Integer.valueOf(value));
+        } else if (option == Options.TCP_KEEPCOUNT) {
+            final int value = keepCount;
+            return value == -1 ? null : option.cast(Integer.valueOf(value));
+        } else if (option == Options.TCP_QUICKACK) {
+            final int value = quickAck;
+            return value == -1 ? null : option.cast(Boolean.valueOf(value != 0));
         } else if (option == Options.READ_TIMEOUT) {
             return option.cast(Integer.valueOf(readTimeout));
         } else if (option == Options.WRITE_TIMEOUT) {
             return option.cast(Integer.valueOf(writeTimeout));
+        } else if (option == Options.IDLE_TIMEOUT) {
+            return option.cast(Integer.valueOf(idleTimeout));
+        } else if (option == Options.WRITE_COALESCING) {
+            return option.cast(Boolean.valueOf(writeCoalescing != 0));
         } else if (option == Options.CONNECTION_HIGH_WATER) {
             return option.cast(Integer.valueOf(getHighWater(connectionStatus)));
         } else if (option == Options.CONNECTION_LOW_WATER) {
             return option.cast(Integer.valueOf(getLowWater(connectionStatus)));
+        } else if (option == Options.ACCEPT_RATE_LIMIT) {
+            return option.cast(Integer.valueOf(rateLimiter.getRate()));
+        } else if (option == Options.ACCEPT_RATE_BURST) {
+            return option.cast(Integer.valueOf(rateLimiter.getBurst()));
         } else {
             return null;
         }
@@ -286,14 +382,19 @@ final class NioTcpServer extends AbstractNioChannel<NioTcpServer> implements Acc
         final Object old;
         if (option == Options.REUSE_ADDRESSES) {
             old = Boolean.valueOf(socket.getReuseAddress());
-            socket.setReuseAddress(Options.REUSE_ADDRESSES.cast(value, Boolean.FALSE).booleanValue());
+            final boolean newValue = Options.REUSE_ADDRESSES.cast(value, Boolean.FALSE).booleanValue();
+            for (ServerSocketChannel channel : channels) {
+                channel.socket().setReuseAddress(newValue);
+            }
         } else if (option == Options.RECEIVE_BUFFER) { 
             old = Integer.valueOf(socket.getReceiveBufferSize());
             final int newValue = Options.RECEIVE_BUFFER.cast(value, Integer.valueOf(DEFAULT_BUFFER_SIZE)).intValue();
             if (newValue < 1) {
                 throw log.optionOutOfRange("RECEIVE_BUFFER");
             }
-            socket.setReceiveBufferSize(newValue);
+            for (ServerSocketChannel channel : channels) {
+                channel.socket().setReceiveBufferSize(newValue);
+            }
         } else if (option == Options.SEND_BUFFER) {
             final int newValue = Options.SEND_BUFFER.cast(value, Integer.valueOf(DEFAULT_BUFFER_SIZE)).intValue();
             if (newValue < 1) {
@@ -307,10 +408,23 @@ final class NioTcpServer extends AbstractNioChannel<NioTcpServer> implements Acc
             old = Boolean.valueOf(oobInlineUpdater.getAndSet(this, Options.TCP_OOB_INLINE.cast(value, Boolean.FALSE).booleanValue() ? 1 : 0) != 0);
         } else if (option == Options.TCP_NODELAY) {
             old = Boolean.valueOf(tcpNoDelayUpdater.getAndSet(this, Options.TCP_NODELAY.cast(value, Boolean.FALSE).booleanValue() ? 1 : 0) != 0);
+        } else if (option == Options.TCP_KEEPIDLE) {
+            old = unsetIfNegative(keepIdleUpdater.getAndSet(this, value == null ? -1 : checkPositive(Options.TCP_KEEPIDLE.cast(value).intValue(), "TCP_KEEPIDLE")));
+        } else if (option == Options.TCP_KEEPINTERVAL) {
+            old = unsetIfNegative(keepIntervalUpdater.getAndSet(this, value == null ? -1 : checkPositive(Options.TCP_KEEPINTERVAL.cast(value).intValue(), "TCP_KEEPINTERVAL")));
+        } else if (option == Options.TCP_KEEPCOUNT) {
+            old = unsetIfNegative(keepCountUpdater.getAndSet(this, value == null ? -1 : checkPositive(Options.TCP_KEEPCOUNT.cast(value).intValue(), "TCP_KEEPCOUNT")));
+        } else if (option == Options.TCP_QUICKACK) {
+            final int oldValue = quickAckUpdater.getAndSet(this, value == null ? -1 : Options.TCP_QUICKACK.cast(value).booleanValue() ? 1 : 0);
+            old = oldValue == -1 ? null : Boolean.valueOf(oldValue != 0);
         } else if (option == Options.READ_TIMEOUT) {
             old = Integer.valueOf(readTimeoutUpdater.getAndSet(this, Options.READ_TIMEOUT.cast(value, Integer.valueOf(0)).intValue()));
         } else if (option == Options.WRITE_TIMEOUT) {
             old = Integer.valueOf(writeTimeoutUpdater.getAndSet(this, Options.WRITE_TIMEOUT.cast(value, Integer.valueOf(0)).intValue()));
+        } else if (option == Options.IDLE_TIMEOUT) {
+            old = Integer.valueOf(idleTimeoutUpdater.getAndSet(this, Options.IDLE_TIMEOUT.cast(value, Integer.valueOf(0)).intValue()));
+        } else if (option == Options.WRITE_COALESCING) {
+            old = Boolean.valueOf(writeCoalescingUpdater.getAndSet(this, Options.WRITE_COALESCING.cast(value, Boolean.FALSE).booleanValue() ? 1 : 0) != 0);
         } else if (option == Options.CONNECTION_HIGH_WATER) {
             old = Integer.valueOf(getHighWater(updateWaterMark(-1, Options.CONNECTION_HIGH_WATER.cast(value, Integer.valueOf(Integer.MAX_VALUE)).intValue())));
         } else if (option == Options.CONNECTION_LOW_WATER) {
@@ -318,9 +432,20 @@ final class NioTcpServer extends AbstractNioChannel<NioTcpServer> implements Acc
         } else {
             return null;
         }
+        if (AcceptedSocketOptions.isAcceptedSocketOption(option)) {
+            updateAcceptedSocketOptions();
+        }
         return option.cast(old);
     }
 
+    private synchronized void updateAcceptedSocketOptions() throws IOException {
+        final AcceptedSocketOptions acceptedSocketOptions = new AcceptedSocketOptions(keepAlive != 0, oobInline != 0, tcpNoDelay != 0, sendBuffer, keepIdle, keepInterval, keepCount, quickAck);
+        for (ServerSocketChannel channel : channels) {
+            acceptedSocketOptions.applyTo(channel);
+        }
+        this.acceptedSocketOptions = acceptedSocketOptions;
+    }
+
     private long updateWaterMark(int reqNewLowWater, int reqNewHighWater) {
         // at least one must be specified
         assert reqNewLowWater != -1 || reqNewHighWater != -1;
@@ -369,6 +494,17 @@ final class NioTcpServer extends AbstractNioChannel<NioTcpServer> implements Acc
         return oldVal;
     }
 
+    private static int checkPositive(final int value, final String name) {
+        if (value < 1) {
+            throw log.parameterOutOfRange(name);
+        }
+        return value;
+    }
+
+    private static Integer unsetIfNegative(final int value) {
+        return value == -1 ? null : Integer.valueOf(value);
+    }
+
     private static int getHighWater(final long value) {
         return (int) ((value & CONN_HIGH_MASK) >> CONN_HIGH_BIT);
     }
@@ -380,46 +516,37 @@ final class NioTcpServer extends AbstractNioChannel<NioTcpServer> implements Acc
     public NioSocketStreamConnection accept() throws IOException {
         final WorkerThread current = WorkerThread.getCurrent();
         final NioTcpServerHandle handle = handles[current.getNumber()];
+        final boolean limited = rateLimiter.isLimited();
+        if (limited) {
+            final long wait = rateLimiter.acquire(System.nanoTime());
+            if (wait > 0L) {
+                // leave the connection in the backlog until a token is due
+                handle.throttle(AcceptRateLimiter.toMillis(wait));
+                return null;
+            }
+        }
         if (! handle.getConnection()) {
+            if (limited) rateLimiter.refund();
             return null;
         }
         final SocketChannel accepted;
         boolean ok = false;
         try {
-            accepted = channel.accept();
+            accepted = ((ServerSocketChannel) handle.getSelectionKey().channel()).accept();
             if (accepted != null) try {
-                final SocketAddress localAddress = accepted.getLocalAddress();
-                int hash;
-                if (localAddress instanceof InetSocketAddress) {
-                    final InetSocketAddress address = (InetSocketAddress) localAddress;
-                    hash = address.getAddress().hashCode() * 23 + address.getPort();
-                } else if (localAddress instanceof LocalSocketAddress) {
-                    hash = ((LocalSocketAddress) localAddress).getName().hashCode();
-                } else {
-                    hash = localAddress.hashCode();
-                }
-                final SocketAddress remoteAddress = accepted.getRemoteAddress();
-                if (remoteAddress instanceof InetSocketAddress) {
-                    final InetSocketAddress address = (InetSocketAddress) remoteAddress;
-                    hash = (address.getAddress().hashCode() * 23 + address.getPort()) * 23 + hash;
-                } else if (remoteAddress instanceof LocalSocketAddress) {
-                    hash = ((LocalSocketAddress) remoteAddress).getName().hashCode() * 23 + hash;
-                } else {
-                    hash = localAddress.hashCode() * 23 + hash;
-                }
                 accepted.configureBlocking(false);
-                final Socket socket = accepted.socket();
-                socket.setKeepAlive(keepAlive != 0);
-                socket.setOOBInline(oobInline != 0);
-                socket.setTcpNoDelay(tcpNoDelay != 0);
-                final int sendBuffer = this.sendBuffer;
-                if (sendBuffer > 0) socket.setSendBufferSize(sendBuffer);
-                final WorkerThread ioThread = worker.getIoThread(hash);
+                acceptedSocketOptions.applyTo(accepted);
+                // a connection accepted from a thread's own socket stays on that thread
+                final WorkerThread ioThread = channels.length > 1 ? current : worker.chooseThread(accepted);
                 final SelectionKey selectionKey = ioThread.registerChannel(accepted);
                 final NioSocketStreamConnection newConnection = new NioSocketStreamConnection(ioThread, selectionKey, handle);
                 newConnection.setOption(Options.READ_TIMEOUT, Integer.valueOf(readTimeout));
                 newConnection.setOption(Options.WRITE_TIMEOUT, Integer.valueOf(writeTimeout));
+                final int idleTimeout = this.idleTimeout;
+                if (idleTimeout > 0) newConnection.setOption(Options.IDLE_TIMEOUT, Integer.valueOf(idleTimeout));
+                if (writeCoalescing != 0) newConnection.setOption(Options.WRITE_COALESCING, Boolean.TRUE);
                 ok = true;
+                rateLimiter.admitted();
                 return newConnection;
             } finally {
                 if (! ok) safeClose(accepted);
@@ -429,6 +556,8 @@ final class NioTcpServer extends AbstractNioChannel<NioTcpServer> implements Acc
         } finally {
             if (! ok) {
                 handle.freeConnection();
+                // nothing was waiting, or the connection could not be set up, so the token was not used
+                if (limited) rateLimiter.refund();
             }
         }
         // by contract, only a resume will do
@@ -19,6 +19,8 @@
 package org.xnio.nio;
 
 import java.nio.channels.SelectionKey;
+import java.util.concurrent.TimeUnit;
+
 import org.xnio.ChannelListeners;
 
 import static java.lang.Thread.currentThread;
@@ -30,12 +32,14 @@ import static org.xnio.IoUtils.safeClose;
 final class NioTcpServerHandle extends NioHandle implements ChannelClosed {
 
     private final Runnable freeTask;
+    private final Runnable unthrottleTask;
     private final NioTcpServer server;
     private int count;
     private int low;
     private int high;
     private int tokenCount = -1;
     private boolean stopped;
+    private boolean throttled;
 
     NioTcpServerHandle(final NioTcpServer server, final SelectionKey key, final WorkerThread thread, final int low, final int high) {
         super(thread, key);
@@ -47,6 +51,14 @@ final class NioTcpServerHandle extends NioHandle implements ChannelClosed {
                 freeConnection();
             }
         };
+        unthrottleTask = new Runnable() {
+            public void run() {
+                throttled = false;
+                if (! stopped && server.resumed) {
+                    NioTcpServerHandle.super.resume(SelectionKey.OP_ACCEPT);
+                }
+            }
+        };
     }
 
     void handleReady(final int ops) {
@@ -68,7 +80,7 @@ final class NioTcpServerHandle extends NioHandle implements ChannelClosed {
     void resume() {
         final WorkerThread thread = getWorkerThread();
         if (thread == currentThread()) {
-            if (! stopped && server.resumed) super.resume(SelectionKey.OP_ACCEPT);
+            if (! stopped && ! throttled && server.resumed) super.resume(SelectionKey.OP_ACCEPT);
         } else {
             thread.execute(new Runnable() {
                 public void run() {
@@ -81,7 +93,7 @@ final class NioTcpServerHandle extends NioHandle implements ChannelClosed {
     void suspend() {
         final WorkerThread thread = getWorkerThread();
         if (thread == currentThread()) {
-            if (stopped || ! server.resumed) super.suspend(SelectionKey.OP_ACCEPT);
+            if (stopped || throttled || ! server.resumed) super.suspend(SelectionKey.OP_ACCEPT);
         } else {
             thread.execute(new Runnable() {
                 public void run() {
@@ -104,7 +116,7 @@ final class NioTcpServerHandle extends NioHandle implements ChannelClosed {
         assert currentThread() == getWorkerThread();
         if (count-- <= low && tokenCount != 0 && stopped) {
             stopped = false;
-            if (server.resumed) {
+            if (! throttled && server.resumed) {
                 super.resume(SelectionKey.OP_ACCEPT);
             }
         }
@@ -117,7 +129,7 @@ final class NioTcpServerHandle extends NioHandle implements ChannelClosed {
                 tokenCount = newCount;
                 if (count <= low && stopped) {
                     stopped = false;
-                    if (server.resumed) {
+                    if (! throttled && server.resumed) {
                         super.resume(SelectionKey.OP_ACCEPT);
                     }
                 }
@@ -170,6 +182,20 @@ final class NioTcpServerHandle extends NioHandle implements ChannelClosed {
         return true;
     }
 
+    /**
+     * Stop accepting on this thread until the server's accept rate limit has a token again.
+     *
+     * @param waitMillis the time until the next token is due
+     */
+    void throttle(final long waitMillis) {
+        assert currentThread() == getWorkerThread();
+        if (! throttled) {
+            throttled = true;
+            super.suspend(SelectionKey.OP_ACCEPT);
+            getWorkerThread().executeAfter(unthrottleTask, waitMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
     public void executeSetTask(final int high, final int low) {
         final WorkerThread thread = getWorkerThread();
         if (thread == currentThread()) {
@@ -247,11 +247,11 @@ class NioUdpChannel extends AbstractNioChannel<NioUdpChannel> implements Multica
     }
 
     public void awaitReadable() throws IOException {
-        SelectorUtils.await(worker.getXnio(), datagramChannel, SelectionKey.OP_READ);
+        handle.await(datagramChannel, SelectionKey.OP_READ);
     }
 
     public void awaitReadable(final long time, final TimeUnit timeUnit) throws IOException {
-        SelectorUtils.await(worker.getXnio(), datagramChannel, SelectionKey.OP_READ, time, timeUnit);
+        handle.await(datagramChannel, SelectionKey.OP_READ, time, timeUnit);
     }
 
     @Deprecated
@@ -260,11 +260,11 @@ class NioUdpChannel extends AbstractNioChannel<NioUdpChannel> implements Multica
     }
 
     public void awaitWritable() throws IOException {
-        SelectorUtils.await(worker.getXnio(), datagramChannel, SelectionKey.OP_WRITE);
+        handle.await(datagramChannel, SelectionKey.OP_WRITE);
     }
 
     public void awaitWritable(final long time, final TimeUnit timeUnit) throws IOException {
-        SelectorUtils.await(worker.getXnio(), datagramChannel, SelectionKey.OP_WRITE, time, timeUnit);
+        handle.await(datagramChannel, SelectionKey.OP_WRITE, time, timeUnit);
     }
 
     @Deprecated
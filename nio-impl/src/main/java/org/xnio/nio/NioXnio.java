@@ -27,13 +27,17 @@ import java.security.AccessController;
 import java.security.PrivilegedAction;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.TimeUnit;
 import org.xnio.FileSystemWatcher;
 import org.xnio.IoUtils;
 import org.xnio.Options;
+import org.xnio.ReadPropertyAction;
 import org.xnio.Xnio;
 import org.xnio.OptionMap;
 import org.xnio.XnioWorker;
+import org.xnio.management.XnioIoThreadMXBean;
 import org.xnio.management.XnioProviderMXBean;
+import org.xnio.management.XnioSelectorPoolMXBean;
 import org.xnio.management.XnioServerMXBean;
 import org.xnio.management.XnioWorkerMXBean;
 
@@ -52,6 +56,7 @@ final class NioXnio extends Xnio {
 
     final SelectorCreator tempSelectorCreator;
     final SelectorCreator mainSelectorCreator;
+    private final SelectorPool tempSelectorPool;
 
     static {
         log.greeting(Version.getVersionString());
@@ -199,6 +204,10 @@ final class NioXnio extends Xnio {
         tempSelectorCreator = (SelectorCreator) objects[1];
         mainSelectorCreator = (SelectorCreator) objects[2];
         log.selectors(mainSelectorCreator, tempSelectorCreator);
+        final int poolSize = Math.max(1, Integer.parseInt(AccessController.doPrivileged(new ReadPropertyAction("xnio.nio.selector.pool.max", "256"))));
+        final long idleTimeout = Math.max(0L, Long.parseLong(AccessController.doPrivileged(new ReadPropertyAction("xnio.nio.selector.pool.idle-timeout", "60000"))));
+        tempSelectorPool = new SelectorPool(tempSelectorCreator, poolSize, TimeUnit.MILLISECONDS.toNanos(idleTimeout));
+        register(tempSelectorPool.getMXBean("nio", "temp"));
         register(new XnioProviderMXBean() {
             public String getName() {
                 return "nio";
@@ -227,25 +236,8 @@ final class NioXnio extends Xnio {
         return super.createFileSystemWatcher(name, options);
     }
 
-    private final ThreadLocal<FinalizableSelectorHolder> selectorThreadLocal = new ThreadLocal<FinalizableSelectorHolder>() {
-        public void remove() {
-            // if no selector was created, none will be closed
-            FinalizableSelectorHolder holder = get();
-            if(holder != null) {
-                IoUtils.safeClose(holder.selector);
-            }
-            super.remove();
-        }
-    };
-
-    Selector getSelector() throws IOException {
-        final ThreadLocal<FinalizableSelectorHolder> threadLocal = selectorThreadLocal;
-        FinalizableSelectorHolder holder = threadLocal.get();
-        if (holder == null) {
-            holder = new FinalizableSelectorHolder(tempSelectorCreator.open());
-            threadLocal.set(holder);
-        }
-        return holder.selector;
+    SelectorPool getSelectorPool() {
+        return tempSelectorPool;
     }
 
     private static class DefaultSelectorCreator implements SelectorCreator {
@@ -308,17 +300,11 @@ final class NioXnio extends Xnio {
         return Xnio.register(serverMXBean);
     }
 
-    private static final class FinalizableSelectorHolder {
-        final Selector selector;
-
-
-        private FinalizableSelectorHolder(Selector selector) {
-            this.selector = selector;
-        }
+    protected static Closeable register(XnioIoThreadMXBean ioThreadMXBean) {
+        return Xnio.register(ioThreadMXBean);
+    }
 
-        @Override
-        protected void finalize() throws Throwable {
-            IoUtils.safeClose(selector);
-        }
+    protected static Closeable register(XnioSelectorPoolMXBean selectorPoolMXBean) {
+        return Xnio.register(selectorPoolMXBean);
     }
 }
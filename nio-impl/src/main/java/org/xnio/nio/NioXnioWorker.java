@@ -26,12 +26,17 @@ import java.io.IOException;
 import java.net.Inet6Address;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
+import java.net.SocketAddress;
 import java.net.StandardProtocolFamily;
 import java.nio.channels.DatagramChannel;
 import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
@@ -44,7 +49,9 @@ import org.xnio.ChannelListener;
 import org.xnio.ChannelListeners;
 import org.xnio.ManagementRegistration;
 import org.xnio.ClosedWorkerException;
+import org.xnio.IoThreadSelection;
 import org.xnio.IoUtils;
+import org.xnio.LocalSocketAddress;
 import org.xnio.Option;
 import org.xnio.OptionMap;
 import org.xnio.Options;
@@ -52,6 +59,7 @@ import org.xnio.StreamConnection;
 import org.xnio.XnioWorker;
 import org.xnio.channels.AcceptingChannel;
 import org.xnio.channels.MulticastMessageChannel;
+import org.xnio.management.XnioIoThreadMXBean;
 import org.xnio.management.XnioServerMXBean;
 import org.xnio.management.XnioWorkerMXBean;
 
@@ -70,6 +78,13 @@ final class NioXnioWorker extends XnioWorker {
     private final WorkerThread[] workerThreads;
     private final WorkerThread acceptThread;
     private final NioWorkerMetrics metrics;
+    private final IoThreadSelection threadSelection;
+    private final ConnectionCounters.Totals connectionTotals = new ConnectionCounters.Totals(this);
+
+    @SuppressWarnings("unused")
+    private volatile int roundRobin;
+    private volatile int napiRoundRobin;
+    private final ConcurrentMap<Integer, WorkerThread> napiThreads = new ConcurrentHashMap<Integer, WorkerThread>();
 
     @SuppressWarnings("unused")
     private volatile Thread shutdownWaiter;
@@ -78,6 +93,9 @@ final class NioXnioWorker extends XnioWorker {
 
     private static final AtomicIntegerFieldUpdater<NioXnioWorker> stateUpdater = AtomicIntegerFieldUpdater.newUpdater(NioXnioWorker.class, "state");
 
+    private static final AtomicIntegerFieldUpdater<NioXnioWorker> roundRobinUpdater = AtomicIntegerFieldUpdater.newUpdater(NioXnioWorker.class, "roundRobin");
+    private static final AtomicIntegerFieldUpdater<NioXnioWorker> napiRoundRobinUpdater = AtomicIntegerFieldUpdater.newUpdater(NioXnioWorker.class, "napiRoundRobin");
+
     @SuppressWarnings("deprecation")
     NioXnioWorker(final NioXnio xnio, final ThreadGroup threadGroup, final OptionMap optionMap, final Runnable terminationTask) throws IOException {
         super(xnio, threadGroup, optionMap, terminationTask);
@@ -99,17 +117,21 @@ final class NioXnioWorker extends XnioWorker {
         WorkerThread[] workerThreads;
         workerThreads = new WorkerThread[threadCount];
         final boolean markWorkerThreadAsDaemon = optionMap.get(Options.THREAD_DAEMON, false);
+        final int spinMicros = optionMap.get(Options.WORKER_IO_SPIN_TIME, 0);
+        if (spinMicros < 0) {
+            throw log.optionOutOfRange("WORKER_IO_SPIN_TIME");
+        }
         boolean ok = false;
         try {
             for (int i = 0; i < threadCount; i++) {
-                final WorkerThread workerThread = new WorkerThread(this, xnio.mainSelectorCreator.open(), String.format("%s I/O-%d", workerName, Integer.valueOf(i + 1)), threadGroup, workerStackSize, i);
+                final WorkerThread workerThread = new WorkerThread(this, xnio.mainSelectorCreator.open(), String.format("%s I/O-%d", workerName, Integer.valueOf(i + 1)), threadGroup, workerStackSize, i, spinMicros);
                 // Mark as daemon if the Options.THREAD_DAEMON has been set
                 if (markWorkerThreadAsDaemon) {
                     workerThread.setDaemon(true);
                 }
                 workerThreads[i] = workerThread;
             }
-            acceptThread = new WorkerThread(this, xnio.mainSelectorCreator.open(), String.format("%s Accept", workerName), threadGroup, workerStackSize, threadCount);
+            acceptThread = new WorkerThread(this, xnio.mainSelectorCreator.open(), String.format("%s Accept", workerName), threadGroup, workerStackSize, threadCount, spinMicros);
             if (markWorkerThreadAsDaemon) {
                 acceptThread.setDaemon(true);
             }
@@ -122,6 +144,7 @@ final class NioXnioWorker extends XnioWorker {
             }
         }
         this.workerThreads = workerThreads;
+        this.threadSelection = optionMap.get(Options.WORKER_IO_THREAD_SELECTION);
         this.metrics = new NioWorkerMetrics(workerName);
         metrics.register();
     }
@@ -136,7 +159,121 @@ final class NioXnioWorker extends XnioWorker {
     }
 
     protected WorkerThread chooseThread() {
-        return getIoThread(ThreadLocalRandom.current().nextInt());
+        final IoThreadSelection threadSelection = this.threadSelection;
+        return threadSelection == null ? getIoThread(ThreadLocalRandom.current().nextInt()) : selectThread(threadSelection);
+    }
+
+    /**
+     * Choose the I/O thread of an accepted connection.  Unless a selection strategy is configured, the hash of the
+     * connection's addresses decides.
+     *
+     * @param accepted the accepted channel
+     * @return the thread
+     * @throws IOException if the addresses of the channel cannot be read
+     */
+    WorkerThread chooseThread(final SocketChannel accepted) throws IOException {
+        final IoThreadSelection threadSelection = this.threadSelection;
+        if (threadSelection == null) {
+            return getIoThread(addressHash(accepted));
+        } else if (threadSelection == IoThreadSelection.NAPI_ID) {
+            final int napiId = NioSocketOptions.getIncomingNapiId(accepted);
+            return napiId == 0 ? getIoThread(addressHash(accepted)) : getNapiThread(napiId);
+        } else {
+            return selectThread(threadSelection);
+        }
+    }
+
+    /**
+     * Get the hash code of an accepted connection's local and remote addresses.
+     *
+     * @param accepted the accepted channel
+     * @return the hash code
+     * @throws IOException if the addresses of the channel cannot be read
+     */
+    static int addressHash(final SocketChannel accepted) throws IOException {
+        final SocketAddress localAddress = accepted.getLocalAddress();
+        int hash;
+        if (localAddress instanceof InetSocketAddress) {
+            final InetSocketAddress address = (InetSocketAddress) localAddress;
+            hash = address.getAddress().hashCode() * 23 + address.getPort();
+        } else if (localAddress instanceof LocalSocketAddress) {
+            hash = ((LocalSocketAddress) localAddress).getName().hashCode();
+        } else {
+            hash = localAddress.hashCode();
+        }
+        final SocketAddress remoteAddress = accepted.getRemoteAddress();
+        if (remoteAddress instanceof InetSocketAddress) {
+            final InetSocketAddress address = (InetSocketAddress) remoteAddress;
+            hash = (address.getAddress().hashCode() * 23 + address.getPort()) * 23 + hash;
+        } else if (remoteAddress instanceof LocalSocketAddress) {
+            hash = ((LocalSocketAddress) remoteAddress).getName().hashCode() * 23 + hash;
+        } else {
+            hash = localAddress.hashCode() * 23 + hash;
+        }
+        return hash;
+    }
+
+    WorkerThread getNapiThread(final int napiId) {
+        final Integer key = Integer.valueOf(napiId);
+        final WorkerThread existing = napiThreads.get(key);
+        if (existing != null) {
+            return existing;
+        }
+        // hand out threads to queues in the order in which the queues are first seen
+        final WorkerThread[] workerThreads = this.workerThreads;
+        if (workerThreads.length == 0) {
+            throw log.noThreads();
+        }
+        final WorkerThread thread = workerThreads[(napiRoundRobinUpdater.getAndIncrement(this) & Integer.MAX_VALUE) % workerThreads.length];
+        final WorkerThread appearing = napiThreads.putIfAbsent(key, thread);
+        return appearing == null ? thread : appearing;
+    }
+
+    private WorkerThread selectThread(final IoThreadSelection threadSelection) {
+        final WorkerThread[] workerThreads = this.workerThreads;
+        final int length = workerThreads.length;
+        if (length == 0) {
+            throw log.noThreads();
+        }
+        if (length == 1) {
+            return workerThreads[0];
+        }
+        final WorkerThread chosen;
+        switch (threadSelection) {
+            case ROUND_ROBIN: {
+                return workerThreads[(roundRobinUpdater.getAndIncrement(this) & Integer.MAX_VALUE) % length];
+            }
+            case LEAST_KEYS: {
+                // start at a random index so that ties are spread out
+                final int start = ThreadLocalRandom.current().nextInt(length);
+                WorkerThread best = workerThreads[start];
+                int bestCount = best.getKeyCount();
+                for (int i = 1; i < length && bestCount > 0; i ++) {
+                    final WorkerThread candidate = workerThreads[(start + i) % length];
+                    final int count = candidate.getKeyCount();
+                    if (count < bestCount) {
+                        best = candidate;
+                        bestCount = count;
+                    }
+                }
+                chosen = best;
+                break;
+            }
+            case TWO_CHOICES: {
+                final ThreadLocalRandom random = ThreadLocalRandom.current();
+                final int first = random.nextInt(length);
+                final int second = (first + 1 + random.nextInt(length - 1)) % length;
+                final WorkerThread a = workerThreads[first];
+                final WorkerThread b = workerThreads[second];
+                chosen = a.getLoad() <= b.getLoad() ? a : b;
+                break;
+            }
+            default: {
+                return workerThreads[ThreadLocalRandom.current().nextInt(length)];
+            }
+        }
+        chosen.reserveKey();
+        return chosen;
     }
 
     public WorkerThread getIoThread(final int hashCode) {
@@ -161,19 +298,19 @@ final class NioXnioWorker extends XnioWorker {
 
     protected AcceptingChannel<StreamConnection> createTcpConnectionServer(final InetSocketAddress bindAddress, final ChannelListener<? super AcceptingChannel<StreamConnection>> acceptListener, final OptionMap optionMap) throws IOException {
         checkShutdown();
+        if (optionMap.get(Options.REUSE_PORT, false)) {
+            final NioTcpServer server = createShardedTcpServer(bindAddress, optionMap);
+            if (server != null) {
+                server.setAcceptListener(acceptListener);
+                return server;
+            }
+        }
         boolean ok = false;
         final ServerSocketChannel channel = ServerSocketChannel.open();
         try {
-            if (optionMap.contains(Options.RECEIVE_BUFFER)) channel.socket().setReceiveBufferSize(optionMap.get(Options.RECEIVE_BUFFER, -1));
-            channel.socket().setReuseAddress(optionMap.get(Options.REUSE_ADDRESSES, true));
-            channel.configureBlocking(false);
-            if (optionMap.contains(Options.BACKLOG)) {
-                channel.socket().bind(bindAddress, optionMap.get(Options.BACKLOG, 128));
-            } else {
-                channel.socket().bind(bindAddress);
-            }
+            bindServerChannel(channel, bindAddress, optionMap);
             if (false) {
-                final NioTcpServer server = new NioTcpServer(this, channel, optionMap);
+                final NioTcpServer server = new NioTcpServer(this, new ServerSocketChannel[] { channel }, optionMap);
                 server.setAcceptListener(acceptListener);
                 ok = true;
                 return server;
@@ -190,6 +327,50 @@ final class NioXnioWorker extends XnioWorker {
         }
     }
 
+    /**
+     * Bind one listening socket per I/O thread to the same address with {@code SO_REUSEPORT}, so that the kernel
+     * spreads incoming connections and every thread accepts its own.
+     *
+     * @return the server, or {@code null} if {@code SO_REUSEPORT} is not supported
+     */
+    private NioTcpServer createShardedTcpServer(final InetSocketAddress bindAddress, final OptionMap optionMap) throws IOException {
+        final ServerSocketChannel[] channels = new ServerSocketChannel[workerThreads.length];
+        boolean ok = false;
+        try {
+            InetSocketAddress address = bindAddress;
+            for (int i = 0; i < channels.length; i ++) {
+                final ServerSocketChannel channel = channels[i] = ServerSocketChannel.open();
+                if (! NioSocketOptions.setIfSupported(channel, NioSocketOptions.SO_REUSEPORT, Boolean.TRUE)) {
+                    log.debugf("SO_REUSEPORT is not supported; using a single listening socket for %s", bindAddress);
+                    return null;
+                }
+                bindServerChannel(channel, address, optionMap);
+                // an ephemeral port is chosen by the first bind; the other sockets join it
+                address = (InetSocketAddress) channel.getLocalAddress();
+            }
+            final NioTcpServer server = new NioTcpServer(this, channels, optionMap);
+            ok = true;
+            return server;
+        } finally {
+            if (! ok) {
+                for (ServerSocketChannel channel : channels) {
+                    IoUtils.safeClose(channel);
+                }
+            }
+        }
+    }
+
+    private static void bindServerChannel(final ServerSocketChannel channel, final InetSocketAddress bindAddress, final OptionMap optionMap) throws IOException {
+        if (optionMap.contains(Options.RECEIVE_BUFFER)) channel.socket().setReceiveBufferSize(optionMap.get(Options.RECEIVE_BUFFER, -1));
+        channel.socket().setReuseAddress(optionMap.get(Options.REUSE_ADDRESSES, true));
+        channel.configureBlocking(false);
+        if (optionMap.contains(Options.BACKLOG)) {
+            channel.socket().bind(bindAddress, optionMap.get(Options.BACKLOG, 128));
+        } else {
+            channel.socket().bind(bindAddress);
+        }
+    }
+
 
     /** {@inheritDoc} */
     public MulticastMessageChannel createUdpServer(final InetSocketAddress bindAddress, final ChannelListener<? super MulticastMessageChannel> bindListener, final OptionMap optionMap) throws IOException {
@@ -377,10 +558,15 @@ final class NioXnioWorker extends XnioWorker {
         return metrics.registerServerMXBean(serverMXBean);
     }
 
+    ConnectionCounters.Totals getConnectionTotals() {
+        return connectionTotals;
+    }
+
     private class NioWorkerMetrics implements XnioWorkerMXBean,Closeable {
         private final String workerName;
         private final CopyOnWriteArrayList<XnioServerMXBean> serverMetrics = new CopyOnWriteArrayList<>();
         private Closeable mbeanHandle;
+        private final List<Closeable> threadHandles = new ArrayList<>();
 
         private NioWorkerMetrics(String workerName) {
             this.workerName = workerName;
@@ -423,16 +609,64 @@ final class NioXnioWorker extends XnioWorker {
             };
         }
 
+        public long getBytesRead() {
+            return connectionTotals.getBytesRead();
+        }
+
+        public long getBytesWritten() {
+            return connectionTotals.getBytesWritten();
+        }
+
+        public long getReadCount() {
+            return connectionTotals.getReadCount();
+        }
+
+        public long getWriteCount() {
+            return connectionTotals.getWriteCount();
+        }
+
+        public long getEmptyReadCount() {
+            return connectionTotals.getEmptyReadCount();
+        }
+
+        public long getEmptyWriteCount() {
+            return connectionTotals.getEmptyWriteCount();
+        }
+
+        public long getTransferToBytes() {
+            return connectionTotals.getTransferToBytes();
+        }
+
+        public long getTransferFromBytes() {
+            return connectionTotals.getTransferFromBytes();
+        }
+
         public Set<XnioServerMXBean> getServerMXBeans() {
             return new LinkedHashSet<>(serverMetrics);
         }
+
+        public Set<XnioIoThreadMXBean> getIoThreadMXBeans() {
+            final Set<XnioIoThreadMXBean> threadMetrics = new LinkedHashSet<>();
+            for (WorkerThread workerThread : workerThreads) {
+                threadMetrics.add(workerThread.getMXBean());
+            }
+            threadMetrics.add(acceptThread.getMXBean());
+            return threadMetrics;
+        }
         private void register(){
             this.mbeanHandle = NioXnio.register(this);
+            for (WorkerThread workerThread : workerThreads) {
+                threadHandles.add(NioXnio.register(workerThread.getMXBean()));
+            }
+            threadHandles.add(NioXnio.register(acceptThread.getMXBean()));
         }
 
         @Override
         public void close() throws IOException {
             safeClose(mbeanHandle);
+            for (Closeable threadHandle : threadHandles) {
+                safeClose(threadHandle);
+            }
             serverMetrics.clear();
         }
     }
@@ -23,20 +23,15 @@ import static org.xnio.nio.Log.log;
 import static org.xnio.nio.Log.tcpServerLog;
 
 import java.io.IOException;
-import java.net.InetSocketAddress;
 import java.net.ServerSocket;
-import java.net.Socket;
 import java.net.SocketAddress;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
 import java.util.Set;
-import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 import java.util.concurrent.atomic.AtomicLongFieldUpdater;
@@ -45,7 +40,6 @@ import org.jboss.logging.Logger;
 import org.xnio.ChannelListener;
 import org.xnio.ChannelListeners;
 import org.xnio.ManagementRegistration;
-import org.xnio.LocalSocketAddress;
 import org.xnio.Option;
 import org.xnio.OptionMap;
 import org.xnio.Options;
@@ -68,7 +62,9 @@ final class QueuedNioTcpServer extends AbstractNioChannel<QueuedNioTcpServer> im
     private final ServerSocket socket;
     private final ManagementRegistration mbeanHandle;
 
-    private final List<BlockingQueue<SocketChannel>> acceptQueues;
+    private final AcceptQueue[] acceptQueues;
+    // the batches being filled by the accept thread, by target thread number
+    private final Batch[] pendingBatches;
 
     private static final Set<Option<?>> options = Option.setBuilder()
             .add(Options.REUSE_ADDRESSES)
@@ -77,10 +73,19 @@ final class QueuedNioTcpServer extends AbstractNioChannel<QueuedNioTcpServer> im
             .add(Options.KEEP_ALIVE)
             .add(Options.TCP_OOB_INLINE)
             .add(Options.TCP_NODELAY)
+            .add(Options.TCP_KEEPIDLE)
+            .add(Options.TCP_KEEPINTERVAL)
+            .add(Options.TCP_KEEPCOUNT)
+            .add(Options.TCP_QUICKACK)
             .add(Options.CONNECTION_HIGH_WATER)
             .add(Options.CONNECTION_LOW_WATER)
             .add(Options.READ_TIMEOUT)
+            .add(Options.IDLE_TIMEOUT)
+            .add(Options.WRITE_COALESCING)
             .add(Options.WRITE_TIMEOUT)
+            .add(Options.ACCEPT_BATCH_SIZE)
+            .add(Options.ACCEPT_RATE_LIMIT)
+            .add(Options.ACCEPT_RATE_BURST)
             .create();
 
     @SuppressWarnings("unused")
@@ -92,11 +97,26 @@ final class QueuedNioTcpServer extends AbstractNioChannel<QueuedNioTcpServer> im
     @SuppressWarnings("unused")
     private volatile int sendBuffer = -1;
     @SuppressWarnings("unused")
+    private volatile int keepIdle = -1;
+    @SuppressWarnings("unused")
+    private volatile int keepInterval = -1;
+    @SuppressWarnings("unused")
+    private volatile int keepCount = -1;
+    @SuppressWarnings("unused")
+    private volatile int quickAck = -1;
+    @SuppressWarnings("unused")
     private volatile long connectionStatus = CONN_LOW_MASK | CONN_HIGH_MASK;
     @SuppressWarnings("unused")
     private volatile int readTimeout;
     @SuppressWarnings("unused")
     private volatile int writeTimeout;
+    @SuppressWarnings("unused")
+    private volatile int idleTimeout;
+    @SuppressWarnings("unused")
+    private volatile int writeCoalescing;
+    private volatile int acceptBatchSize = DEFAULT_ACCEPT_BATCH_SIZE;
+
+    private static final int DEFAULT_ACCEPT_BATCH_SIZE = 16;
 
     private static final long CONN_LOW_MASK     = 0x000000007FFFFFFFL;
     private static final long CONN_LOW_BIT      = 0L;
@@ -112,23 +132,38 @@ final class QueuedNioTcpServer extends AbstractNioChannel<QueuedNioTcpServer> im
      */
     private int openConnections;
     private volatile boolean suspendedDueToWatermark;
+    private volatile boolean suspendedDueToRate;
+    private final AcceptRateLimiter rateLimiter;
+    private volatile AcceptedSocketOptions acceptedSocketOptions;
     private volatile boolean suspended;
 
     private static final AtomicIntegerFieldUpdater<QueuedNioTcpServer> keepAliveUpdater = AtomicIntegerFieldUpdater.newUpdater(QueuedNioTcpServer.class, "keepAlive");
     private static final AtomicIntegerFieldUpdater<QueuedNioTcpServer> oobInlineUpdater = AtomicIntegerFieldUpdater.newUpdater(QueuedNioTcpServer.class, "oobInline");
     private static final AtomicIntegerFieldUpdater<QueuedNioTcpServer> tcpNoDelayUpdater = AtomicIntegerFieldUpdater.newUpdater(QueuedNioTcpServer.class, "tcpNoDelay");
     private static final AtomicIntegerFieldUpdater<QueuedNioTcpServer> sendBufferUpdater = AtomicIntegerFieldUpdater.newUpdater(QueuedNioTcpServer.class, "sendBuffer");
+    private static final AtomicIntegerFieldUpdater<QueuedNioTcpServer> keepIdleUpdater = AtomicIntegerFieldUpdater.newUpdater(QueuedNioTcpServer.class, "keepIdle");
+    private static final AtomicIntegerFieldUpdater<QueuedNioTcpServer> keepIntervalUpdater = AtomicIntegerFieldUpdater.newUpdater(QueuedNioTcpServer.class, "keepInterval");
+    private static final AtomicIntegerFieldUpdater<QueuedNioTcpServer> keepCountUpdater = AtomicIntegerFieldUpdater.newUpdater(QueuedNioTcpServer.class, "keepCount");
+    private static final AtomicIntegerFieldUpdater<QueuedNioTcpServer> quickAckUpdater = AtomicIntegerFieldUpdater.newUpdater(QueuedNioTcpServer.class, "quickAck");
     private static final AtomicIntegerFieldUpdater<QueuedNioTcpServer> readTimeoutUpdater = AtomicIntegerFieldUpdater.newUpdater(QueuedNioTcpServer.class, "readTimeout");
     private static final AtomicIntegerFieldUpdater<QueuedNioTcpServer> writeTimeoutUpdater = AtomicIntegerFieldUpdater.newUpdater(QueuedNioTcpServer.class, "writeTimeout");
+    private static final AtomicIntegerFieldUpdater<QueuedNioTcpServer> idleTimeoutUpdater = AtomicIntegerFieldUpdater.newUpdater(QueuedNioTcpServer.class, "idleTimeout");
+    private static final AtomicIntegerFieldUpdater<QueuedNioTcpServer> writeCoalescingUpdater = AtomicIntegerFieldUpdater.newUpdater(QueuedNioTcpServer.class, "writeCoalescing");
 
     private static final AtomicLongFieldUpdater<QueuedNioTcpServer> connectionStatusUpdater = AtomicLongFieldUpdater.newUpdater(QueuedNioTcpServer.class, "connectionStatus");
     private final Runnable acceptTask = new Runnable() {
         public void run() {
             final WorkerThread current = WorkerThread.getCurrent();
             assert current != null;
-            final BlockingQueue<SocketChannel> queue = acceptQueues.get(current.getNumber());
+            final AcceptQueue queue = acceptQueues[current.getNumber()];
             ChannelListeners.invokeChannelListener(QueuedNioTcpServer.this, getAcceptListener());
-            if (! queue.isEmpty() && !suspendedDueToWatermark) {
+            if (queue.hasPending() && !suspendedDueToWatermark) {
+                current.execute(this);
+                return;
+            }
+            queue.unschedule();
+            // a batch handed off after the check above found the task still scheduled
+            if (queue.hasPending() && !suspendedDueToWatermark && queue.schedule()) {
                 current.execute(this);
             }
         }
@@ -140,7 +175,7 @@ final class QueuedNioTcpServer extends AbstractNioChannel<QueuedNioTcpServer> im
             openConnections--;
             if(suspendedDueToWatermark && openConnections < getLowWater(connectionStatus)) {
                 synchronized (QueuedNioTcpServer.this) {
-                    if(!suspended) {
+                    if(!suspended && !suspendedDueToRate) {
                         handle.resume(SelectionKey.OP_ACCEPT);
                     }
                     suspendedDueToWatermark = false;
@@ -149,16 +184,29 @@ final class QueuedNioTcpServer extends AbstractNioChannel<QueuedNioTcpServer> im
         }
     };
 
+    private final Runnable rateResumeTask = new Runnable() {
+        @Override
+        public void run() {
+            synchronized (QueuedNioTcpServer.this) {
+                suspendedDueToRate = false;
+                if(!suspended && !suspendedDueToWatermark) {
+                    handle.resume(SelectionKey.OP_ACCEPT);
+                }
+            }
+        }
+    };
+
     QueuedNioTcpServer(final NioXnioWorker worker, final ServerSocketChannel channel, final OptionMap optionMap) throws IOException {
         super(worker);
         this.channel = channel;
         this.thread = worker.getAcceptThread();
         final WorkerThread[] workerThreads = worker.getAll();
-        final List<BlockingQueue<SocketChannel>> acceptQueues = new ArrayList<>(workerThreads.length);
+        final AcceptQueue[] acceptQueues = new AcceptQueue[workerThreads.length];
         for (int i = 0; i < workerThreads.length; i++) {
-            acceptQueues.add(i, new LinkedBlockingQueue<SocketChannel>());
+            acceptQueues[i] = new AcceptQueue();
         }
         this.acceptQueues = acceptQueues;
+        pendingBatches = new Batch[workerThreads.length];
         socket = channel.socket();
         if (optionMap.contains(Options.SEND_BUFFER)) {
             final int sendBufferSize = optionMap.get(Options.SEND_BUFFER, DEFAULT_BUFFER_SIZE);
@@ -176,12 +224,39 @@ final class QueuedNioTcpServer extends AbstractNioChannel<QueuedNioTcpServer> im
         if (optionMap.contains(Options.TCP_NODELAY)) {
             tcpNoDelayUpdater.lazySet(this, optionMap.get(Options.TCP_NODELAY, false) ? 1 : 0);
         }
+        if (optionMap.contains(Options.TCP_KEEPIDLE)) {
+            keepIdleUpdater.lazySet(this, checkPositive(optionMap.get(Options.TCP_KEEPIDLE, -1), "keepIdle"));
+        }
+        if (optionMap.contains(Options.TCP_KEEPINTERVAL)) {
+            keepIntervalUpdater.lazySet(this, checkPositive(optionMap.get(Options.TCP_KEEPINTERVAL, -1), "keepInterval"));
+        }
+        if (optionMap.contains(Options.TCP_KEEPCOUNT)) {
+            keepCountUpdater.lazySet(this, checkPositive(optionMap.get(Options.TCP_KEEPCOUNT, -1), "keepCount"));
+        }
+        if (optionMap.contains(Options.TCP_QUICKACK)) {
+            quickAckUpdater.lazySet(this, optionMap.get(Options.TCP_QUICKACK, false) ? 1 : 0);
+        }
+        updateAcceptedSocketOptions();
         if (optionMap.contains(Options.READ_TIMEOUT)) {
             readTimeoutUpdater.lazySet(this, optionMap.get(Options.READ_TIMEOUT, 0));
         }
         if (optionMap.contains(Options.WRITE_TIMEOUT)) {
             writeTimeoutUpdater.lazySet(this, optionMap.get(Options.WRITE_TIMEOUT, 0));
         }
+        if (optionMap.contains(Options.IDLE_TIMEOUT)) {
+            idleTimeoutUpdater.lazySet(this, optionMap.get(Options.IDLE_TIMEOUT, 0));
+        }
+        if (optionMap.contains(Options.WRITE_COALESCING)) {
+            writeCoalescingUpdater.lazySet(this, optionMap.get(Options.WRITE_COALESCING, false) ? 1 : 0);
+        }
+        if (optionMap.contains(Options.ACCEPT_BATCH_SIZE)) {
+            final int batchSize = optionMap.get(Options.ACCEPT_BATCH_SIZE, DEFAULT_ACCEPT_BATCH_SIZE);
+            if (batchSize < 1) {
+                throw log.parameterOutOfRange("acceptBatchSize");
+            }
+            acceptBatchSize = batchSize;
+        }
+        rateLimiter = AcceptRateLimiter.create(optionMap);
         final int highWater;
         final int lowWater;
         if (optionMap.contains(Options.CONNECTION_HIGH_WATER) || optionMap.contains(Options.CONNECTION_LOW_WATER)) {
@@ -235,6 +310,38 @@ final class QueuedNioTcpServer extends AbstractNioChannel<QueuedNioTcpServer> im
                     public int getConnectionLimitLowWater() {
                         return getLowWater(connectionStatus);
                     }
+
+                    public int getAcceptQueueSize() {
+                        int size = 0;
+                        for (AcceptQueue queue : acceptQueues) {
+                            size += queue.size;
+                        }
+                        return size;
+                    }
+
+                    public long getAcceptHandoffCount() {
+                        long count = 0L;
+                        for (AcceptQueue queue : acceptQueues) {
+                            count += queue.handoffCount;
+                        }
+                        return count;
+                    }
+
+                    public long getAcceptHandoffTime() {
+                        long time = 0L;
+                        for (AcceptQueue queue : acceptQueues) {
+                            time += queue.handoffTime;
+                        }
+                        return time;
+                    }
+
+                    public long getAcceptAdmittedCount() {
+                        return rateLimiter.getAdmittedCount();
+                    }
+
+                    public long getAcceptDeferredCount() {
+                        return rateLimiter.getDeferredCount();
+                    }
                 });
     }
 
@@ -273,14 +380,36 @@ final class QueuedNioTcpServer extends AbstractNioChannel<QueuedNioTcpServer> im
             return option.cast(Boolean.valueOf(oobInline != 0));
         } else if (option == Options.TCP_NODELAY) {
             return option.cast(Boolean.valueOf(tcpNoDelay != 0));
+        } else if (option == Options.TCP_KEEPIDLE) {
+            final int value = keepIdle;
+            return value == -1 ? null : option.cast(Integer.valueOf(value));
+        } else if (option == Options.TCP_KEEPINTERVAL) {
+            final int value = keepInterval;
+            return value == -1 ? null : option.cast(Integer.valueOf(value));
+        } else if (option == Options.TCP_KEEPCOUNT) {
+            final int value = keepCount;
+            return value == -1 ? null : option.cast(Integer.valueOf(value));
+        } else if (option == Options.TCP_QUICKACK) {
+            final int value = quickAck;
+            return value == -1 ? null : option.cast(Boolean.valueOf(value != 0));
         } else if (option == Options.READ_TIMEOUT) {
             return option.cast(Integer.valueOf(readTimeout));
         } else if (option == Options.WRITE_TIMEOUT) {
             return option.cast(Integer.valueOf(writeTimeout));
+        } else if (option == Options.IDLE_TIMEOUT) {
+            return option.cast(Integer.valueOf(idleTimeout));
+        } else if (option == Options.WRITE_COALESCING) {
+            return option.cast(Boolean.valueOf(writeCoalescing != 0));
         } else if (option == Options.CONNECTION_HIGH_WATER) {
             return option.cast(Integer.valueOf(getHighWater(connectionStatus)));
         } else if (option == Options.CONNECTION_LOW_WATER) {
             return option.cast(Integer.valueOf(getLowWater(connectionStatus)));
+        } else if (option == Options.ACCEPT_BATCH_SIZE) {
+            return option.cast(Integer.valueOf(acceptBatchSize));
+        } else if (option == Options.ACCEPT_RATE_LIMIT) {
+            return option.cast(Integer.valueOf(rateLimiter.getRate()));
+        } else if (option == Options.ACCEPT_RATE_BURST) {
+            return option.cast(Integer.valueOf(rateLimiter.getBurst()));
         } else {
             return null;
         }
@@ -311,20 +440,49 @@ final class QueuedNioTcpServer extends AbstractNioChannel<QueuedNioTcpServer> im
             old = Boolean.valueOf(oobInlineUpdater.getAndSet(this, Options.TCP_OOB_INLINE.cast(value, Boolean.FALSE).booleanValue() ? 1 : 0) != 0);
         } else if (option == Options.TCP_NODELAY) {
             old = Boolean.valueOf(tcpNoDelayUpdater.getAndSet(this, Options.TCP_NODELAY.cast(value, Boolean.FALSE).booleanValue() ? 1 : 0) != 0);
+        } else if (option == Options.TCP_KEEPIDLE) {
+            old = unsetIfNegative(keepIdleUpdater.getAndSet(this, value == null ? -1 : checkPositive(Options.TCP_KEEPIDLE.cast(value).intValue(), "TCP_KEEPIDLE")));
+        } else if (option == Options.TCP_KEEPINTERVAL) {
+            old = unsetIfNegative(keepIntervalUpdater.getAndSet(this, value == null ? -1 : checkPositive(Options.TCP_KEEPINTERVAL.cast(value).intValue(), "TCP_KEEPINTERVAL")));
+        } else if (option == Options.TCP_KEEPCOUNT) {
+            old = unsetIfNegative(keepCountUpdater.getAndSet(this, value == null ? -1 : checkPositive(Options.TCP_KEEPCOUNT.cast(value).intValue(), "TCP_KEEPCOUNT")));
+        } else if (option == Options.TCP_QUICKACK) {
+            final int oldValue = quickAckUpdater.getAndSet(this, value == null ? -1 : Options.TCP_QUICKACK.cast(value).booleanValue() ? 1 : 0);
+            old = oldValue == -1 ? null : Boolean.valueOf(oldValue != 0);
         } else if (option == Options.READ_TIMEOUT) {
             old = Integer.valueOf(readTimeoutUpdater.getAndSet(this, Options.READ_TIMEOUT.cast(value, Integer.valueOf(0)).intValue()));
         } else if (option == Options.WRITE_TIMEOUT) {
             old = Integer.valueOf(writeTimeoutUpdater.getAndSet(this, Options.WRITE_TIMEOUT.cast(value, Integer.valueOf(0)).intValue()));
+        } else if (option == Options.IDLE_TIMEOUT) {
+            old = Integer.valueOf(idleTimeoutUpdater.getAndSet(this, Options.IDLE_TIMEOUT.cast(value, Integer.valueOf(0)).intValue()));
+        } else if (option == Options.WRITE_COALESCING) {
+            old = Boolean.valueOf(writeCoalescingUpdater.getAndSet(this, Options.WRITE_COALESCING.cast(value, Boolean.FALSE).booleanValue() ? 1 : 0) != 0);
         } else if (option == Options.CONNECTION_HIGH_WATER) {
             old = Integer.valueOf(getHighWater(updateWaterMark(-1, Options.CONNECTION_HIGH_WATER.cast(value, Integer.valueOf(Integer.MAX_VALUE)).intValue())));
         } else if (option == Options.CONNECTION_LOW_WATER) {
             old = Integer.valueOf(getLowWater(updateWaterMark(Options.CONNECTION_LOW_WATER.cast(value, Integer.valueOf(Integer.MAX_VALUE)).intValue(), -1)));
+        } else if (option == Options.ACCEPT_BATCH_SIZE) {
+            final int newValue = Options.ACCEPT_BATCH_SIZE.cast(value, Integer.valueOf(DEFAULT_ACCEPT_BATCH_SIZE)).intValue();
+            if (newValue < 1) {
+                throw log.optionOutOfRange("ACCEPT_BATCH_SIZE");
+            }
+            old = Integer.valueOf(acceptBatchSize);
+            acceptBatchSize = newValue;
         } else {
             return null;
         }
+        if (AcceptedSocketOptions.isAcceptedSocketOption(option)) {
+            updateAcceptedSocketOptions();
+        }
         return option.cast(old);
     }
 
+    private synchronized void updateAcceptedSocketOptions() throws IOException {
+        final AcceptedSocketOptions acceptedSocketOptions = new AcceptedSocketOptions(keepAlive != 0, oobInline != 0, tcpNoDelay != 0, sendBuffer, keepIdle, keepInterval, keepCount, quickAck);
+        acceptedSocketOptions.applyTo(channel);
+        this.acceptedSocketOptions = acceptedSocketOptions;
+    }
+
     private long updateWaterMark(int reqNewLowWater, int reqNewHighWater) {
         // at least one must be specified
         assert reqNewLowWater != -1 || reqNewHighWater != -1;
@@ -363,7 +521,7 @@ final class QueuedNioTcpServer extends AbstractNioChannel<QueuedNioTcpServer> im
                     }
                 } else if(suspendedDueToWatermark && openConnections <= getLowWater(connectionStatus)) {
                     suspendedDueToWatermark = false;
-                    if(!suspended) {
+                    if(!suspended && !suspendedDueToRate) {
                         handle.resume(SelectionKey.OP_ACCEPT);
                     }
                 }
@@ -372,6 +530,17 @@ final class QueuedNioTcpServer extends AbstractNioChannel<QueuedNioTcpServer> im
         return oldVal;
     }
 
+    private static int checkPositive(final int value, final String name) {
+        if (value < 1) {
+            throw log.parameterOutOfRange(name);
+        }
+        return value;
+    }
+
+    private static Integer unsetIfNegative(final int value) {
+        return value == -1 ? null : Integer.valueOf(value);
+    }
+
     private static int getHighWater(final long value) {
         return (int) ((value & CONN_HIGH_MASK) >> CONN_HIGH_BIT);
     }
@@ -388,23 +557,20 @@ final class QueuedNioTcpServer extends AbstractNioChannel<QueuedNioTcpServer> im
         if (current == null) {
             return null;
         }
-        final BlockingQueue<SocketChannel> socketChannels = acceptQueues.get(current.getNumber());
+        final AcceptQueue queue = acceptQueues[current.getNumber()];
         final SocketChannel accepted;
         boolean ok = false;
         try {
-            accepted = socketChannels.poll();
+            accepted = queue.poll();
             if (accepted != null) try {
-                accepted.configureBlocking(false);
-                final Socket socket = accepted.socket();
-                socket.setKeepAlive(keepAlive != 0);
-                socket.setOOBInline(oobInline != 0);
-                socket.setTcpNoDelay(tcpNoDelay != 0);
-                final int sendBuffer = this.sendBuffer;
-                if (sendBuffer > 0) socket.setSendBufferSize(sendBuffer);
+                // the accept thread has already configured the socket
                 final SelectionKey selectionKey = current.registerChannel(accepted);
                 final NioSocketStreamConnection newConnection = new NioSocketStreamConnection(current, selectionKey, handle);
                 newConnection.setOption(Options.READ_TIMEOUT, Integer.valueOf(readTimeout));
                 newConnection.setOption(Options.WRITE_TIMEOUT, Integer.valueOf(writeTimeout));
+                final int idleTimeout = this.idleTimeout;
+                if (idleTimeout > 0) newConnection.setOption(Options.IDLE_TIMEOUT, Integer.valueOf(idleTimeout));
+                if (writeCoalescing != 0) newConnection.setOption(Options.WRITE_COALESCING, Boolean.TRUE);
                 ok = true;
                 return newConnection;
             } finally {
@@ -460,7 +626,7 @@ final class QueuedNioTcpServer extends AbstractNioChannel<QueuedNioTcpServer> im
     public void resumeAccepts() {
         synchronized (this) {
             suspended = false;
-            if(!suspendedDueToWatermark) {
+            if(!suspendedDueToWatermark && !suspendedDueToRate) {
                 handle.resume(SelectionKey.OP_ACCEPT);
             }
         }
@@ -490,59 +656,174 @@ final class QueuedNioTcpServer extends AbstractNioChannel<QueuedNioTcpServer> im
     }
 
     void handleReady() {
+        final Batch[] pendingBatches = this.pendingBatches;
+        final boolean limited = rateLimiter.isLimited();
+        // whether a token was taken for a connection which has not been accepted yet
+        boolean token = false;
         try {
-            final SocketChannel accepted = channel.accept();
-            boolean ok = false;
-            if (accepted != null) try {
-                final SocketAddress localAddress = accepted.getLocalAddress();
-                int hash;
-                if (localAddress instanceof InetSocketAddress) {
-                    final InetSocketAddress address = (InetSocketAddress) localAddress;
-                    hash = address.getAddress().hashCode() * 23 + address.getPort();
-                } else if (localAddress instanceof LocalSocketAddress) {
-                    hash = ((LocalSocketAddress) localAddress).getName().hashCode();
-                } else {
-                    hash = localAddress.hashCode();
+            for (int count = acceptBatchSize; count > 0 && ! suspendedDueToWatermark; count --) {
+                if (limited) {
+                    final long wait = rateLimiter.acquire(System.nanoTime());
+                    if (wait > 0L) {
+                        // leave the rest in the backlog until a token is due
+                        synchronized (QueuedNioTcpServer.this) {
+                            handle.suspend(SelectionKey.OP_ACCEPT);
+                            suspendedDueToRate = true;
+                        }
+                        thread.executeAfter(rateResumeTask, AcceptRateLimiter.toMillis(wait), TimeUnit.MILLISECONDS);
+                        break;
+                    }
+                    token = true;
                 }
-                final SocketAddress remoteAddress = accepted.getRemoteAddress();
-                if (remoteAddress instanceof InetSocketAddress) {
-                    final InetSocketAddress address = (InetSocketAddress) remoteAddress;
-                    hash = (address.getAddress().hashCode() * 23 + address.getPort()) * 23 + hash;
-                } else if (remoteAddress instanceof LocalSocketAddress) {
-                    hash = ((LocalSocketAddress) remoteAddress).getName().hashCode() * 23 + hash;
-                } else {
-                    hash = localAddress.hashCode() * 23 + hash;
+                final SocketChannel accepted = channel.accept();
+                if (accepted == null) {
+                    break;
                 }
-                accepted.configureBlocking(false);
-                final Socket socket = accepted.socket();
-                socket.setKeepAlive(keepAlive != 0);
-                socket.setOOBInline(oobInline != 0);
-                socket.setTcpNoDelay(tcpNoDelay != 0);
-                final int sendBuffer = this.sendBuffer;
-                if (sendBuffer > 0) socket.setSendBufferSize(sendBuffer);
-                final WorkerThread ioThread = worker.getIoThread(hash);
-                ok = true;
-                final int number = ioThread.getNumber();
-                final BlockingQueue<SocketChannel> queue = acceptQueues.get(number);
-                queue.add(accepted);
-                // todo: only execute if necessary
-                ioThread.execute(acceptTask);
-                openConnections++;
-                if(openConnections >= getHighWater(connectionStatus)) {
-                    synchronized (QueuedNioTcpServer.this) {
-                        handle.suspend(SelectionKey.OP_ACCEPT);
-                        suspendedDueToWatermark = true;
+                boolean ok = false;
+                try {
+                    accepted.configureBlocking(false);
+                    acceptedSocketOptions.applyTo(accepted);
+                    final WorkerThread ioThread = worker.chooseThread(accepted);
+                    ok = true;
+                    token = false;
+                    rateLimiter.admitted();
+                    final int number = ioThread.getNumber();
+                    Batch batch = pendingBatches[number];
+                    if (batch == null) {
+                        batch = pendingBatches[number] = new Batch();
+                    }
+                    batch.add(accepted);
+                    openConnections++;
+                    if(openConnections >= getHighWater(connectionStatus)) {
+                        synchronized (QueuedNioTcpServer.this) {
+                            handle.suspend(SelectionKey.OP_ACCEPT);
+                            suspendedDueToWatermark = true;
+                        }
+                    }
+                } catch (IOException ignored) {
+                } finally {
+                    if (! ok) {
+                        safeClose(accepted);
+                        if (token) {
+                            rateLimiter.refund();
+                            token = false;
+                        }
                     }
                 }
-            } finally {
-                if (! ok) safeClose(accepted);
             }
         } catch (IOException ignored) {
 
+        } finally {
+            // nothing was waiting, or the accept failed, so the token was not used
+            if (token) rateLimiter.refund();
+            handOff(pendingBatches);
+        }
+    }
+
+    /**
+     * Hand the batches filled by the accept thread over to their I/O threads, scheduling the accept task at most
+     * once per thread.
+     */
+    private void handOff(final Batch[] pendingBatches) {
+        final WorkerThread[] threads = worker.getAll();
+        long now = 0L;
+        for (int i = 0; i < pendingBatches.length; i ++) {
+            final Batch batch = pendingBatches[i];
+            if (batch != null) {
+                pendingBatches[i] = null;
+                if (now == 0L) {
+                    now = System.nanoTime();
+                }
+                batch.time = now;
+                final AcceptQueue queue = acceptQueues[i];
+                queue.offer(batch);
+                if (queue.schedule()) {
+                    threads[i].execute(acceptTask);
+                }
+            }
         }
     }
 
     public void connectionClosed() {
         thread.execute(connectionClosedTask);
     }
+
+    /**
+     * Connections accepted in one go for the same I/O thread.
+     */
+    static final class Batch {
+        SocketChannel[] channels = new SocketChannel[4];
+        int size;
+        long time;
+
+        void add(final SocketChannel channel) {
+            if (size == channels.length) {
+                channels = Arrays.copyOf(channels, size << 1);
+            }
+            channels[size ++] = channel;
+        }
+    }
+
+    /**
+     * The accepted connections handed to one I/O thread.  Batches are offered by the accept thread and taken apart by
+     * the target thread, which is the only one to touch the current batch.
+     */
+    static final class AcceptQueue {
+        private static final AtomicIntegerFieldUpdater<AcceptQueue> sizeUpdater = AtomicIntegerFieldUpdater.newUpdater(AcceptQueue.class, "size");
+        private static final AtomicIntegerFieldUpdater<AcceptQueue> scheduledUpdater = AtomicIntegerFieldUpdater.newUpdater(AcceptQueue.class, "scheduledFlag");
+        private static final AtomicLongFieldUpdater<AcceptQueue> handoffCountUpdater = AtomicLongFieldUpdater.newUpdater(AcceptQueue.class, "handoffCount");
+        private static final AtomicLongFieldUpdater<AcceptQueue> handoffTimeUpdater = AtomicLongFieldUpdater.newUpdater(AcceptQueue.class, "handoffTime");
+
+        private final MpscLinkedQueue<Batch> batches = new MpscLinkedQueue<Batch>();
+        volatile int size;
+        volatile long handoffCount;
+        volatile long handoffTime;
+        @SuppressWarnings("unused")
+        private volatile int scheduledFlag;
+
+        // target thread only
+        private Batch current;
+        private int index;
+
+        void offer(final Batch batch) {
+            sizeUpdater.getAndAdd(this, batch.size);
+            batches.offer(batch);
+        }
+
+        /**
+         * Mark the accept task as scheduled for this queue.
+         *
+         * @return {@code true} if the caller must execute the task, {@code false} if it is already scheduled
+         */
+        boolean schedule() {
+            return scheduledUpdater.compareAndSet(this, 0, 1);
+        }
+
+        void unschedule() {
+            scheduledUpdater.set(this, 0);
+        }
+
+        boolean hasPending() {
+            final Batch current = this.current;
+            return current != null && index < current.size || ! batches.isEmpty();
+        }
+
+        SocketChannel poll() {
+            Batch batch = current;
+            if (batch == null || index == batch.size) {
+                batch = batches.poll();
+                current = batch;
+                index = 0;
+                if (batch == null) {
+                    return null;
+                }
+                handoffCountUpdater.lazySet(this, handoffCount + 1);
+                handoffTimeUpdater.lazySet(this, handoffTime + (System.nanoTime() - batch.time));
+            }
+            final SocketChannel channel = batch.channels[index];
+            batch.channels[index ++] = null;
+            sizeUpdater.decrementAndGet(this);
+            return channel;
+        }
+    }
 }
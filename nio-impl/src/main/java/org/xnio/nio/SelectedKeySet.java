@@ -0,0 +1,141 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2017 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xnio.nio;
+
+import java.lang.reflect.Field;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import static org.xnio.nio.Log.selectorLog;
+
+/**
+ * An array-backed selected key set which replaces the {@code HashSet} of a JDK selector, so that the owning thread
+ * can walk the selected keys by index without copying, locking or generating garbage.
+ * <p>
+ * The selector only ever adds to the set while selecting, so only the selecting thread may touch it.  As with
+ * similar implementations, {@link #contains(Object)} and {@link #remove(Object)} always return {@code false}: the
+ * selector tolerates this, at worst handing a key over twice in one pass, and the set is reset after every pass.
+ */
+final class SelectedKeySet extends AbstractSet<SelectionKey> {
+
+    private static final Field SELECTED_KEYS_FIELD;
+    private static final Field PUBLIC_SELECTED_KEYS_FIELD;
+
+    static {
+        final Field[] fields = AccessController.doPrivileged(new PrivilegedAction<Field[]>() {
+            public Field[] run() {
+                try {
+                    final Class<?> selectorImplClass = Class.forName("sun.nio.ch.SelectorImpl", false, null);
+                    final Field selectedKeys = selectorImplClass.getDeclaredField("selectedKeys");
+                    final Field publicSelectedKeys = selectorImplClass.getDeclaredField("publicSelectedKeys");
+                    selectedKeys.setAccessible(true);
+                    publicSelectedKeys.setAccessible(true);
+                    return new Field[] { selectedKeys, publicSelectedKeys };
+                } catch (Throwable t) {
+                    selectorLog.tracef(t, "Selector internals are not accessible");
+                    return null;
+                }
+            }
+        });
+        SELECTED_KEYS_FIELD = fields == null ? null : fields[0];
+        PUBLIC_SELECTED_KEYS_FIELD = fields == null ? null : fields[1];
+    }
+
+    SelectionKey[] keys = new SelectionKey[1024];
+    int size;
+
+    private SelectedKeySet() {
+    }
+
+    /**
+     * Install a new array-backed key set into the given selector.
+     *
+     * @param selector the selector
+     * @return the installed key set, or {@code null} if the selector is not a JDK selector or its internals are not accessible
+     */
+    static SelectedKeySet install(final Selector selector) {
+        final Field selectedKeysField = SELECTED_KEYS_FIELD;
+        if (selectedKeysField == null || ! selectedKeysField.getDeclaringClass().isInstance(selector)) {
+            return null;
+        }
+        final SelectedKeySet keySet = new SelectedKeySet();
+        try {
+            selectedKeysField.set(selector, keySet);
+            PUBLIC_SELECTED_KEYS_FIELD.set(selector, keySet);
+        } catch (Throwable t) {
+            selectorLog.tracef(t, "Failed to install selected key set on %s", selector);
+            return null;
+        }
+        return keySet;
+    }
+
+    public boolean add(final SelectionKey key) {
+        if (key == null) {
+            return false;
+        }
+        SelectionKey[] keys = this.keys;
+        final int size = this.size;
+        if (size == keys.length) {
+            this.keys = keys = Arrays.copyOf(keys, size << 1);
+        }
+        keys[size] = key;
+        this.size = size + 1;
+        return true;
+    }
+
+    public boolean contains(final Object o) {
+        return false;
+    }
+
+    public boolean remove(final Object o) {
+        return false;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        Arrays.fill(keys, 0, size, null);
+        size = 0;
+    }
+
+    public Iterator<SelectionKey> iterator() {
+        return new Iterator<SelectionKey>() {
+            private int idx;
+
+            public boolean hasNext() {
+                return idx < size;
+            }
+
+            public SelectionKey next() {
+                if (! hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return keys[idx ++];
+            }
+        };
+    }
+}
@@ -0,0 +1,287 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2017 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xnio.nio;
+
+import java.io.IOException;
+import java.nio.channels.Selector;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.xnio.IoUtils;
+import org.xnio.management.XnioSelectorPoolMXBean;
+
+import static java.lang.System.nanoTime;
+import static org.xnio.nio.Log.log;
+
+/**
+ * A bounded pool of temporary selectors for threads which block on a channel.  Selectors are borrowed for the
+ * duration of a single wait and must be returned with no keys left registered.  When every selector is in use and
+ * the pool is at its maximum size, a borrower with a deadline waits until then for one to be returned; a borrower
+ * without one never waits, since the selectors out may all be held by threads blocked indefinitely, but gets an
+ * extra selector which is closed when it is returned.
+ * <p>
+ * The most recently returned selector is handed out first, so that under light load the same few selectors are
+ * reused and the rest go idle; selectors idle for longer than the idle timeout are closed the next time the pool
+ * is used.
+ */
+final class SelectorPool {
+
+    private final NioXnio.SelectorCreator creator;
+    private final int maxSize;
+    private final long idleTimeoutNanos;
+
+    // guarded by this; most recently returned first
+    private final ArrayDeque<IdleSelector> idle = new ArrayDeque<IdleSelector>();
+    private int size;
+
+    // statistics, guarded by this
+    private long borrowCount;
+    private long waitCount;
+    private long waitTime;
+    private long maxWaitTime;
+    private long evictionCount;
+    private long overflowCount;
+
+    SelectorPool(final NioXnio.SelectorCreator creator, final int maxSize, final long idleTimeoutNanos) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Maximum pool size must be positive");
+        }
+        this.creator = creator;
+        this.maxSize = maxSize;
+        this.idleTimeoutNanos = idleTimeoutNanos;
+    }
+
+    /**
+     * Borrow a selector, opening one beyond the maximum size if the pool is exhausted.
+     *
+     * @return the selector
+     * @throws IOException if a new selector could not be opened
+     */
+    Selector borrow() throws IOException {
+        return borrow(false, 0L);
+    }
+
+    /**
+     * Borrow a selector, waiting until the given deadline for one to be returned if the pool is exhausted.
+     *
+     * @param deadline the deadline, in terms of {@link System#nanoTime()}
+     * @return the selector, or {@code null} if none was returned before the deadline
+     * @throws IOException if a new selector could not be opened or the thread was interrupted while waiting
+     */
+    Selector borrow(final long deadline) throws IOException {
+        return borrow(true, deadline);
+    }
+
+    private Selector borrow(final boolean timed, final long deadline) throws IOException {
+        List<Selector> evicted = null;
+        try {
+            synchronized (this) {
+                long start = 0L;
+                for (;;) {
+                    final long now = nanoTime();
+                    evicted = evict(now, evicted);
+                    final IdleSelector idleSelector = idle.pollFirst();
+                    if (idleSelector == null && size >= maxSize && ! timed) {
+                        overflowCount ++;
+                    }
+                    if (idleSelector != null || size < maxSize || ! timed) {
+                        borrowCount ++;
+                        if (start != 0L) {
+                            final long waited = now - start;
+                            waitTime += waited;
+                            maxWaitTime = Math.max(maxWaitTime, waited);
+                        }
+                        if (idleSelector != null) {
+                            return idleSelector.selector;
+                        }
+                        size ++;
+                        break;
+                    }
+                    if (start == 0L) {
+                        start = now;
+                        waitCount ++;
+                    }
+                    try {
+                        if (deadline - now > 0L) {
+                            TimeUnit.NANOSECONDS.timedWait(this, deadline - now);
+                        } else {
+                            final long waited = now - start;
+                            waitTime += waited;
+                            maxWaitTime = Math.max(maxWaitTime, waited);
+                            return null;
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw log.interruptedIO();
+                    }
+                }
+            }
+        } finally {
+            closeAll(evicted);
+        }
+        boolean ok = false;
+        try {
+            final Selector selector = creator.open();
+            ok = true;
+            return selector;
+        } finally {
+            if (! ok) {
+                synchronized (this) {
+                    size --;
+                    notify();
+                }
+            }
+        }
+    }
+
+    /**
+     * Return a borrowed selector to the pool.  The selector must not have any keys registered.  If the pool is over its
+     * maximum size, the selector is closed instead.
+     *
+     * @param selector the selector
+     */
+    void release(final Selector selector) {
+        final List<Selector> evicted;
+        synchronized (this) {
+            if (size > maxSize) {
+                size --;
+                evicted = Collections.singletonList(selector);
+            } else {
+                final long now = nanoTime();
+                idle.addFirst(new IdleSelector(selector, now));
+                evicted = evict(now, null);
+                notify();
+            }
+        }
+        closeAll(evicted);
+    }
+
+    /**
+     * Close a borrowed selector which can no longer be used, freeing its place in the pool.
+     *
+     * @param selector the selector
+     */
+    void discard(final Selector selector) {
+        IoUtils.safeClose(selector);
+        synchronized (this) {
+            size --;
+            notify();
+        }
+    }
+
+    // call with lock held
+    private List<Selector> evict(final long now, List<Selector> evicted) {
+        IdleSelector oldest;
+        while ((oldest = idle.peekLast()) != null && now - oldest.since > idleTimeoutNanos) {
+            idle.pollLast();
+            size --;
+            evictionCount ++;
+            if (evicted == null) {
+                evicted = new ArrayList<Selector>();
+            }
+            evicted.add(oldest.selector);
+        }
+        return evicted;
+    }
+
+    private static void closeAll(final List<Selector> selectors) {
+        if (selectors != null) {
+            for (Selector selector : selectors) {
+                IoUtils.safeClose(selector);
+            }
+        }
+    }
+
+    XnioSelectorPoolMXBean getMXBean(final String providerName, final String name) {
+        return new XnioSelectorPoolMXBean() {
+            public String getProviderName() {
+                return providerName;
+            }
+
+            public String getName() {
+                return name;
+            }
+
+            public int getMaxSize() {
+                return maxSize;
+            }
+
+            public int getSize() {
+                synchronized (SelectorPool.this) {
+                    return size;
+                }
+            }
+
+            public int getIdleCount() {
+                synchronized (SelectorPool.this) {
+                    return idle.size();
+                }
+            }
+
+            public long getBorrowCount() {
+                synchronized (SelectorPool.this) {
+                    return borrowCount;
+                }
+            }
+
+            public long getWaitCount() {
+                synchronized (SelectorPool.this) {
+                    return waitCount;
+                }
+            }
+
+            public long getWaitTime() {
+                synchronized (SelectorPool.this) {
+                    return waitTime;
+                }
+            }
+
+            public long getMaxWaitTime() {
+                synchronized (SelectorPool.this) {
+                    return maxWaitTime;
+                }
+            }
+
+            public long getEvictionCount() {
+                synchronized (SelectorPool.this) {
+                    return evictionCount;
+                }
+            }
+
+            public long getOverflowCount() {
+                synchronized (SelectorPool.this) {
+                    return overflowCount;
+                }
+            }
+        };
+    }
+
+    static final class IdleSelector {
+        final Selector selector;
+        final long since;
+
+        IdleSelector(final Selector selector, final long since) {
+            this.selector = selector;
+            this.since = since;
+        }
+    }
+}
@@ -41,20 +41,12 @@ final class SelectorUtils {
             return;
         }
         Xnio.checkBlockingAllowed();
-        final Selector selector = nioXnio.getSelector();
-        final SelectionKey selectionKey;
-        try {
-            selectionKey = channel.register(selector, op);
-        } catch (ClosedChannelException e) {
-            return;
-        }
-        selector.select();
-        selector.selectedKeys().clear();
-        if (Thread.currentThread().isInterrupted()) {
-            throw log.interruptedIO();
-        }
-        selectionKey.cancel();
-        selector.selectNow();
+        await(nioXnio.getSelectorPool(), channel, op);
+    }
+
+    static void await(SelectorPool pool, SelectableChannel channel, int op) throws IOException {
+        // never waits for a pooled selector; a zero timeout selects without limit
+        select(pool, pool.borrow(), channel, op, 0L);
     }
 
     public static void await(NioXnio nioXnio, SelectableChannel channel, int op, long time, TimeUnit unit) throws IOException {
@@ -63,20 +55,59 @@ final class SelectorUtils {
             return;
         }
         Xnio.checkBlockingAllowed();
-        final Selector selector = nioXnio.getSelector();
-        final SelectionKey selectionKey;
-        try {
-            selectionKey = channel.register(selector, op);
-        } catch (ClosedChannelException e) {
+        await(nioXnio.getSelectorPool(), channel, op, time, unit);
+    }
+
+    static void await(SelectorPool pool, SelectableChannel channel, int op, long time, TimeUnit unit) throws IOException {
+        final long deadline = System.nanoTime() + unit.toNanos(time);
+        // waiting for a pooled selector counts against the timeout
+        final Selector selector = pool.borrow(deadline);
+        if (selector == null) {
+            checkInterrupted();
+            return;
+        }
+        final long remaining = deadline - System.nanoTime();
+        if (remaining <= 0L) {
+            pool.release(selector);
+            checkInterrupted();
             return;
         }
-        long timeoutInMillis = unit.toMillis(time);
-        selector.select(timeoutInMillis == 0 ? 1: timeoutInMillis);
-        selector.selectedKeys().clear();
+        long timeoutInMillis = TimeUnit.NANOSECONDS.toMillis(remaining);
+        select(pool, selector, channel, op, timeoutInMillis == 0 ? 1: timeoutInMillis);
+    }
+
+    private static void select(SelectorPool pool, Selector selector, SelectableChannel channel, int op, long timeoutInMillis) throws IOException {
+        boolean ok = false;
+        try {
+            final SelectionKey selectionKey;
+            try {
+                selectionKey = channel.register(selector, op);
+            } catch (ClosedChannelException e) {
+                ok = true;
+                return;
+            }
+            try {
+                selector.select(timeoutInMillis);
+                selector.selectedKeys().clear();
+            } finally {
+                // the selector is shared, so the key must not outlive this call
+                selectionKey.cancel();
+                selector.selectNow();
+            }
+            ok = true;
+        } finally {
+            if (ok) {
+                pool.release(selector);
+            } else {
+                pool.discard(selector);
+            }
+        }
+        checkInterrupted();
+    }
+
+    private static void checkInterrupted() throws InterruptedIOException {
         if (Thread.currentThread().isInterrupted()) {
             throw log.interruptedIO();
         }
-        selectionKey.cancel();
-        selector.selectNow();
     }
 }
@@ -0,0 +1,218 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2017 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xnio.nio;
+
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+import org.xnio.XnioExecutor;
+
+/**
+ * A hashed timing wheel for the delayed tasks of a single I/O thread.  Scheduling and cancellation are constant-time;
+ * the price is that tasks run on the first tick at or after their deadline, so the tick length bounds the precision.
+ * <p>
+ * Only the owning thread touches the buckets.  Keys scheduled from other threads are parked on a lock-free queue
+ * until the owner next {@linkplain #expire(long, Queue) expires} the wheel, and keys removed from other
+ * threads are only marked, to be unlinked when the owner next visits their bucket.
+ */
+final class TimingWheel {
+
+    private final Thread owner;
+    private final long tickNanos;
+    private final Bucket[] buckets;
+    private final int mask;
+    private final MpscLinkedQueue<WheelKey> pending = new MpscLinkedQueue<WheelKey>();
+
+    // owner-only state
+    private long currentTick;
+    private int size;
+
+    TimingWheel(final Thread owner, final long tickNanos, final int bucketCount, final long now) {
+        if (tickNanos <= 0L) {
+            throw new IllegalArgumentException("Tick must be positive");
+        }
+        this.owner = owner;
+        this.tickNanos = tickNanos;
+        // round up to a power of two
+        final int length = bucketCount <= 1 ? 1 : Integer.highestOneBit(bucketCount - 1) << 1;
+        final Bucket[] buckets = new Bucket[length];
+        for (int i = 0; i < length; i ++) {
+            buckets[i] = new Bucket();
+        }
+        this.buckets = buckets;
+        this.mask = length - 1;
+        this.currentTick = now / tickNanos;
+    }
+
+    /**
+     * Schedule a task.  May be called from any thread.
+     *
+     * @param command the task
+     * @param deadline the deadline, on the same time base as {@link #expire(long, Queue)}
+     * @return the key
+     */
+    XnioExecutor.Key schedule(final Runnable command, final long deadline) {
+        final WheelKey key = new WheelKey(this, command, deadline);
+        if (Thread.currentThread() == owner) {
+            insert(key);
+        } else {
+            pending.offer(key);
+        }
+        return key;
+    }
+
+    /**
+     * Determine whether keys scheduled from other threads are waiting to be added to the wheel.  Owner only.
+     *
+     * @return {@code true} if there are pending keys
+     */
+    boolean hasPending() {
+        return ! pending.isEmpty();
+    }
+
+    /**
+     * Move the tasks of all expired keys to the given queue.  Owner only.
+     *
+     * @param now the current time
+     * @param workQueue the queue to receive expired tasks
+     * @return the number of nanoseconds until the next tick, or {@link Long#MAX_VALUE} if the wheel is empty
+     */
+    long expire(final long now, final Queue<Runnable> workQueue) {
+        WheelKey key;
+        while ((key = pending.poll()) != null) {
+            if (key.state == WheelKey.WAITING) {
+                insert(key);
+            }
+        }
+        // a tick's bucket is only processed once the tick has completely elapsed, so nothing runs early
+        final long targetTick = now / tickNanos;
+        if (size == 0) {
+            currentTick = targetTick;
+            return Long.MAX_VALUE;
+        }
+        final Bucket[] buckets = this.buckets;
+        final int mask = this.mask;
+        while (currentTick < targetTick) {
+            final Bucket bucket = buckets[(int) currentTick & mask];
+            key = bucket.head;
+            while (key != null) {
+                final WheelKey next = key.next;
+                if (key.state != WheelKey.WAITING) {
+                    unlink(key);
+                } else if (key.rounds <= 0) {
+                    unlink(key);
+                    if (key.expire()) {
+                        workQueue.offer(key.command);
+                    }
+                } else {
+                    key.rounds --;
+                }
+                key = next;
+            }
+            currentTick ++;
+        }
+        return size == 0 ? Long.MAX_VALUE : (currentTick + 1) * tickNanos - now;
+    }
+
+    private void insert(final WheelKey key) {
+        final long tick = Math.max(key.deadline / tickNanos, currentTick);
+        key.rounds = (tick - currentTick) / buckets.length;
+        final Bucket bucket = buckets[(int) tick & mask];
+        key.bucket = bucket;
+        final WheelKey tail = bucket.tail;
+        if (tail == null) {
+            bucket.head = key;
+        } else {
+            tail.next = key;
+            key.prev = tail;
+        }
+        bucket.tail = key;
+        size ++;
+    }
+
+    private void unlink(final WheelKey key) {
+        final Bucket bucket = key.bucket;
+        if (bucket == null) {
+            return;
+        }
+        final WheelKey prev = key.prev;
+        final WheelKey next = key.next;
+        if (prev == null) {
+            bucket.head = next;
+        } else {
+            prev.next = next;
+        }
+        if (next == null) {
+            bucket.tail = prev;
+        } else {
+            next.prev = prev;
+        }
+        key.prev = key.next = null;
+        key.bucket = null;
+        size --;
+    }
+
+    static final class Bucket {
+        WheelKey head;
+        WheelKey tail;
+    }
+
+    static final class WheelKey implements XnioExecutor.Key {
+        static final int WAITING = 0;
+        static final int CANCELLED = 1;
+        static final int EXPIRED = 2;
+
+        private static final AtomicIntegerFieldUpdater<WheelKey> stateUpdater = AtomicIntegerFieldUpdater.newUpdater(WheelKey.class, "state");
+
+        private final TimingWheel wheel;
+        private final Runnable command;
+        private final long deadline;
+        volatile int state;
+
+        // owner-only state
+        long rounds;
+        Bucket bucket;
+        WheelKey prev;
+        WheelKey next;
+
+        WheelKey(final TimingWheel wheel, final Runnable command, final long deadline) {
+            this.wheel = wheel;
+            this.command = command;
+            this.deadline = deadline;
+        }
+
+        boolean expire() {
+            return stateUpdater.compareAndSet(this, WAITING, EXPIRED);
+        }
+
+        public boolean remove() {
+            if (! stateUpdater.compareAndSet(this, WAITING, CANCELLED)) {
+                return false;
+            }
+            if (Thread.currentThread() == wheel.owner) {
+                wheel.unlink(this);
+            }
+            return true;
+        }
+
+        public String toString() {
+            return "Timing wheel key for " + command;
+        }
+    }
+}
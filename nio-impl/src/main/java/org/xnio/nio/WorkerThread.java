@@ -32,15 +32,18 @@ import java.nio.channels.SocketChannel;
 import java.nio.channels.spi.AbstractSelectableChannel;
 import java.security.AccessController;
 import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Iterator;
-import java.util.Queue;
 import java.util.Set;
 import java.util.TreeSet;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.jboss.logging.Logger;
 import org.xnio.Cancellable;
@@ -64,6 +67,7 @@ import org.xnio.XnioWorker;
 import org.xnio.channels.BoundChannel;
 import org.xnio.channels.StreamSinkChannel;
 import org.xnio.channels.StreamSourceChannel;
+import org.xnio.management.XnioIoThreadMXBean;
 
 import static java.lang.System.identityHashCode;
 import static java.lang.System.nanoTime;
@@ -81,28 +85,108 @@ final class WorkerThread extends XnioIoThread implements XnioExecutor {
     private static final String FQCN = WorkerThread.class.getName();
     private static final boolean OLD_LOCKING;
     private static final boolean THREAD_SAFE_SELECTION_KEYS;
+    private static final boolean TIMING_WHEEL;
+    private static final long TIMING_WHEEL_TICK;
+    private static final int TIMING_WHEEL_SIZE;
+    private static final boolean ARRAY_SELECTED_KEYS;
+    private static final long WATCHDOG_THRESHOLD;
     private static final long START_TIME = System.nanoTime();
+    private static final int MAX_TASK_BATCH = 1024;
 
     private final Selector selector;
     private final Object workLock = new Object();
 
-    private final Queue<Runnable> selectorWorkQueue = new ArrayDeque<Runnable>();
+    private final MpscLinkedQueue<Runnable> selectorWorkQueue = new MpscLinkedQueue<Runnable>();
     private final TreeSet<TimeKey> delayWorkQueue = new TreeSet<TimeKey>();
+    private final TimingWheel timingWheel;
+    private final SelectedKeySet selectedKeySet;
+    private final long maxSpinNanos;
+    private final IoThreadMetrics metrics = new IoThreadMetrics();
+    private final IdleSweeper idleSweeper = new IdleSweeper(this);
+    // conduits with writes coalesced during this loop iteration; owner-only
+    private final ArrayList<NioSocketConduit> coalescedWriters = new ArrayList<NioSocketConduit>();
+
+    // written by this thread only
+    private volatile long spinNanos;
+    private volatile long spinCount;
+    private volatile long spinHitCount;
+    private volatile long blockCount;
+    private final LongAdder wakeupRequestCount = new LongAdder();
+    private final LongAdder wakeupCount = new LongAdder();
+
+    // time breakdown in nanoseconds and loop statistics; written by this thread only
+    private volatile long selectTime;
+    private volatile long taskTime;
+    private volatile long delayedTaskTime;
+    private volatile long selectedKeyTime;
+    private volatile long selectedKeyCount;
+    private volatile long iterationCount;
+
+    // the task or selection key being handled, for the watchdog
+    private volatile Object activity;
+    private volatile long activitySequence;
+    // written by the watchdog only
+    private volatile long blockedCount;
+
+    // load estimates for choosing threads; published by this thread once per loop iteration
+    private volatile int keyCount;
+    private volatile int taskLoad;
 
     private volatile int state;
 
     private static final int SHUTDOWN = (1 << 31);
 
     private static final AtomicIntegerFieldUpdater<WorkerThread> stateUpdater = AtomicIntegerFieldUpdater.newUpdater(WorkerThread.class, "state");
+    private static final AtomicIntegerFieldUpdater<WorkerThread> pollingUpdater = AtomicIntegerFieldUpdater.newUpdater(WorkerThread.class, "polling");
+    private static final AtomicIntegerFieldUpdater<WorkerThread> keyCountUpdater = AtomicIntegerFieldUpdater.newUpdater(WorkerThread.class, "keyCount");
+    private static final AtomicIntegerFieldUpdater<WorkerThread> taskLoadUpdater = AtomicIntegerFieldUpdater.newUpdater(WorkerThread.class, "taskLoad");
+    private static final AtomicLongFieldUpdater<WorkerThread> selectTimeUpdater = AtomicLongFieldUpdater.newUpdater(WorkerThread.class, "selectTime");
+    private static final AtomicLongFieldUpdater<WorkerThread> taskTimeUpdater = AtomicLongFieldUpdater.newUpdater(WorkerThread.class, "taskTime");
+    private static final AtomicLongFieldUpdater<WorkerThread> delayedTaskTimeUpdater = AtomicLongFieldUpdater.newUpdater(WorkerThread.class, "delayedTaskTime");
+    private static final AtomicLongFieldUpdater<WorkerThread> selectedKeyTimeUpdater = AtomicLongFieldUpdater.newUpdater(WorkerThread.class, "selectedKeyTime");
+    private static final AtomicLongFieldUpdater<WorkerThread> selectedKeyCountUpdater = AtomicLongFieldUpdater.newUpdater(WorkerThread.class, "selectedKeyCount");
+    private static final AtomicLongFieldUpdater<WorkerThread> iterationCountUpdater = AtomicLongFieldUpdater.newUpdater(WorkerThread.class, "iterationCount");
+    private static final AtomicLongFieldUpdater<WorkerThread> activitySequenceUpdater = AtomicLongFieldUpdater.newUpdater(WorkerThread.class, "activitySequence");
+    private static final AtomicReferenceFieldUpdater<WorkerThread, Object> activityUpdater = AtomicReferenceFieldUpdater.newUpdater(WorkerThread.class, Object.class, "activity");
 
     static {
         OLD_LOCKING = Boolean.parseBoolean(AccessController.doPrivileged(new ReadPropertyAction("xnio.nio.old-locking", "false")));
         THREAD_SAFE_SELECTION_KEYS = Boolean.parseBoolean(AccessController.doPrivileged(new ReadPropertyAction("xnio.nio.thread-safe-selection-keys", "false")));
+        TIMING_WHEEL = Boolean.parseBoolean(AccessController.doPrivileged(new ReadPropertyAction("xnio.nio.timing-wheel", "false")));
+        TIMING_WHEEL_TICK = Math.max(1L, Long.parseLong(AccessController.doPrivileged(new ReadPropertyAction("xnio.nio.timing-wheel.tick", "10"))));
+        TIMING_WHEEL_SIZE = Math.max(1, Integer.parseInt(AccessController.doPrivileged(new ReadPropertyAction("xnio.nio.timing-wheel.size", "512"))));
+        ARRAY_SELECTED_KEYS = Boolean.parseBoolean(AccessController.doPrivileged(new ReadPropertyAction("xnio.nio.array-selected-keys", "false")));
+        WATCHDOG_THRESHOLD = Math.max(0L, Long.parseLong(AccessController.doPrivileged(new ReadPropertyAction("xnio.nio.watchdog.threshold", "0"))));
     }
 
-    WorkerThread(final NioXnioWorker worker, final Selector selector, final String name, final ThreadGroup group, final long stackSize, final int number) {
+    WorkerThread(final NioXnioWorker worker, final Selector selector, final String name, final ThreadGroup group, final long stackSize, final int number, final int spinMicros) {
         super(worker, number, group, name, stackSize);
         this.selector = selector;
+        maxSpinNanos = spinMicros * 1000L;
+        spinNanos = maxSpinNanos;
+        timingWheel = TIMING_WHEEL ? new TimingWheel(this, TIMING_WHEEL_TICK * 1000000L, TIMING_WHEEL_SIZE, nanoTime() - START_TIME) : null;
+        selectedKeySet = ARRAY_SELECTED_KEYS ? SelectedKeySet.install(selector) : null;
+        if (ARRAY_SELECTED_KEYS && selectedKeySet == null) {
+            selectorLog.debugf("Array-backed selected key set not available for %s", selector);
+        }
+    }
+
+    IdleSweeper getIdleSweeper() {
+        return idleSweeper;
+    }
+
+    void flushAtEndOfLoop(final NioSocketConduit conduit) {
+        assert currentThread() == this;
+        coalescedWriters.add(conduit);
+    }
+
+    private void flushCoalescedWrites() {
+        final ArrayList<NioSocketConduit> writers = coalescedWriters;
+        // a flush can run listeners which write to, and so queue, other connections
+        for (int i = 0; i < writers.size(); i ++) {
+            writers.get(i).flushCoalesced();
+        }
+        writers.clear();
     }
 
     static WorkerThread getCurrent() {
@@ -193,8 +277,11 @@ final class WorkerThread extends XnioIoThread implements XnioExecutor {
                                 if (optionMap.contains(Options.CLOSE_ABORT)) channel.socket().setSoLinger(optionMap.get(Options.CLOSE_ABORT, false), 0);
                                 if (optionMap.contains(Options.KEEP_ALIVE)) channel.socket().setKeepAlive(optionMap.get(Options.KEEP_ALIVE, false));
                                 if (optionMap.contains(Options.SEND_BUFFER)) channel.socket().setSendBufferSize(optionMap.get(Options.SEND_BUFFER, -1));
+                                NioSocketOptions.setTcpOptions(channel, optionMap);
                                 final SelectionKey selectionKey = WorkerThread.this.registerChannel(channel);
                                 final NioSocketStreamConnection connection = new NioSocketStreamConnection(WorkerThread.this, selectionKey, null);
+                                if (optionMap.contains(Options.IDLE_TIMEOUT)) connection.setOption(Options.IDLE_TIMEOUT, optionMap.get(Options.IDLE_TIMEOUT, 0));
+                                if (optionMap.contains(Options.WRITE_COALESCING)) connection.setOption(Options.WRITE_COALESCING, optionMap.get(Options.WRITE_COALESCING, false));
                                 if (futureResult.setResult(connection)) {
                                     ok = true;
                                     ChannelListeners.invokeChannelListener(connection, openListener);
@@ -257,8 +344,11 @@ final class WorkerThread extends XnioIoThread implements XnioExecutor {
                 if (optionMap.contains(Options.RECEIVE_BUFFER)) channel.socket().setReceiveBufferSize(optionMap.get(Options.RECEIVE_BUFFER, -1));
                 if (optionMap.contains(Options.REUSE_ADDRESSES)) channel.socket().setReuseAddress(optionMap.get(Options.REUSE_ADDRESSES, false));
                 if (optionMap.contains(Options.SEND_BUFFER)) channel.socket().setSendBufferSize(optionMap.get(Options.SEND_BUFFER, -1));
+                NioSocketOptions.setTcpOptions(channel, optionMap);
                 final SelectionKey key = registerChannel(channel);
                 final NioSocketStreamConnection connection = new NioSocketStreamConnection(this, key, null);
+                if (optionMap.contains(Options.IDLE_TIMEOUT)) connection.setOption(Options.IDLE_TIMEOUT, optionMap.get(Options.IDLE_TIMEOUT, 0));
+                if (optionMap.contains(Options.WRITE_COALESCING)) connection.setOption(Options.WRITE_COALESCING, optionMap.get(Options.WRITE_COALESCING, false));
                 if (bindAddress != null || bindListener != null) {
                     channel.socket().bind(bindAddress);
                     ChannelListeners.invokeChannelListener(connection, bindListener);
@@ -421,16 +511,26 @@ final class WorkerThread extends XnioIoThread implements XnioExecutor {
         }
     }
 
-    volatile boolean polling;
+    // 1 while this thread may block in select and nobody has woken it yet
+    private volatile int polling;
+    // true while polling with a timeout that will pick up newly scheduled timing wheel keys by itself
+    private volatile boolean timedPolling;
 
     public void run() {
         final Selector selector = this.selector;
         try {
             log.tracef("Starting worker thread %s", this);
             final Object lock = workLock;
-            final Queue<Runnable> workQueue = selectorWorkQueue;
+            final MpscLinkedQueue<Runnable> workQueue = selectorWorkQueue;
             final TreeSet<TimeKey> delayQueue = delayWorkQueue;
+            final TimingWheel timingWheel = this.timingWheel;
+            final SelectedKeySet selectedKeySet = this.selectedKeySet;
             log.debugf("Started channel thread '%s', selector %s", currentThread().getName(), selector);
+            if (WATCHDOG_THRESHOLD > 0L) {
+                IoThreadWatchdog.register(this, WATCHDOG_THRESHOLD);
+            }
+            // only this thread touches the expired tasks
+            final ArrayDeque<Runnable> expiredQueue = new ArrayDeque<Runnable>();
             Runnable task;
             Iterator<TimeKey> iterator;
             long delayTime = Long.MAX_VALUE;
@@ -438,45 +538,80 @@ final class WorkerThread extends XnioIoThread implements XnioExecutor {
             SelectionKey[] keys = new SelectionKey[16];
             int oldState;
             int keyCount;
+            int batch;
+            // the start of the current phase of the loop, for the time breakdown
+            long mark = nanoTime();
+            long now;
             for (;;) {
-                // Run all tasks
+                // Run a batch of tasks; anything beyond that waits until the selected keys have had a turn
+                batch = 0;
                 do {
-                    synchronized (lock) {
-                        task = workQueue.poll();
-                        if (task == null) {
-                            iterator = delayQueue.iterator();
-                            delayTime = Long.MAX_VALUE;
-                            if (iterator.hasNext()) {
-                                final long now = nanoTime();
-                                do {
-                                    final TimeKey key = iterator.next();
-                                    if (key.deadline <= (now - START_TIME)) {
-                                        workQueue.add(key.command);
-                                        iterator.remove();
-                                    } else {
-                                        delayTime = key.deadline - (now - START_TIME);
-                                        // the rest are in the future
-                                        break;
+                    task = workQueue.poll();
+                    if (task == null) {
+                        now = nanoTime();
+                        taskTimeUpdater.lazySet(this, taskTime + (now - mark));
+                        mark = now;
+                        // expired tasks may schedule new ones, so expire again until the delay time is current;
+                        // tasks left over from a full batch run first, so that they keep their order
+                        for (;;) {
+                            if (expiredQueue.isEmpty()) {
+                                if (timingWheel != null) {
+                                    delayTime = timingWheel.expire(now - START_TIME, expiredQueue);
+                                } else synchronized (lock) {
+                                    iterator = delayQueue.iterator();
+                                    delayTime = Long.MAX_VALUE;
+                                    while (iterator.hasNext()) {
+                                        final TimeKey key = iterator.next();
+                                        if (key.deadline <= (now - START_TIME)) {
+                                            expiredQueue.offer(key.command);
+                                            iterator.remove();
+                                        } else {
+                                            delayTime = key.deadline - (now - START_TIME);
+                                            // the rest are in the future
+                                            break;
+                                        }
                                     }
-                                } while (iterator.hasNext());
+                                }
+                            }
+                            // the task queue was empty, so running expired tasks right away keeps their order
+                            if ((task = expiredQueue.poll()) == null) {
+                                break;
+                            }
+                            do {
+                                Thread.interrupted();
+                                safeRun(task);
+                            } while (++ batch < MAX_TASK_BATCH && (task = expiredQueue.poll()) != null);
+                            now = nanoTime();
+                            delayedTaskTimeUpdater.lazySet(this, delayedTaskTime + (now - mark));
+                            mark = now;
+                            if (batch >= MAX_TASK_BATCH) {
+                                // leave the rest for the next pass, once the selected keys have had a turn
+                                break;
                             }
-                            task = workQueue.poll();
                         }
+                        task = batch < MAX_TASK_BATCH ? workQueue.poll() : null;
                     }
                     // clear interrupt status
                     Thread.interrupted();
                     safeRun(task);
-                } while (task != null);
-                // all tasks have been run
+                } while (task != null && ++ batch < MAX_TASK_BATCH);
+                // send what the handlers and tasks wrote since the last select
+                if (! coalescedWriters.isEmpty()) {
+                    flushCoalescedWrites();
+                }
+                // the task batch has been run
+                now = nanoTime();
+                taskTimeUpdater.lazySet(this, taskTime + (now - mark));
+                mark = now;
+                taskLoadUpdater.lazySet(this, batch);
+                keyCountUpdater.lazySet(this, selector.keys().size());
                 oldState = state;
                 if ((oldState & SHUTDOWN) != 0) {
-                    synchronized (lock) {
-                        keyCount = selector.keys().size();
-                        state = keyCount | SHUTDOWN;
-                        if (keyCount == 0 && workQueue.isEmpty()) {
-                            // no keys or tasks left, shut down (delay tasks are discarded)
-                            return;
-                        }
+                    keyCount = selector.keys().size();
+                    state = keyCount | SHUTDOWN;
+                    if (keyCount == 0 && workQueue.isEmpty()) {
+                        // no keys or tasks left, shut down (delay tasks are discarded)
+                        return;
                     }
                     synchronized (selector) {
                         final Set<SelectionKey> keySet = selector.keys();
@@ -505,30 +640,36 @@ final class WorkerThread extends XnioIoThread implements XnioExecutor {
                     if ((oldState & SHUTDOWN) != 0) {
                         selectorLog.tracef("Beginning select on %s (shutdown in progress)", selector);
                         selector.selectNow();
+                    } else if (task == null && expiredQueue.isEmpty() && maxSpinNanos > 0L && spin(selector, workQueue, delayTime)) {
+                        selectorLog.tracef("Found work while spinning on %s", selector);
                     } else if (delayTime == Long.MAX_VALUE) {
                         selectorLog.tracef("Beginning select on %s", selector);
-                        polling = true;
+                        polling = 1;
                         try {
-                            if (workQueue.peek() != null) {
+                            if (task != null || ! workQueue.isEmpty() || ! expiredQueue.isEmpty() || timingWheel != null && timingWheel.hasPending()) {
                                 selector.selectNow();
                             } else {
+                                blockCount ++;
                                 selector.select();
                             }
                         } finally {
-                            polling = false;
+                            polling = 0;
                         }
                     } else {
                         final long millis = 1L + delayTime / 1000000L;
                         selectorLog.tracef("Beginning select on %s (with timeout)", selector);
-                        polling = true;
+                        timedPolling = true;
+                        polling = 1;
                         try {
-                            if (workQueue.peek() != null) {
+                            if (task != null || ! workQueue.isEmpty() || ! expiredQueue.isEmpty()) {
                                 selector.selectNow();
                             } else {
+                                blockCount ++;
                                 selector.select(millis);
                             }
                         } finally {
-                            polling = false;
+                            polling = 0;
+                            timedPolling = false;
                         }
                     }
                 } catch (CancelledKeyException ignored) {
@@ -539,55 +680,142 @@ final class WorkerThread extends XnioIoThread implements XnioExecutor {
                     // hopefully transient; should never happen
                 }
                 selectorLog.tracef("Selected on %s", selector);
+                now = nanoTime();
+                selectTimeUpdater.lazySet(this, selectTime + (now - mark));
+                mark = now;
                 // iterate the ready key set
-                synchronized (selector) {
-                    selectedKeys = selector.selectedKeys();
-                    synchronized (selectedKeys) {
-                        // copy so that handlers can safely cancel keys
-                        keys = selectedKeys.toArray(keys);
-                        Arrays.fill(keys, selectedKeys.size(), keys.length, null);
-                        selectedKeys.clear();
+                int selectedCount;
+                if (selectedKeySet != null) {
+                    // a handler which cancels a key selects again on this thread (see cancelKey()), which may append
+                    // keys to the set, and may reallocate its array, while we walk it; so re-read both on every pass
+                    int i = 0;
+                    while (i < selectedKeySet.size) {
+                        final SelectionKey[] selected = selectedKeySet.keys;
+                        final SelectionKey key = selected[i];
+                        selected[i++] = null;
+                        handleSelectedKey(key);
                     }
-                }
-                for (int i = 0; i < keys.length; i++) {
-                    final SelectionKey key = keys[i];
-                    if (key == null) break; //end of list
-                    keys[i] = null;
-                    final int ops;
-                    try {
-                        ops = key.interestOps();
-                        if (ops != 0) {
-                            selectorLog.tracef("Selected key %s for %s", key, key.channel());
-                            final NioHandle handle = (NioHandle) key.attachment();
-                            if (handle == null) {
-                                cancelKey(key);
-                            } else {
-                                // clear interrupt status
-                                Thread.interrupted();
-                                handle.handleReady(key.readyOps());
-                            }
+                    selectedCount = i;
+                    selectedKeySet.size = 0;
+                } else {
+                    selectedCount = 0;
+                    synchronized (selector) {
+                        selectedKeys = selector.selectedKeys();
+                        synchronized (selectedKeys) {
+                            // copy so that handlers can safely cancel keys
+                            keys = selectedKeys.toArray(keys);
+                            Arrays.fill(keys, selectedKeys.size(), keys.length, null);
+                            selectedKeys.clear();
                         }
-                    } catch (CancelledKeyException ignored) {
-                        selectorLog.tracef("Skipping selection of cancelled key %s", key);
-                    } catch (Throwable t) {
-                        selectorLog.tracef(t, "Unexpected failure of selection of key %s", key);
+                    }
+                    for (int i = 0; i < keys.length; i++) {
+                        final SelectionKey key = keys[i];
+                        if (key == null) break; //end of list
+                        keys[i] = null;
+                        selectedCount ++;
+                        handleSelectedKey(key);
                     }
                 }
+                now = nanoTime();
+                selectedKeyTimeUpdater.lazySet(this, selectedKeyTime + (now - mark));
+                mark = now;
+                selectedKeyCountUpdater.lazySet(this, selectedKeyCount + selectedCount);
+                iterationCountUpdater.lazySet(this, iterationCount + 1);
                 // all selected keys invoked; loop back to run tasks
             }
         } finally {
             log.tracef("Shutting down channel thread \"%s\"", this);
+            if (WATCHDOG_THRESHOLD > 0L) {
+                IoThreadWatchdog.unregister(this);
+            }
             safeClose(selector);
             getWorker().closeResource();
         }
     }
 
-    private static void safeRun(final Runnable command) {
+    /**
+     * Poll for ready keys and new tasks for up to the current spin budget, so that work arriving shortly after the
+     * thread runs dry is picked up without the cost of a wakeup.  The budget doubles when spinning finds work and
+     * halves when it does not, within a sixteenth of the configured maximum and the maximum itself.
+     *
+     * @return {@code true} if work was found, {@code false} if the budget ran out
+     */
+    private boolean spin(final Selector selector, final MpscLinkedQueue<Runnable> workQueue, final long delayTime) throws IOException {
+        final TimingWheel timingWheel = this.timingWheel;
+        final long budget = spinNanos;
+        final long limit = Math.min(budget, delayTime);
+        final long start = nanoTime();
+        spinCount ++;
+        do {
+            if (selector.selectNow() > 0 || ! workQueue.isEmpty() || timingWheel != null && timingWheel.hasPending()) {
+                spinHitCount ++;
+                spinNanos = Math.min(maxSpinNanos, budget << 1);
+                return true;
+            }
+        } while (nanoTime() - start < limit);
+        spinNanos = Math.max(maxSpinNanos >> 4, budget >> 1);
+        return false;
+    }
+
+    private void handleSelectedKey(final SelectionKey key) {
+        final int ops;
+        if (WATCHDOG_THRESHOLD > 0L) {
+            beginActivity(key);
+        }
+        try {
+            ops = key.interestOps();
+            if (ops != 0) {
+                selectorLog.tracef("Selected key %s for %s", key, key.channel());
+                final NioHandle handle = (NioHandle) key.attachment();
+                if (handle == null) {
+                    cancelKey(key);
+                } else {
+                    // clear interrupt status
+                    Thread.interrupted();
+                    int readyOps = key.readyOps();
+                    if (NioHandle.PARK_AWAIT && readyOps != 0) {
+                        // parked threads are woken first; ops which were only enabled for them are not passed on
+                        readyOps = handle.releaseWaiters(readyOps);
+                        if (readyOps == 0) {
+                            return;
+                        }
+                    }
+                    handle.handleReady(readyOps);
+                }
+            }
+        } catch (CancelledKeyException ignored) {
+            selectorLog.tracef("Skipping selection of cancelled key %s", key);
+        } catch (Throwable t) {
+            selectorLog.tracef(t, "Unexpected failure of selection of key %s", key);
+        } finally {
+            if (WATCHDOG_THRESHOLD > 0L) {
+                endActivity();
+            }
+        }
+    }
+
+    void beginActivity(final Object activity) {
+        activityUpdater.lazySet(this, activity);
+        activitySequenceUpdater.lazySet(this, activitySequence + 1L);
+    }
+
+    void endActivity() {
+        activityUpdater.lazySet(this, null);
+    }
+
+    private void safeRun(final Runnable command) {
         if (command != null) try {
             log.tracef("Running task %s", command);
+            if (WATCHDOG_THRESHOLD > 0L) {
+                beginActivity(command);
+            }
             command.run();
         } catch (Throwable t) {
             log.taskFailed(command, t);
+        } finally {
+            if (WATCHDOG_THRESHOLD > 0L) {
+                endActivity();
+            }
         }
     }
 
@@ -595,10 +823,18 @@ final class WorkerThread extends XnioIoThread implements XnioExecutor {
         if ((state & SHUTDOWN) != 0) {
             throw log.threadExiting();
         }
-        synchronized (workLock) {
-            selectorWorkQueue.add(command);
-        }
-        if (polling) { // flag is always false if we're the same thread
+        selectorWorkQueue.offer(command);
+        wakeup();
+    }
+
+    /**
+     * Wake up the selector if this thread is blocked (or about to block) in it.  Only the first caller after the
+     * thread starts polling issues the actual wakeup; the rest find the flag already cleared.
+     */
+    private void wakeup() {
+        wakeupRequestCount.increment();
+        if (polling != 0 && pollingUpdater.compareAndSet(this, 1, 0)) { // flag is always clear if we're the same thread
+            wakeupCount.increment();
             selector.wakeup();
         }
     }
@@ -627,15 +863,22 @@ final class WorkerThread extends XnioIoThread implements XnioExecutor {
             return Key.IMMEDIATE;
         }
         final long deadline = (nanoTime() - START_TIME) + Math.min(millis, LONGEST_DELAY) * 1000000L;
+        final TimingWheel timingWheel = this.timingWheel;
+        if (timingWheel != null) {
+            final Key key = timingWheel.schedule(command, deadline);
+            // a timed poll will tick the wheel soon enough; otherwise the selector may be waiting indefinitely
+            if (! timedPolling) {
+                wakeup();
+            }
+            return key;
+        }
         final TimeKey key = new TimeKey(deadline, command);
         synchronized (workLock) {
             final TreeSet<TimeKey> queue = delayWorkQueue;
             queue.add(key);
             if (queue.iterator().next() == key) {
                 // we're the next one up; poke the selector to update its delay time
-                if (polling) { // flag is always false if we're the same thread
-                    selector.wakeup();
-                }
+                wakeup();
             }
             return key;
         }
@@ -693,14 +936,14 @@ final class WorkerThread extends XnioIoThread implements XnioExecutor {
             try {
                 return channel.register(selector, 0);
             } finally {
-                if (polling) selector.wakeup();
+                wakeup();
             }
         } else {
             final SynchTask task = new SynchTask();
             queueTask(task);
             try {
                 // Prevent selector from sleeping until we're done!
-                selector.wakeup();
+                wakeup();
                 return channel.register(selector, 0);
             } finally {
                 task.done();
@@ -709,9 +952,7 @@ final class WorkerThread extends XnioIoThread implements XnioExecutor {
     }
 
     void queueTask(final Runnable task) {
-        synchronized (workLock) {
-            selectorWorkQueue.add(task);
-        }
+        selectorWorkQueue.offer(task);
     }
 
     void cancelKey(final SelectionKey key) {
@@ -746,11 +987,16 @@ final class WorkerThread extends XnioIoThread implements XnioExecutor {
             log.logf(FQCN, Logger.Level.TRACE, null, "Cancelling key %s of %s (other thread)", key, channel);
             try {
                 key.cancel();
-                selector.wakeup();
+                wakeup();
             } catch (Throwable t) {
                 log.logf(FQCN, Logger.Level.TRACE, t, "Error cancelling key %s of %s (other thread)", key, channel);
             }
         }
+        final Object attachment = key.attachment();
+        if (attachment instanceof NioHandle) {
+            // threads parked on a cancelled key would never be woken by the selector
+            ((NioHandle) attachment).releaseAllWaiters();
+        }
     }
 
     void setOps(final SelectionKey key, final int ops) {
@@ -772,7 +1018,7 @@ final class WorkerThread extends XnioIoThread implements XnioExecutor {
         } else {
             try {
                 key.interestOps(key.interestOps() | ops);
-                if (polling) selector.wakeup();
+                wakeup();
             } catch (CancelledKeyException ignored) {
             }
         }
@@ -797,6 +1043,49 @@ final class WorkerThread extends XnioIoThread implements XnioExecutor {
         }
     }
 
+    /**
+     * Get an estimate of the number of channels registered with this thread.
+     *
+     * @return the registered key count estimate
+     */
+    int getKeyCount() {
+        return keyCount;
+    }
+
+    /**
+     * Get the sum of the registered key estimate and the number of tasks run in the last loop iteration.
+     *
+     * @return the load estimate
+     */
+    int getLoad() {
+        return keyCount + taskLoad;
+    }
+
+    /**
+     * Count a channel which is about to be assigned to this thread, so that other choices made before it is
+     * registered see it.  The estimate is corrected on the next loop iteration.
+     */
+    void reserveKey() {
+        keyCountUpdater.incrementAndGet(this);
+    }
+
+    Object getActivity() {
+        return activity;
+    }
+
+    long getActivitySequence() {
+        return activitySequence;
+    }
+
+    void incrementBlockedCount() {
+        // only the watchdog writes
+        blockedCount = blockedCount + 1L;
+    }
+
+    XnioIoThreadMXBean getMXBean() {
+        return metrics;
+    }
+
     Selector getSelector() {
         return selector;
     }
@@ -848,4 +1137,96 @@ final class WorkerThread extends XnioIoThread implements XnioExecutor {
             unpark(WorkerThread.this);
         }
     }
+
+    final class IoThreadMetrics implements XnioIoThreadMXBean {
+        private long lastSampleTime = nanoTime();
+        private long lastSampleIterations;
+
+        public String getProviderName() {
+            return "nio";
+        }
+
+        public String getWorkerName() {
+            return getWorker().getName();
+        }
+
+        public String getName() {
+            return WorkerThread.this.getName();
+        }
+
+        public long getSpinTime() {
+            return spinNanos / 1000L;
+        }
+
+        public long getSpinCount() {
+            return spinCount;
+        }
+
+        public long getSpinHitCount() {
+            return spinHitCount;
+        }
+
+        public long getBlockCount() {
+            return blockCount;
+        }
+
+        public long getWakeupRequestCount() {
+            return wakeupRequestCount.sum();
+        }
+
+        public long getWakeupCount() {
+            return wakeupCount.sum();
+        }
+
+        public int getRegisteredKeyCount() {
+            return keyCount;
+        }
+
+        public int getRecentTaskCount() {
+            return taskLoad;
+        }
+
+        public long getSelectTime() {
+            return selectTime;
+        }
+
+        public long getTaskTime() {
+            return taskTime;
+        }
+
+        public long getDelayedTaskTime() {
+            return delayedTaskTime;
+        }
+
+        public long getSelectedKeyTime() {
+            return selectedKeyTime;
+        }
+
+        public long getIterationCount() {
+            return iterationCount;
+        }
+
+        public long getSelectedKeyCount() {
+            return selectedKeyCount;
+        }
+
+        public synchronized double getIterationsPerSecond() {
+            final long now = nanoTime();
+            final long iterations = iterationCount;
+            final long elapsed = now - lastSampleTime;
+            final double rate = elapsed <= 0L ? 0.0 : (iterations - lastSampleIterations) * 1e9 / elapsed;
+            lastSampleTime = now;
+            lastSampleIterations = iterations;
+            return rate;
+        }
+
+        public long getBlockedCount() {
+            return blockedCount;
+        }
+
+        public double getKeysPerIteration() {
+            final long iterations = iterationCount;
+            return iterations == 0L ? 0.0 : (double) selectedKeyCount / iterations;
+        }
+    }
 }
@@ -0,0 +1,95 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2017 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xnio.nio;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.xnio.OptionMap;
+import org.xnio.Options;
+
+/**
+ * Test for {@link AcceptRateLimiter}.
+ */
+public class AcceptRateLimiterTestCase {
+
+    private static final long MS = TimeUnit.MILLISECONDS.toNanos(1L);
+
+    @Test
+    public void unlimited() {
+        final AcceptRateLimiter limiter = AcceptRateLimiter.create(OptionMap.EMPTY);
+        assertEquals(0, limiter.getRate());
+        assertFalse(limiter.isLimited());
+        for (int i = 0; i < 1000; i ++) {
+            limiter.admitted();
+        }
+        assertEquals(1000L, limiter.getAdmittedCount());
+        assertEquals(0L, limiter.getDeferredCount());
+    }
+
+    @Test
+    public void burstThenSteadyRate() {
+        // one token per 10ms, up to 5 at once
+        final AcceptRateLimiter limiter = new AcceptRateLimiter(100, 5, 0L);
+        assertTrue(limiter.isLimited());
+        for (int i = 0; i < 5; i ++) {
+            assertEquals(0L, limiter.acquire(0L));
+        }
+        final long wait = limiter.acquire(0L);
+        assertEquals(10L * MS, wait);
+        assertEquals(10L, AcceptRateLimiter.toMillis(wait));
+        assertEquals(1L, limiter.getDeferredCount());
+        assertEquals(0L, limiter.acquire(10L * MS));
+        assertTrue(limiter.acquire(15L * MS) > 0L);
+        assertEquals(0L, limiter.acquire(20L * MS));
+        // an idle period refills the bucket, but never beyond the burst
+        for (int i = 0; i < 5; i ++) {
+            assertEquals(0L, limiter.acquire(1000L * MS));
+        }
+        assertTrue(limiter.acquire(1000L * MS) > 0L);
+        // tokens are not admissions; only the server knows whether a connection was accepted
+        assertEquals(0L, limiter.getAdmittedCount());
+    }
+
+    @Test
+    public void refund() {
+        final AcceptRateLimiter limiter = new AcceptRateLimiter(100, 1, 0L);
+        assertEquals(0L, limiter.acquire(0L));
+        limiter.refund();
+        assertEquals(0L, limiter.acquire(0L));
+        assertTrue(limiter.acquire(0L) > 0L);
+        assertEquals(1L, limiter.getDeferredCount());
+    }
+
+    @Test
+    public void defaultBurst() {
+        final AcceptRateLimiter limiter = AcceptRateLimiter.create(OptionMap.create(Options.ACCEPT_RATE_LIMIT, 50));
+        assertEquals(50, limiter.getRate());
+        assertEquals(50, limiter.getBurst());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidBurst() {
+        AcceptRateLimiter.create(OptionMap.builder().set(Options.ACCEPT_RATE_LIMIT, 50).set(Options.ACCEPT_RATE_BURST, 0).getMap());
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2017 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xnio.nio;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+
+import org.junit.Test;
+import org.xnio.IoUtils;
+
+/**
+ * Test for {@link AcceptedSocketOptions}.
+ */
+public class AcceptedSocketOptionsTestCase {
+
+    @Test
+    public void everySocketGetsTheOptions() throws Exception {
+        final ServerSocketChannel listener = ServerSocketChannel.open();
+        final SocketChannel[] clients = new SocketChannel[3];
+        final SocketChannel[] accepted = new SocketChannel[clients.length];
+        try {
+            listener.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+            final AcceptedSocketOptions options = new AcceptedSocketOptions(true, false, true, -1, 30, -1, -1, -1);
+            options.applyTo(listener);
+            for (int i = 0; i < clients.length; i ++) {
+                clients[i] = SocketChannel.open(listener.getLocalAddress());
+                accepted[i] = listener.accept();
+                options.applyTo(accepted[i]);
+                // whether inherited or set, the effective values are the same for every socket
+                assertTrue(accepted[i].socket().getKeepAlive());
+                assertTrue(accepted[i].socket().getTcpNoDelay());
+                assertFalse(accepted[i].socket().getOOBInline());
+                if (NioSocketOptions.isSupported(accepted[i], NioSocketOptions.TCP_KEEPIDLE)) {
+                    assertEquals(Integer.valueOf(30), accepted[i].getOption(NioSocketOptions.TCP_KEEPIDLE));
+                }
+            }
+        } finally {
+            for (int i = 0; i < clients.length; i ++) {
+                IoUtils.safeClose(accepted[i]);
+                IoUtils.safeClose(clients[i]);
+            }
+            IoUtils.safeClose(listener);
+        }
+    }
+}
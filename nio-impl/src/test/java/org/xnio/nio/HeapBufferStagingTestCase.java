@@ -0,0 +1,169 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2017 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.xnio.nio;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.ScatteringByteChannel;
+
+import org.junit.Test;
+import org.xnio.ByteBufferPool;
+
+/**
+ * Test for {@link HeapBufferStaging}.
+ */
+public class HeapBufferStagingTestCase {
+
+    @Test
+    public void writeInChunks() throws Exception {
+        final ByteBuffer[] srcs = new ByteBuffer[] { fill(ByteBuffer.allocate(10), 0), ByteBuffer.allocate(0), fill(ByteBuffer.allocate(ByteBufferPool.LARGE_SIZE * 2), 10) };
+        final StubChannel channel = new StubChannel(ByteBufferPool.LARGE_SIZE * 3);
+        assertEquals(ByteBufferPool.LARGE_SIZE * 2 + 10, HeapBufferStaging.stagedWrite(channel, srcs, 0, srcs.length));
+        assertEquals(ByteBufferPool.LARGE_SIZE * 2 / HeapBufferStaging.CHUNK_SIZE + 1, channel.calls);
+        assertEquals(HeapBufferStaging.CHUNK_SIZE, channel.largestChunk);
+        assertFalse(channel.sawHeap);
+        assertFalse(srcs[0].hasRemaining());
+        assertFalse(srcs[2].hasRemaining());
+        channel.data.flip();
+        for (int i = 0; i < ByteBufferPool.LARGE_SIZE * 2 + 10; i ++) {
+            assertEquals((byte) i, channel.data.get());
+        }
+    }
+
+    @Test
+    public void partialWrite() throws Exception {
+        final ByteBuffer[] srcs = new ByteBuffer[] { fill(ByteBuffer.allocate(100), 0), fill(ByteBuffer.allocate(100), 100) };
+        final StubChannel channel = new StubChannel(150);
+        assertEquals(150, HeapBufferStaging.stagedWrite(channel, srcs, 0, srcs.length));
+        assertFalse(srcs[0].hasRemaining());
+        assertEquals(50, srcs[1].remaining());
+        assertEquals((byte) 150, srcs[1].get(srcs[1].position()));
+        assertEquals(0, HeapBufferStaging.stagedWrite(channel, srcs, 0, srcs.length));
+        assertEquals(50, srcs[1].remaining());
+    }
+
+    @Test
+    public void readInChunks() throws Exception {
+        final StubChannel channel = new StubChannel(ByteBufferPool.LARGE_SIZE * 3);
+        fill(channel.data, 0).flip();
+        channel.data.limit(ByteBufferPool.LARGE_SIZE + 100);
+        final ByteBuffer[] dsts = new ByteBuffer[] { ByteBuffer.allocate(ByteBufferPool.LARGE_SIZE), ByteBuffer.allocate(ByteBufferPool.LARGE_SIZE) };
+        assertEquals(ByteBufferPool.LARGE_SIZE + 100, HeapBufferStaging.stagedRead(channel, dsts, 0, dsts.length));
+        assertEquals(ByteBufferPool.LARGE_SIZE / HeapBufferStaging.CHUNK_SIZE + 1, channel.calls);
+        assertEquals(HeapBufferStaging.CHUNK_SIZE, channel.largestChunk);
+        assertFalse(channel.sawHeap);
+        assertEquals(100, dsts[1].position());
+        dsts[0].flip();
+        for (int i = 0; i < ByteBufferPool.LARGE_SIZE; i ++) {
+            assertEquals((byte) i, dsts[0].get());
+        }
+        // end of stream is only reported once the data before it is taken
+        channel.eof = true;
+        assertEquals(-1L, HeapBufferStaging.stagedRead(channel, dsts, 0, dsts.length));
+    }
+
+    @Test
+    public void chunkSize() throws Exception {
+        // large transfers are staged through the intermediate pool, not through 1 MiB buffers
+        assertEquals(64 * 1024, HeapBufferStaging.CHUNK_SIZE);
+        final StubChannel channel = new StubChannel(ByteBufferPool.LARGE_SIZE);
+        final ByteBuffer[] srcs = new ByteBuffer[] { fill(ByteBuffer.allocate(ByteBufferPool.MEDIUM_SIZE + 1), 0) };
+        assertEquals(ByteBufferPool.MEDIUM_SIZE + 1, HeapBufferStaging.stagedWrite(channel, srcs, 0, 1));
+        assertEquals(1, channel.calls);
+        assertEquals(HeapBufferStaging.CHUNK_SIZE, channel.largestCapacity);
+    }
+
+    private static ByteBuffer fill(final ByteBuffer buffer, final int start) {
+        for (int i = 0; buffer.hasRemaining(); i ++) {
+            buffer.put((byte) (start + i));
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    static final class StubChannel implements GatheringByteChannel, ScatteringByteChannel {
+        final ByteBuffer data;
+        int calls;
+        int largestChunk;
+        int largestCapacity;
+        boolean sawHeap;
+        boolean eof;
+
+        StubChannel(final int capacity) {
+            data = ByteBuffer.allocate(capacity);
+        }
+
+        public int write(final ByteBuffer src) {
+            calls ++;
+            sawHeap |= ! src.isDirect();
+            largestChunk = Math.max(largestChunk, src.remaining());
+            largestCapacity = Math.max(largestCapacity, src.capacity());
+            final int cnt = Math.min(src.remaining(), data.remaining());
+            final int lim = src.limit();
+            src.limit(src.position() + cnt);
+            data.put(src);
+            src.limit(lim);
+            return cnt;
+        }
+
+        public int read(final ByteBuffer dst) {
+            calls ++;
+            sawHeap |= ! dst.isDirect();
+            largestChunk = Math.max(largestChunk, dst.remaining());
+            largestCapacity = Math.max(largestCapacity, dst.capacity());
+            if (! data.hasRemaining()) {
+                return eof ? -1 : 0;
+            }
+            final int cnt = Math.min(dst.remaining(), data.remaining());
+            final int lim = data.limit();
+            data.limit(data.position() + cnt);
+            dst.put(data);
+            data.limit(lim);
+            return cnt;
+        }
+
+        public long write(final ByteBuffer[] srcs, final int offset, final int length) throws IOException {
+            throw new UnsupportedOperationException();
+        }
+
+        public long write(final ByteBuffer[] srcs) throws IOException {
+            throw new UnsupportedOperationException();
+        }
+
+        public long read(final ByteBuffer[] dsts, final int offset, final int length) throws IOException {
+            throw new UnsupportedOperationException();
+        }
+
+        public long read(final ByteBuffer[] dsts) throws IOException {
+            throw new UnsupportedOperationException();
+        }
+
+        public boolean isOpen() {
+            return true;
+        }
+
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2017 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.xnio.nio;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.xnio.OptionMap;
+import org.xnio.Options;
+import org.xnio.Xnio;
+import org.xnio.management.XnioIoThreadMXBean;
+
+/**
+ * Test for {@link IoThreadWatchdog}.
+ */
+public class IoThreadWatchdogTestCase {
+
+    @Test
+    public void reportBlockedTask() throws Exception {
+        final Xnio xnio = Xnio.getInstance("nio", IoThreadWatchdogTestCase.class.getClassLoader());
+        final NioXnioWorker worker = (NioXnioWorker) xnio.createWorker(OptionMap.builder()
+                .set(Options.WORKER_IO_THREADS, 1)
+                .set(Options.THREAD_DAEMON, true)
+                .getMap());
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        try {
+            final WorkerThread thread = worker.getIoThread(0);
+            final XnioIoThreadMXBean mxBean = thread.getMXBean();
+            final long blockedCount = mxBean.getBlockedCount();
+            // a task which blocks its I/O thread; it publishes its activity itself, whatever the configured threshold
+            final Runnable blocker = new Runnable() {
+                public void run() {
+                    thread.beginActivity(this);
+                    started.countDown();
+                    try {
+                        release.await(10L, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        thread.endActivity();
+                    }
+                }
+            };
+            thread.execute(blocker);
+            assertTrue(started.await(10L, TimeUnit.SECONDS));
+            // drive the watchdog's clock by hand rather than waiting on a started watchdog
+            final IoThreadWatchdog watchdog = new IoThreadWatchdog(100L);
+            final IoThreadWatchdog.Sample sample = new IoThreadWatchdog.Sample();
+            final long start = System.nanoTime();
+            watchdog.check(thread, sample, start);
+            watchdog.check(thread, sample, start + TimeUnit.MILLISECONDS.toNanos(50L));
+            assertEquals(blockedCount, mxBean.getBlockedCount());
+            watchdog.check(thread, sample, start + TimeUnit.MILLISECONDS.toNanos(150L));
+            assertEquals(blockedCount + 1L, mxBean.getBlockedCount());
+            // the same blocked task is reported only once
+            watchdog.check(thread, sample, start + TimeUnit.MILLISECONDS.toNanos(300L));
+            assertEquals(blockedCount + 1L, mxBean.getBlockedCount());
+            release.countDown();
+            // once the task is done, the thread is no longer considered blocked
+            final CountDownLatch idle = new CountDownLatch(1);
+            thread.execute(idle::countDown);
+            assertTrue(idle.await(10L, TimeUnit.SECONDS));
+            watchdog.check(thread, sample, start + TimeUnit.MILLISECONDS.toNanos(600L));
+            watchdog.check(thread, sample, start + TimeUnit.MILLISECONDS.toNanos(900L));
+            assertEquals(blockedCount + 1L, mxBean.getBlockedCount());
+        } finally {
+            release.countDown();
+            worker.shutdown();
+            worker.awaitTermination(10L, TimeUnit.SECONDS);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2017 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xnio.nio;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+
+/**
+ * Test for {@link MpscLinkedQueue}.
+ */
+public class MpscLinkedQueueTestCase {
+
+    @Test
+    public void singleThreaded() {
+        final MpscLinkedQueue<Integer> queue = new MpscLinkedQueue<Integer>();
+        assertTrue(queue.isEmpty());
+        assertNull(queue.poll());
+        for (int i = 0; i < 10; i ++) {
+            queue.offer(Integer.valueOf(i));
+        }
+        assertFalse(queue.isEmpty());
+        for (int i = 0; i < 10; i ++) {
+            assertEquals(Integer.valueOf(i), queue.poll());
+        }
+        assertTrue(queue.isEmpty());
+        assertNull(queue.poll());
+    }
+
+    @Test
+    public void multipleProducers() throws InterruptedException {
+        final int producers = 4;
+        final int count = 100000;
+        final MpscLinkedQueue<int[]> queue = new MpscLinkedQueue<int[]>();
+        final CountDownLatch start = new CountDownLatch(1);
+        final Thread[] threads = new Thread[producers];
+        for (int p = 0; p < producers; p ++) {
+            final int id = p;
+            threads[p] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < count; i ++) {
+                    queue.offer(new int[] { id, i });
+                }
+            });
+            threads[p].start();
+        }
+        start.countDown();
+        final int[] next = new int[producers];
+        int received = 0;
+        while (received < producers * count) {
+            final int[] item = queue.poll();
+            if (item == null) {
+                Thread.yield();
+                continue;
+            }
+            // per-producer order must be preserved
+            assertEquals(next[item[0]] ++, item[1]);
+            received ++;
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertTrue(queue.isEmpty());
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2017 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.xnio.nio;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.net.Inet4Address;
+import java.net.InetSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.xnio.IoThreadSelection;
+import org.xnio.OptionMap;
+import org.xnio.Options;
+import org.xnio.Xnio;
+
+/**
+ * Test for the mapping of NAPI IDs to I/O threads under {@link IoThreadSelection#NAPI_ID}.
+ */
+public class NapiThreadSelectionTestCase {
+
+    private static final int THREADS = 4;
+
+    private NioXnioWorker worker;
+
+    @Before
+    public void createWorker() throws Exception {
+        final Xnio xnio = Xnio.getInstance("nio", NapiThreadSelectionTestCase.class.getClassLoader());
+        worker = (NioXnioWorker) xnio.createWorker(OptionMap.builder()
+                .set(Options.WORKER_IO_THREADS, THREADS)
+                .set(Options.WORKER_IO_THREAD_SELECTION, IoThreadSelection.NAPI_ID)
+                .set(Options.THREAD_DAEMON, true)
+                .getMap());
+    }
+
+    @After
+    public void shutdownWorker() throws Exception {
+        worker.shutdown();
+        worker.awaitTermination(10L, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void sameIdSameThread() {
+        final WorkerThread thread = worker.getNapiThread(8193);
+        for (int i = 0; i < 10; i ++) {
+            worker.getNapiThread(8194 + i);
+            assertSame(thread, worker.getNapiThread(8193));
+        }
+    }
+
+    @Test
+    public void idsSpreadRoundRobin() {
+        // threads are handed out in the order in which the queues are first seen
+        final Set<WorkerThread> threads = Collections.newSetFromMap(new IdentityHashMap<WorkerThread, Boolean>());
+        final WorkerThread[] assigned = new WorkerThread[2 * THREADS];
+        for (int i = 0; i < assigned.length; i ++) {
+            assigned[i] = worker.getNapiThread(8193 + i);
+            if (i < THREADS) {
+                threads.add(assigned[i]);
+            } else {
+                assertSame(assigned[i - THREADS], assigned[i]);
+            }
+        }
+        assertEquals(THREADS, threads.size());
+    }
+
+    @Test
+    public void noIdFallsBackToAddressHash() throws Exception {
+        try (ServerSocketChannel server = ServerSocketChannel.open()) {
+            server.bind(new InetSocketAddress(Inet4Address.getByAddress(new byte[] { 127, 0, 0, 1 }), 0));
+            try (SocketChannel client = SocketChannel.open(server.getLocalAddress());
+                 SocketChannel accepted = server.accept()) {
+                // loopback connections have no NAPI ID
+                assertEquals(0, NioSocketOptions.getIncomingNapiId(accepted));
+                assertSame(worker.getIoThread(NioXnioWorker.addressHash(accepted)), worker.chooseThread(accepted));
+            }
+        }
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2017 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.xnio.nio;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.Inet4Address;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.xnio.IoUtils;
+import org.xnio.OptionMap;
+import org.xnio.Options;
+import org.xnio.StreamConnection;
+import org.xnio.Xnio;
+import org.xnio.XnioWorker;
+import org.xnio.channels.AcceptingChannel;
+import org.xnio.management.XnioSelectorPoolMXBean;
+
+/**
+ * Test for blocking awaits which park on the connection's I/O thread rather than selecting on a temporary selector.
+ * Runs in a test JVM of its own with {@code xnio.nio.park-await} set.
+ */
+public class ParkAwaitTestCase {
+
+    private NioXnio xnio;
+    private XnioWorker worker;
+    private AcceptingChannel<StreamConnection> server;
+    private Socket socket;
+    private StreamConnection connection;
+
+    @Before
+    public void connect() throws Exception {
+        // the surefire execution for this test sets the property; other test runs skip it
+        assumeTrue(NioHandle.PARK_AWAIT);
+        xnio = (NioXnio) Xnio.getInstance("nio", ParkAwaitTestCase.class.getClassLoader());
+        worker = xnio.createWorker(OptionMap.create(Options.THREAD_DAEMON, true));
+        final BlockingQueue<StreamConnection> accepted = new LinkedBlockingQueue<StreamConnection>();
+        final InetSocketAddress bindAddress = new InetSocketAddress(Inet4Address.getByAddress(new byte[] { 127, 0, 0, 1 }), 0);
+        server = worker.createStreamConnectionServer(bindAddress, channel -> {
+            StreamConnection connection;
+            try {
+                while ((connection = channel.accept()) != null) {
+                    accepted.add(connection);
+                }
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }, OptionMap.EMPTY);
+        server.resumeAccepts();
+        socket = new Socket();
+        socket.connect(server.getLocalAddress(InetSocketAddress.class));
+        connection = accepted.poll(10L, TimeUnit.SECONDS);
+        assertNotNull(connection);
+    }
+
+    @After
+    public void close() throws Exception {
+        IoUtils.safeClose(connection);
+        IoUtils.safeClose(socket);
+        IoUtils.safeClose(server);
+        if (worker != null) {
+            worker.shutdown();
+            worker.awaitTermination(10L, TimeUnit.SECONDS);
+        }
+    }
+
+    private static void awaitParked(final Thread thread) throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10L);
+        while (! (LockSupport.getBlocker(thread) instanceof NioHandle)) {
+            assertTrue("thread did not park", thread.isAlive() && System.nanoTime() < deadline);
+            Thread.sleep(1L);
+        }
+    }
+
+    private static Thread start(final AtomicReference<Throwable> failure, final IoRunnable runnable) {
+        final Thread thread = new Thread(() -> {
+            try {
+                runnable.run();
+            } catch (Throwable t) {
+                failure.set(t);
+            }
+        });
+        thread.start();
+        return thread;
+    }
+
+    interface IoRunnable {
+        void run() throws IOException;
+    }
+
+    @Test
+    public void awaitReadableParks() throws Exception {
+        final XnioSelectorPoolMXBean pool = xnio.getSelectorPool().getMXBean("nio", "test");
+        final long borrowCount = pool.getBorrowCount();
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        final ByteBuffer buffer = ByteBuffer.allocate(16);
+        final Thread reader = start(failure, () -> {
+            connection.getSourceChannel().awaitReadable();
+            connection.getSourceChannel().read(buffer);
+        });
+        awaitParked(reader);
+        // readiness seen by the I/O thread wakes the parked reader
+        socket.getOutputStream().write(new byte[] { 1, 2, 3 });
+        reader.join(10000L);
+        assertNull(failure.get());
+        assertFalse(reader.isAlive());
+        assertEquals(3, buffer.position());
+        assertEquals(borrowCount, pool.getBorrowCount());
+    }
+
+    @Test
+    public void awaitWritableParks() throws Exception {
+        final XnioSelectorPoolMXBean pool = xnio.getSelectorPool().getMXBean("nio", "test");
+        final long borrowCount = pool.getBorrowCount();
+        // fill the socket buffers, so that the connection is no longer writable
+        final ByteBuffer buffer = ByteBuffer.allocate(65536);
+        long written = 0L;
+        int res;
+        while ((res = connection.getSinkChannel().write(buffer)) > 0) {
+            written += res;
+            buffer.clear();
+        }
+        assertTrue(written > 0L);
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        final Thread writer = start(failure, () -> connection.getSinkChannel().awaitWritable());
+        awaitParked(writer);
+        // draining the peer makes the connection writable again, which wakes the parked writer
+        final InputStream in = socket.getInputStream();
+        final byte[] bytes = new byte[65536];
+        long read = 0L;
+        while (read < written && writer.isAlive()) {
+            read += in.read(bytes);
+        }
+        writer.join(10000L);
+        assertNull(failure.get());
+        assertFalse(writer.isAlive());
+        assertEquals(borrowCount, pool.getBorrowCount());
+    }
+}
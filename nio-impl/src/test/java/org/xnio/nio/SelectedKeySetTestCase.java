@@ -0,0 +1,97 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2017 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xnio.nio;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeNotNull;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.Pipe;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+
+import org.junit.Test;
+
+/**
+ * Test for {@link SelectedKeySet}.
+ */
+public class SelectedKeySetTestCase {
+
+    @Test
+    public void selectIntoArray() throws Exception {
+        try (Selector selector = Selector.open()) {
+            final SelectedKeySet keySet = SelectedKeySet.install(selector);
+            // not every JDK lets us in
+            assumeNotNull(keySet);
+            assertSame(keySet, selector.selectedKeys());
+            final Pipe pipe = Pipe.open();
+            try {
+                pipe.source().configureBlocking(false);
+                final SelectionKey key = pipe.source().register(selector, SelectionKey.OP_READ);
+                assertEquals(0, selector.selectNow());
+                assertEquals(0, keySet.size);
+                pipe.sink().write(ByteBuffer.wrap(new byte[] { 1 }));
+                assertEquals(1, selector.select(5000L));
+                assertEquals(1, keySet.size);
+                assertSame(key, keySet.keys[0]);
+                keySet.clear();
+                assertEquals(0, keySet.size());
+            } finally {
+                pipe.source().close();
+                pipe.sink().close();
+            }
+        }
+    }
+
+    @Test
+    public void selectAgainAppends() throws Exception {
+        try (Selector selector = Selector.open()) {
+            final SelectedKeySet keySet = SelectedKeySet.install(selector);
+            assumeNotNull(keySet);
+            final Pipe first = Pipe.open();
+            final Pipe second = Pipe.open();
+            try {
+                first.source().configureBlocking(false);
+                second.source().configureBlocking(false);
+                final SelectionKey firstKey = first.source().register(selector, SelectionKey.OP_READ);
+                final SelectionKey secondKey = second.source().register(selector, SelectionKey.OP_READ);
+                first.sink().write(ByteBuffer.wrap(new byte[] { 1 }));
+                assertEquals(1, selector.select(5000L));
+                assertEquals(1, keySet.size);
+                assertSame(firstKey, keySet.keys[0]);
+                // as when a handler cancels a key: selecting again before the set is reset appends to it
+                second.sink().write(ByteBuffer.wrap(new byte[] { 1 }));
+                selector.selectNow();
+                boolean found = false;
+                for (int i = 1; i < keySet.size; i ++) {
+                    found |= keySet.keys[i] == secondKey;
+                }
+                assertTrue(found);
+                keySet.clear();
+            } finally {
+                first.source().close();
+                first.sink().close();
+                second.source().close();
+                second.sink().close();
+            }
+        }
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2017 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xnio.nio;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.Pipe;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+import org.xnio.management.XnioSelectorPoolMXBean;
+
+/**
+ * Test for {@link SelectorPool}.
+ */
+public class SelectorPoolTestCase {
+
+    private static final NioXnio.SelectorCreator CREATOR = Selector::open;
+
+    @Test
+    public void reuseMostRecent() throws Exception {
+        final SelectorPool pool = new SelectorPool(CREATOR, 4, TimeUnit.MINUTES.toNanos(1L));
+        final XnioSelectorPoolMXBean mxBean = pool.getMXBean("nio", "test");
+        final Selector first = pool.borrow();
+        final Selector second = pool.borrow();
+        assertEquals(2, mxBean.getSize());
+        assertEquals(0, mxBean.getIdleCount());
+        pool.release(first);
+        pool.release(second);
+        assertEquals(2, mxBean.getIdleCount());
+        assertSame(second, pool.borrow());
+        assertSame(first, pool.borrow());
+        assertEquals(4L, mxBean.getBorrowCount());
+        assertEquals(0L, mxBean.getWaitCount());
+        pool.discard(first);
+        pool.discard(second);
+        assertFalse(first.isOpen());
+        assertEquals(0, mxBean.getSize());
+    }
+
+    @Test
+    public void waitWhenExhausted() throws Exception {
+        final SelectorPool pool = new SelectorPool(CREATOR, 1, TimeUnit.MINUTES.toNanos(1L));
+        final XnioSelectorPoolMXBean mxBean = pool.getMXBean("nio", "test");
+        final Selector selector = pool.borrow();
+        final AtomicReference<Selector> borrowed = new AtomicReference<Selector>();
+        final Thread thread = new Thread(() -> {
+            try {
+                borrowed.set(pool.borrow(System.nanoTime() + TimeUnit.SECONDS.toNanos(10L)));
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+        thread.start();
+        while (mxBean.getWaitCount() == 0L) {
+            Thread.sleep(1L);
+        }
+        Thread.sleep(20L);
+        assertTrue(thread.isAlive());
+        pool.release(selector);
+        thread.join(5000L);
+        assertSame(selector, borrowed.get());
+        assertEquals(1, mxBean.getSize());
+        assertTrue(mxBean.getWaitTime() >= TimeUnit.MILLISECONDS.toNanos(20L));
+        assertEquals(mxBean.getWaitTime(), mxBean.getMaxWaitTime());
+        pool.discard(selector);
+    }
+
+    @Test
+    public void evictIdle() throws Exception {
+        final SelectorPool pool = new SelectorPool(CREATOR, 4, TimeUnit.MILLISECONDS.toNanos(10L));
+        final XnioSelectorPoolMXBean mxBean = pool.getMXBean("nio", "test");
+        final Selector stale = pool.borrow();
+        pool.release(stale);
+        Thread.sleep(50L);
+        final Selector fresh = pool.borrow();
+        assertFalse(stale.isOpen());
+        assertTrue(fresh.isOpen());
+        assertEquals(1L, mxBean.getEvictionCount());
+        assertEquals(1, mxBean.getSize());
+        pool.discard(fresh);
+    }
+
+    @Test
+    public void borrowTimesOut() throws Exception {
+        final SelectorPool pool = new SelectorPool(CREATOR, 1, TimeUnit.MINUTES.toNanos(1L));
+        final XnioSelectorPoolMXBean mxBean = pool.getMXBean("nio", "test");
+        final Selector selector = pool.borrow();
+        final long start = System.nanoTime();
+        assertNull(pool.borrow(start + TimeUnit.MILLISECONDS.toNanos(50L)));
+        final long waited = System.nanoTime() - start;
+        assertTrue(waited >= TimeUnit.MILLISECONDS.toNanos(50L));
+        assertEquals(1L, mxBean.getWaitCount());
+        assertEquals(1L, mxBean.getBorrowCount());
+        pool.release(selector);
+        assertSame(selector, pool.borrow(System.nanoTime()));
+        pool.discard(selector);
+    }
+
+    @Test
+    public void timedAwaitWhenExhausted() throws Exception {
+        final SelectorPool pool = new SelectorPool(CREATOR, 1, TimeUnit.MINUTES.toNanos(1L));
+        final Selector selector = pool.borrow();
+        final Pipe pipe = Pipe.open();
+        try {
+            pipe.source().configureBlocking(false);
+            final long start = System.nanoTime();
+            // nothing to read, and no selector to wait with: the await must still return once its time is up
+            SelectorUtils.await(pool, pipe.source(), SelectionKey.OP_READ, 100L, TimeUnit.MILLISECONDS);
+            final long waited = System.nanoTime() - start;
+            assertTrue(waited >= TimeUnit.MILLISECONDS.toNanos(100L));
+            assertTrue(waited < TimeUnit.SECONDS.toNanos(5L));
+            assertEquals(1, pool.getMXBean("nio", "test").getSize());
+        } finally {
+            pipe.source().close();
+            pipe.sink().close();
+            pool.discard(selector);
+        }
+    }
+
+    @Test
+    public void overflowWhenExhausted() throws Exception {
+        final SelectorPool pool = new SelectorPool(CREATOR, 1, TimeUnit.MINUTES.toNanos(1L));
+        final XnioSelectorPoolMXBean mxBean = pool.getMXBean("nio", "test");
+        final Selector pooled = pool.borrow();
+        // a borrower without a deadline never waits
+        final Selector extra = pool.borrow();
+        assertNotSame(pooled, extra);
+        assertEquals(2, mxBean.getSize());
+        assertEquals(1L, mxBean.getOverflowCount());
+        assertEquals(0L, mxBean.getWaitCount());
+        // whichever selector comes back first while the pool is over its maximum is closed
+        pool.release(extra);
+        assertFalse(extra.isOpen());
+        assertEquals(1, mxBean.getSize());
+        pool.release(pooled);
+        assertTrue(pooled.isOpen());
+        assertEquals(1, mxBean.getIdleCount());
+        pool.discard(pool.borrow());
+    }
+
+    @Test
+    public void untimedAwaitWhenExhausted() throws Exception {
+        final SelectorPool pool = new SelectorPool(CREATOR, 1, TimeUnit.MINUTES.toNanos(1L));
+        // as if every pooled selector were held by a thread blocked for good
+        final Selector selector = pool.borrow();
+        final Pipe pipe = Pipe.open();
+        try {
+            pipe.source().configureBlocking(false);
+            pipe.sink().write(ByteBuffer.wrap(new byte[] { 1 }));
+            final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+            final Thread thread = new Thread(() -> {
+                try {
+                    SelectorUtils.await(pool, pipe.source(), SelectionKey.OP_READ);
+                } catch (Throwable t) {
+                    failure.set(t);
+                }
+            });
+            thread.start();
+            thread.join(5000L);
+            assertFalse("await is stuck behind the exhausted pool", thread.isAlive());
+            assertNull(failure.get());
+            assertEquals(1L, pool.getMXBean("nio", "test").getOverflowCount());
+            assertEquals(1, pool.getMXBean("nio", "test").getSize());
+        } finally {
+            pipe.source().close();
+            pipe.sink().close();
+            pool.discard(selector);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2017 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xnio.nio;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayDeque;
+
+import org.junit.Test;
+import org.xnio.XnioExecutor;
+
+/**
+ * Test for {@link TimingWheel}.
+ */
+public class TimingWheelTestCase {
+
+    private static final long TICK = 10L;
+
+    private static final Runnable TASK = () -> {};
+
+    @Test
+    public void emptyWheel() {
+        final TimingWheel wheel = new TimingWheel(Thread.currentThread(), TICK, 8, 0L);
+        final ArrayDeque<Runnable> queue = new ArrayDeque<Runnable>();
+        assertEquals(Long.MAX_VALUE, wheel.expire(1000L, queue));
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void expiresNoEarlierThanDeadline() {
+        final TimingWheel wheel = new TimingWheel(Thread.currentThread(), TICK, 8, 0L);
+        final ArrayDeque<Runnable> queue = new ArrayDeque<Runnable>();
+        wheel.schedule(TASK, 25L);
+        // next tick boundary
+        assertEquals(10L, wheel.expire(0L, queue));
+        assertEquals(5L, wheel.expire(25L, queue));
+        assertTrue(queue.isEmpty());
+        assertEquals(Long.MAX_VALUE, wheel.expire(30L, queue));
+        assertSame(TASK, queue.poll());
+        assertNull(queue.poll());
+    }
+
+    @Test
+    public void multipleRounds() {
+        // deadline is several rotations of the wheel away
+        final TimingWheel wheel = new TimingWheel(Thread.currentThread(), TICK, 4, 0L);
+        final ArrayDeque<Runnable> queue = new ArrayDeque<Runnable>();
+        wheel.schedule(TASK, 105L);
+        for (long now = 0L; now < 110L; now += TICK) {
+            wheel.expire(now, queue);
+            assertTrue("Expired early at " + now, queue.isEmpty());
+        }
+        wheel.expire(110L, queue);
+        assertSame(TASK, queue.poll());
+    }
+
+    @Test
+    public void removeBeforeExpiry() {
+        final TimingWheel wheel = new TimingWheel(Thread.currentThread(), TICK, 8, 0L);
+        final ArrayDeque<Runnable> queue = new ArrayDeque<Runnable>();
+        final XnioExecutor.Key key = wheel.schedule(TASK, 15L);
+        assertTrue(key.remove());
+        assertFalse(key.remove());
+        assertEquals(Long.MAX_VALUE, wheel.expire(100L, queue));
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void removeAfterExpiry() {
+        final TimingWheel wheel = new TimingWheel(Thread.currentThread(), TICK, 8, 0L);
+        final ArrayDeque<Runnable> queue = new ArrayDeque<Runnable>();
+        final XnioExecutor.Key key = wheel.schedule(TASK, 15L);
+        wheel.expire(20L, queue);
+        assertSame(TASK, queue.poll());
+        assertFalse(key.remove());
+    }
+
+    @Test
+    public void scheduleFromOtherThread() throws InterruptedException {
+        final TimingWheel wheel = new TimingWheel(Thread.currentThread(), TICK, 8, 0L);
+        final ArrayDeque<Runnable> queue = new ArrayDeque<Runnable>();
+        final XnioExecutor.Key[] keys = new XnioExecutor.Key[2];
+        final Thread thread = new Thread(() -> {
+            keys[0] = wheel.schedule(TASK, 15L);
+            keys[1] = wheel.schedule(() -> {}, 15L);
+            // cancelled from a foreign thread: only marked, unlinked later by the owner
+            keys[1].remove();
+        });
+        thread.start();
+        thread.join();
+        assertTrue(wheel.hasPending());
+        assertEquals(10L, wheel.expire(0L, queue));
+        assertFalse(wheel.hasPending());
+        assertEquals(Long.MAX_VALUE, wheel.expire(20L, queue));
+        assertSame(TASK, queue.poll());
+        assertNull(queue.poll());
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2017 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xnio.nio.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.xnio.IoUtils;
+import org.xnio.OptionMap;
+import org.xnio.Options;
+import org.xnio.management.XnioServerMXBean;
+
+/**
+ * Test for batched and rate limited accepts and the accept statistics of {@link XnioServerMXBean}.
+ */
+public class AcceptBatchTestCase {
+
+    private static final int THREADS = 4;
+    private static final int CONNECTIONS = 32;
+
+    @Test
+    public void acceptBurst() throws Exception {
+        try (LoopbackServer server = new LoopbackServer(OptionMap.create(Options.WORKER_IO_THREADS, THREADS), OptionMap.create(Options.ACCEPT_BATCH_SIZE, 8))) {
+            assertEquals(Integer.valueOf(8), server.getServer().getOption(Options.ACCEPT_BATCH_SIZE));
+            // queue up a burst in the backlog before accepting
+            for (int i = 0; i < CONNECTIONS; i ++) {
+                server.connect();
+            }
+            server.resumeAccepts();
+            for (int i = 0; i < CONNECTIONS; i ++) {
+                IoUtils.safeClose(server.accept());
+            }
+            final XnioServerMXBean bean = server.getWorker().getMXBean().getServerMXBeans().iterator().next();
+            assertEquals(0, bean.getAcceptQueueSize());
+            final long handoffs = bean.getAcceptHandoffCount();
+            // at least one batch per readiness event, at most one per connection
+            assertTrue(handoffs > 0L && handoffs <= CONNECTIONS);
+            assertTrue(bean.getAcceptHandoffTime() >= 0L);
+        }
+    }
+
+    @Test
+    public void acceptRateLimited() throws Exception {
+        final int connections = 6;
+        try (LoopbackServer server = new LoopbackServer(OptionMap.create(Options.WORKER_IO_THREADS, THREADS),
+                OptionMap.builder().set(Options.ACCEPT_RATE_LIMIT, 20).set(Options.ACCEPT_RATE_BURST, 2).getMap())) {
+            assertEquals(Integer.valueOf(20), server.getServer().getOption(Options.ACCEPT_RATE_LIMIT));
+            assertEquals(Integer.valueOf(2), server.getServer().getOption(Options.ACCEPT_RATE_BURST));
+            for (int i = 0; i < connections; i ++) {
+                server.connect();
+            }
+            final long start = System.nanoTime();
+            server.resumeAccepts();
+            for (int i = 0; i < connections; i ++) {
+                IoUtils.safeClose(server.accept());
+            }
+            // two from the burst, then one every 50ms
+            assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(150L));
+            final XnioServerMXBean bean = server.getWorker().getMXBean().getServerMXBeans().iterator().next();
+            assertEquals(connections, bean.getAcceptAdmittedCount());
+            assertTrue(bean.getAcceptDeferredCount() > 0L);
+        }
+    }
+}
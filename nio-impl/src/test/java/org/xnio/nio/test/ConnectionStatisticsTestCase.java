@@ -0,0 +1,116 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2017 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xnio.nio.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import org.junit.Test;
+import org.xnio.OptionMap;
+import org.xnio.StreamConnection;
+import org.xnio.conduits.ConduitStreamSinkChannel;
+import org.xnio.conduits.ConduitStreamSourceChannel;
+import org.xnio.management.ConnectionStatistics;
+import org.xnio.management.XnioWorkerMXBean;
+
+/**
+ * Test for {@link StreamConnection#getStatistics()}.
+ */
+public class ConnectionStatisticsTestCase {
+
+    private static final int REQUEST = 1000;
+    private static final int RESPONSE = 300;
+    private static final int FILE = 5000;
+
+    @Test
+    public void countReadsAndWrites() throws Exception {
+        final File file = File.createTempFile("xnio", ".dat");
+        try (LoopbackServer server = new LoopbackServer(OptionMap.EMPTY, OptionMap.EMPTY)) {
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                raf.write(new byte[FILE]);
+            }
+            server.resumeAccepts();
+            final Socket socket = server.connect();
+            final StreamConnection connection = server.accept();
+            final ConnectionStatistics statistics = connection.getStatistics();
+            assertNotNull(statistics);
+            final ConduitStreamSourceChannel source = connection.getSourceChannel();
+            final ConduitStreamSinkChannel sink = connection.getSinkChannel();
+            // nothing to read yet
+            final ByteBuffer buffer = ByteBuffer.allocate(REQUEST);
+            assertEquals(0, source.read(buffer));
+            final OutputStream out = socket.getOutputStream();
+            out.write(new byte[REQUEST]);
+            out.flush();
+            while (buffer.hasRemaining()) {
+                source.awaitReadable();
+                source.read(buffer);
+            }
+            final ByteBuffer response = ByteBuffer.allocate(RESPONSE);
+            while (response.hasRemaining()) {
+                sink.awaitWritable();
+                sink.write(response);
+            }
+            try (FileChannel fileChannel = FileChannel.open(file.toPath())) {
+                long transferred = 0L;
+                while (transferred < FILE) {
+                    sink.awaitWritable();
+                    transferred += sink.transferFrom(fileChannel, transferred, FILE - transferred);
+                }
+            }
+            final InputStream in = socket.getInputStream();
+            int received = 0;
+            while (received < RESPONSE + FILE) {
+                final int res = in.read(new byte[RESPONSE + FILE]);
+                assertTrue(res > 0);
+                received += res;
+            }
+            assertEquals(REQUEST, statistics.getBytesRead());
+            assertEquals(RESPONSE, statistics.getBytesWritten());
+            assertEquals(FILE, statistics.getTransferFromBytes());
+            assertEquals(0L, statistics.getTransferToBytes());
+            assertTrue(statistics.getReadCount() >= 2L);
+            assertTrue(statistics.getEmptyReadCount() >= 1L);
+            assertTrue(statistics.getWriteCount() >= 1L);
+            final XnioWorkerMXBean mxBean = server.getWorker().getMXBean();
+            // the worker totals include the open connection
+            assertEquals(REQUEST, mxBean.getBytesRead());
+            assertEquals(RESPONSE, mxBean.getBytesWritten());
+            assertEquals(FILE, mxBean.getTransferFromBytes());
+            assertEquals(statistics.getReadCount(), mxBean.getReadCount());
+            connection.close();
+            // and take over its counts, once only, when it closes
+            assertEquals(REQUEST, mxBean.getBytesRead());
+            assertEquals(RESPONSE, mxBean.getBytesWritten());
+            assertEquals(FILE, mxBean.getTransferFromBytes());
+            assertEquals(statistics.getReadCount(), mxBean.getReadCount());
+        } finally {
+            file.delete();
+        }
+    }
+}
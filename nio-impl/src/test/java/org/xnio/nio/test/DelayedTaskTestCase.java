@@ -0,0 +1,87 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2017 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.xnio.nio.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.xnio.OptionMap;
+import org.xnio.Options;
+import org.xnio.Xnio;
+import org.xnio.XnioIoThread;
+import org.xnio.XnioWorker;
+
+/**
+ * Test for delayed tasks run by an I/O thread.
+ */
+public class DelayedTaskTestCase {
+
+    @Test
+    public void rescheduleFromExpiredTask() throws Exception {
+        final Xnio xnio = Xnio.getInstance("nio", DelayedTaskTestCase.class.getClassLoader());
+        final XnioWorker worker = xnio.createWorker(OptionMap.create(Options.WORKER_IO_THREADS, 1, Options.THREAD_DAEMON, true));
+        try {
+            final XnioIoThread thread = worker.getIoThread(0);
+            final CountDownLatch latch = new CountDownLatch(1);
+            // the second task is scheduled by the I/O thread itself, so nothing else wakes the selector for it
+            thread.executeAfter(() -> thread.executeAfter(latch::countDown, 10L, TimeUnit.MILLISECONDS), 10L, TimeUnit.MILLISECONDS);
+            assertTrue(latch.await(5L, TimeUnit.SECONDS));
+        } finally {
+            worker.shutdown();
+            worker.awaitTermination(10L, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void expireMoreThanOneBatch() throws Exception {
+        final Xnio xnio = Xnio.getInstance("nio", DelayedTaskTestCase.class.getClassLoader());
+        final XnioWorker worker = xnio.createWorker(OptionMap.create(Options.WORKER_IO_THREADS, 1, Options.THREAD_DAEMON, true));
+        try {
+            final XnioIoThread thread = worker.getIoThread(0);
+            // more than the I/O thread runs in one batch, all expiring at once
+            final int count = 3000;
+            final List<Integer> order = new ArrayList<Integer>();
+            final CountDownLatch latch = new CountDownLatch(count);
+            thread.execute(() -> {
+                for (int i = 0; i < count; i ++) {
+                    final Integer n = Integer.valueOf(i);
+                    thread.executeAfter(() -> {
+                        order.add(n);
+                        latch.countDown();
+                    }, 10L, TimeUnit.MILLISECONDS);
+                }
+            });
+            assertTrue(latch.await(5L, TimeUnit.SECONDS));
+            // the tasks left over from a full batch run on a later pass, still in order
+            for (int i = 0; i < count; i ++) {
+                assertEquals(i, order.get(i).intValue());
+            }
+        } finally {
+            worker.shutdown();
+            worker.awaitTermination(10L, TimeUnit.SECONDS);
+        }
+    }
+}
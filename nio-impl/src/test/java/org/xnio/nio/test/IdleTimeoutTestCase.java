@@ -0,0 +1,107 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2017 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xnio.nio.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.xnio.IoUtils;
+import org.xnio.OptionMap;
+import org.xnio.Options;
+import org.xnio.StreamConnection;
+import org.xnio.conduits.ConduitStreamSourceChannel;
+
+/**
+ * Test for {@link Options#IDLE_TIMEOUT}.
+ */
+public class IdleTimeoutTestCase {
+
+    private static final int IDLE_TIMEOUT = 200;
+
+    @Test
+    public void closeIdleConnection() throws Exception {
+        // one I/O thread, so that every connection is watched by the same sweep
+        try (LoopbackServer server = new LoopbackServer(OptionMap.create(Options.WORKER_IO_THREADS, 1), OptionMap.create(Options.IDLE_TIMEOUT, IDLE_TIMEOUT),
+                IdleTimeoutTestCase::readUntilEof)) {
+            assertEquals(Integer.valueOf(IDLE_TIMEOUT), server.getServer().getOption(Options.IDLE_TIMEOUT));
+            server.resumeAccepts();
+            final Socket idle = server.connect();
+            final StreamConnection idleConnection = server.accept();
+            assertEquals(Integer.valueOf(IDLE_TIMEOUT), idleConnection.getOption(Options.IDLE_TIMEOUT));
+            final Socket active = server.connect();
+            final StreamConnection activeConnection = server.accept();
+            final CountDownLatch closed = new CountDownLatch(1);
+            idleConnection.setCloseListener(c -> closed.countDown());
+            // keep one connection busy while the other one stays silent
+            final OutputStream out = active.getOutputStream();
+            final long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(10L);
+            while (closed.getCount() > 0L && System.nanoTime() < end) {
+                out.write(1);
+                out.flush();
+                Thread.sleep(IDLE_TIMEOUT / 4);
+            }
+            assertEquals(0L, closed.getCount());
+            final InputStream in = idle.getInputStream();
+            idle.setSoTimeout(10000);
+            assertEquals(-1, in.read());
+            assertTrue(activeConnection.isOpen());
+            // a connection whose timeout is cleared is left alone
+            activeConnection.setOption(Options.IDLE_TIMEOUT, 0);
+            // by the time the sweep closes a connection opened after that, it would have closed this one too
+            server.connect();
+            final StreamConnection probeConnection = server.accept();
+            final CountDownLatch probeClosed = new CountDownLatch(1);
+            probeConnection.setCloseListener(c -> probeClosed.countDown());
+            assertTrue(probeClosed.await(10L, TimeUnit.SECONDS));
+            assertTrue(activeConnection.isOpen());
+            assertFalse(idleConnection.isOpen());
+            IoUtils.safeClose(activeConnection);
+        }
+    }
+
+    private static void readUntilEof(final StreamConnection connection) {
+        final ConduitStreamSourceChannel source = connection.getSourceChannel();
+        final ByteBuffer buffer = ByteBuffer.allocate(64);
+        source.setReadListener(c -> {
+            try {
+                int res;
+                do {
+                    buffer.clear();
+                    res = c.read(buffer);
+                } while (res > 0);
+                if (res == -1) {
+                    IoUtils.safeClose(c);
+                }
+            } catch (IOException e) {
+                IoUtils.safeClose(c);
+            }
+        });
+        source.resumeReads();
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2017 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xnio.nio.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.JMX;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.Test;
+import org.xnio.OptionMap;
+import org.xnio.Options;
+import org.xnio.Xnio;
+import org.xnio.XnioWorker;
+import org.xnio.management.XnioIoThreadMXBean;
+
+/**
+ * Test for the per I/O thread management beans.
+ */
+public class IoThreadMXBeanTestCase {
+
+    private static XnioIoThreadMXBean lookup(final MBeanServer server, final String workerName, final String threadName) throws Exception {
+        final ObjectName name = new ObjectName("org.xnio:type=Xnio,provider=\"nio\",worker=" + ObjectName.quote(workerName) + ",thread=" + ObjectName.quote(threadName));
+        return JMX.newMXBeanProxy(server, name, XnioIoThreadMXBean.class);
+    }
+
+    @Test
+    public void spinStatistics() throws Exception {
+        final Xnio xnio = Xnio.getInstance("nio", IoThreadMXBeanTestCase.class.getClassLoader());
+        final XnioWorker worker = xnio.createWorker(OptionMap.builder()
+                .set(Options.WORKER_NAME, "spin-test")
+                .set(Options.WORKER_IO_THREADS, 1)
+                .set(Options.WORKER_IO_SPIN_TIME, 500)
+                .set(Options.THREAD_DAEMON, true)
+                .getMap());
+        try {
+            final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            final Set<ObjectName> names = server.queryNames(new ObjectName("org.xnio:type=Xnio,provider=\"nio\",worker=\"spin-test\",thread=*"), null);
+            // one I/O thread plus the accept thread
+            assertEquals(2, names.size());
+            final String threadName = worker.getIoThread(0).getName();
+            final XnioIoThreadMXBean bean = lookup(server, "spin-test", threadName);
+            assertEquals("spin-test", bean.getWorkerName());
+            assertEquals(threadName, bean.getName());
+            for (int i = 0; i < 10; i ++) {
+                final CountDownLatch latch = new CountDownLatch(1);
+                worker.getIoThread(0).execute(latch::countDown);
+                assertTrue(latch.await(10L, TimeUnit.SECONDS));
+                Thread.sleep(5L);
+            }
+            assertTrue(bean.getSpinCount() > 0L);
+            assertTrue(bean.getBlockCount() > 0L);
+            assertTrue(bean.getSpinTime() > 0L && bean.getSpinTime() <= 500L);
+            assertTrue(bean.getSpinHitCount() <= bean.getSpinCount());
+        } finally {
+            worker.shutdown();
+            worker.awaitTermination(10L, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void wakeupStatistics() throws Exception {
+        final Xnio xnio = Xnio.getInstance("nio", IoThreadMXBeanTestCase.class.getClassLoader());
+        final XnioWorker worker = xnio.createWorker(OptionMap.builder()
+                .set(Options.WORKER_NAME, "wakeup-test")
+                .set(Options.WORKER_IO_THREADS, 1)
+                .set(Options.THREAD_DAEMON, true)
+                .getMap());
+        try {
+            final XnioIoThreadMXBean bean = lookup(ManagementFactory.getPlatformMBeanServer(), "wakeup-test", worker.getIoThread(0).getName());
+            for (int i = 0; i < 10; i ++) {
+                final CountDownLatch latch = new CountDownLatch(1);
+                worker.getIoThread(0).execute(latch::countDown);
+                assertTrue(latch.await(10L, TimeUnit.SECONDS));
+                Thread.sleep(5L);
+            }
+            final long issued = bean.getWakeupCount();
+            assertTrue(issued > 0L);
+            // the thread is blocked while the burst is submitted, so only the first task should need a wakeup
+            final CountDownLatch blocker = new CountDownLatch(1);
+            final CountDownLatch burst = new CountDownLatch(100);
+            worker.getIoThread(0).execute(() -> {
+                try {
+                    blocker.await();
+                } catch (InterruptedException ignored) {
+                }
+            });
+            for (int i = 0; i < 100; i ++) {
+                worker.getIoThread(0).execute(burst::countDown);
+            }
+            blocker.countDown();
+            assertTrue(burst.await(10L, TimeUnit.SECONDS));
+            assertTrue(bean.getWakeupCount() <= issued + 1L);
+            assertTrue(bean.getWakeupRequestCount() >= 111L);
+        } finally {
+            worker.shutdown();
+            worker.awaitTermination(10L, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void timeBreakdown() throws Exception {
+        final Xnio xnio = Xnio.getInstance("nio", IoThreadMXBeanTestCase.class.getClassLoader());
+        final XnioWorker worker = xnio.createWorker(OptionMap.builder()
+                .set(Options.WORKER_NAME, "time-test")
+                .set(Options.WORKER_IO_THREADS, 1)
+                .set(Options.THREAD_DAEMON, true)
+                .getMap());
+        try {
+            assertEquals(2, worker.getMXBean().getIoThreadMXBeans().size());
+            final XnioIoThreadMXBean bean = lookup(ManagementFactory.getPlatformMBeanServer(), "time-test", worker.getIoThread(0).getName());
+            final CountDownLatch latch = new CountDownLatch(2);
+            final Runnable sleeper = () -> {
+                try {
+                    Thread.sleep(20L);
+                } catch (InterruptedException ignored) {
+                }
+                latch.countDown();
+            };
+            worker.getIoThread(0).execute(sleeper);
+            worker.getIoThread(0).executeAfter(sleeper, 50L, TimeUnit.MILLISECONDS);
+            assertTrue(latch.await(10L, TimeUnit.SECONDS));
+            // let the thread finish the iteration and publish its figures
+            worker.getIoThread(0).execute(() -> {});
+            Thread.sleep(50L);
+            final long millis = TimeUnit.MILLISECONDS.toNanos(1L);
+            assertTrue(bean.getTaskTime() >= 20L * millis);
+            assertTrue(bean.getDelayedTaskTime() >= 20L * millis);
+            assertTrue(bean.getSelectTime() > 0L);
+            assertTrue(bean.getIterationCount() > 0L);
+            assertTrue(bean.getIterationsPerSecond() > 0.0);
+        } finally {
+            worker.shutdown();
+            worker.awaitTermination(10L, TimeUnit.SECONDS);
+        }
+    }
+}
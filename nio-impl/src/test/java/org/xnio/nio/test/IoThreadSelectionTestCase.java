@@ -0,0 +1,100 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2017 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xnio.nio.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+import org.xnio.IoThreadSelection;
+import org.xnio.IoUtils;
+import org.xnio.OptionMap;
+import org.xnio.Options;
+import org.xnio.StreamConnection;
+import org.xnio.XnioIoThread;
+
+/**
+ * Test for {@link Options#WORKER_IO_THREAD_SELECTION}.
+ */
+public class IoThreadSelectionTestCase {
+
+    private static final int THREADS = 4;
+    private static final int CONNECTIONS = 2 * THREADS;
+
+    private static Map<XnioIoThread, Integer> acceptConnections(final IoThreadSelection threadSelection) throws Exception {
+        final OptionMap workerOptions = OptionMap.create(Options.WORKER_IO_THREADS, THREADS, Options.WORKER_IO_THREAD_SELECTION, threadSelection);
+        try (LoopbackServer server = new LoopbackServer(workerOptions, OptionMap.EMPTY)) {
+            server.resumeAccepts();
+            final Map<XnioIoThread, Integer> counts = new HashMap<XnioIoThread, Integer>();
+            for (int i = 0; i < CONNECTIONS; i ++) {
+                server.connect();
+                // one at a time, so that every choice sees the load left by the previous one
+                final StreamConnection connection = server.accept();
+                counts.merge(connection.getIoThread(), 1, Integer::sum);
+                IoUtils.safeClose(connection);
+            }
+            return counts;
+        }
+    }
+
+    @Test
+    public void roundRobin() throws Exception {
+        final Map<XnioIoThread, Integer> counts = acceptConnections(IoThreadSelection.ROUND_ROBIN);
+        assertEquals(THREADS, counts.size());
+        for (Integer count : counts.values()) {
+            assertEquals(2, count.intValue());
+        }
+    }
+
+    @Test
+    public void leastKeys() throws Exception {
+        final Map<XnioIoThread, Integer> counts = acceptConnections(IoThreadSelection.LEAST_KEYS);
+        int total = 0;
+        for (Integer count : counts.values()) {
+            total += count.intValue();
+        }
+        assertEquals(CONNECTIONS, total);
+        // each connection is closed right away, so the choices should still be spread out
+        assertTrue(counts.size() > 1);
+    }
+
+    @Test
+    public void twoChoices() throws Exception {
+        final Map<XnioIoThread, Integer> counts = acceptConnections(IoThreadSelection.TWO_CHOICES);
+        int total = 0;
+        for (Integer count : counts.values()) {
+            total += count.intValue();
+        }
+        assertEquals(CONNECTIONS, total);
+    }
+
+    @Test
+    public void napiId() throws Exception {
+        // loopback connections have no NAPI ID, so this exercises the fallback to address hashing
+        final Map<XnioIoThread, Integer> counts = acceptConnections(IoThreadSelection.NAPI_ID);
+        int total = 0;
+        for (Integer count : counts.values()) {
+            total += count.intValue();
+        }
+        assertEquals(CONNECTIONS, total);
+    }
+}
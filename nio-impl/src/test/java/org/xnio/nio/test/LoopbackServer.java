@@ -0,0 +1,150 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2017 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xnio.nio.test;
+
+import static org.junit.Assert.assertNotNull;
+
+import java.io.IOException;
+import java.net.Inet4Address;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.xnio.IoUtils;
+import org.xnio.OptionMap;
+import org.xnio.Options;
+import org.xnio.StreamConnection;
+import org.xnio.Xnio;
+import org.xnio.XnioWorker;
+import org.xnio.channels.AcceptingChannel;
+
+/**
+ * A worker with a stream connection server on an ephemeral loopback port, for tests which drive the server with plain
+ * sockets.  Accepted connections are queued for the test; accepts are not resumed until the test asks, so that it can
+ * fill the backlog first.  Closing it closes the server, the sockets it connected, and the worker.
+ */
+final class LoopbackServer implements AutoCloseable {
+
+    /**
+     * A callback run on the accepting thread for each accepted connection, before it is queued.
+     */
+    interface AcceptHandler {
+        void accepted(StreamConnection connection) throws IOException;
+    }
+
+    private final XnioWorker worker;
+    private final AcceptingChannel<StreamConnection> server;
+    private final BlockingQueue<StreamConnection> accepted = new LinkedBlockingQueue<StreamConnection>();
+    private final List<Socket> sockets = new ArrayList<Socket>();
+
+    LoopbackServer(final OptionMap workerOptions, final OptionMap serverOptions) throws IOException {
+        this(workerOptions, serverOptions, null);
+    }
+
+    LoopbackServer(final OptionMap workerOptions, final OptionMap serverOptions, final AcceptHandler handler) throws IOException {
+        final Xnio xnio = Xnio.getInstance("nio", LoopbackServer.class.getClassLoader());
+        worker = xnio.createWorker(OptionMap.builder().addAll(workerOptions).set(Options.THREAD_DAEMON, true).getMap());
+        boolean ok = false;
+        try {
+            final InetSocketAddress bindAddress = new InetSocketAddress(Inet4Address.getByAddress(new byte[] { 127, 0, 0, 1 }), 0);
+            server = worker.createStreamConnectionServer(bindAddress, channel -> {
+                StreamConnection connection;
+                try {
+                    while ((connection = channel.accept()) != null) {
+                        if (handler != null) {
+                            handler.accepted(connection);
+                        }
+                        accepted.add(connection);
+                    }
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            }, serverOptions);
+            ok = true;
+        } finally {
+            if (! ok) worker.shutdown();
+        }
+    }
+
+    XnioWorker getWorker() {
+        return worker;
+    }
+
+    AcceptingChannel<StreamConnection> getServer() {
+        return server;
+    }
+
+    void resumeAccepts() {
+        server.resumeAccepts();
+    }
+
+    /**
+     * Connect a new socket to the server.
+     *
+     * @return the connected socket
+     */
+    Socket connect() throws IOException {
+        return connect(new Socket());
+    }
+
+    /**
+     * Connect the given socket, which may have options set beforehand, to the server.
+     *
+     * @param socket the unconnected socket
+     * @return the connected socket
+     */
+    Socket connect(final Socket socket) throws IOException {
+        sockets.add(socket);
+        socket.connect(server.getLocalAddress(InetSocketAddress.class));
+        return socket;
+    }
+
+    /**
+     * Take the next accepted connection, waiting for up to ten seconds.
+     *
+     * @return the accepted connection
+     */
+    StreamConnection accept() throws InterruptedException {
+        final StreamConnection connection = accepted.poll(10L, TimeUnit.SECONDS);
+        assertNotNull(connection);
+        return connection;
+    }
+
+    /**
+     * Get the number of accepted connections not yet taken by {@link #accept()}.
+     *
+     * @return the number of queued connections
+     */
+    int getQueuedCount() {
+        return accepted.size();
+    }
+
+    public void close() throws InterruptedException {
+        IoUtils.safeClose(server);
+        for (Socket socket : sockets) {
+            IoUtils.safeClose(socket);
+        }
+        worker.shutdown();
+        worker.awaitTermination(10L, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2017 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xnio.nio.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.Test;
+import org.xnio.IoUtils;
+import org.xnio.OptionMap;
+import org.xnio.Options;
+import org.xnio.StreamConnection;
+
+/**
+ * Test for {@link Options#REUSE_PORT}.
+ */
+public class ReusePortTestCase {
+
+    private static final int THREADS = 4;
+    private static final int CONNECTIONS = 4 * THREADS;
+
+    @Test
+    public void acceptOnOwnThread() throws Exception {
+        final Map<StreamConnection, Thread> acceptingThreads = new ConcurrentHashMap<StreamConnection, Thread>();
+        try (LoopbackServer server = new LoopbackServer(OptionMap.create(Options.WORKER_IO_THREADS, THREADS), OptionMap.create(Options.REUSE_PORT, Boolean.TRUE),
+                connection -> acceptingThreads.put(connection, Thread.currentThread()))) {
+            // falls back to a single listening socket where SO_REUSEPORT is not available
+            final boolean sharded = Boolean.TRUE.equals(server.getServer().getOption(Options.REUSE_PORT));
+            server.resumeAccepts();
+            for (int i = 0; i < CONNECTIONS; i ++) {
+                server.connect();
+            }
+            for (int i = 0; i < CONNECTIONS; i ++) {
+                final StreamConnection connection = server.accept();
+                if (sharded) {
+                    assertSame(acceptingThreads.get(connection), connection.getIoThread());
+                }
+                IoUtils.safeClose(connection);
+            }
+            assertEquals(0, server.getQueuedCount());
+        }
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2017 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xnio.nio.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+import org.xnio.IoUtils;
+import org.xnio.OptionMap;
+import org.xnio.Options;
+import org.xnio.StreamConnection;
+import org.xnio.channels.AcceptingChannel;
+
+/**
+ * Test for the extended TCP options such as {@link Options#TCP_KEEPIDLE}.
+ */
+public class TcpExtendedOptionsTestCase {
+
+    @Test
+    public void acceptedSocketOptions() throws Exception {
+        try (LoopbackServer loopback = new LoopbackServer(OptionMap.EMPTY, OptionMap.builder()
+                .set(Options.KEEP_ALIVE, true)
+                .set(Options.TCP_KEEPIDLE, 30)
+                .set(Options.TCP_KEEPINTERVAL, 5)
+                .set(Options.TCP_KEEPCOUNT, 3)
+                .getMap())) {
+            final AcceptingChannel<StreamConnection> server = loopback.getServer();
+            assertEquals(Integer.valueOf(30), server.getOption(Options.TCP_KEEPIDLE));
+            assertNull(server.getOption(Options.TCP_QUICKACK));
+            assertEquals(null, server.setOption(Options.TCP_QUICKACK, Boolean.TRUE));
+            assertEquals(Boolean.TRUE, server.getOption(Options.TCP_QUICKACK));
+            loopback.resumeAccepts();
+            loopback.connect();
+            final StreamConnection connection = loopback.accept();
+            try {
+                // the options are ignored where the platform does not have them
+                if (connection.supportsOption(Options.TCP_KEEPIDLE)) {
+                    assertEquals(Integer.valueOf(30), connection.getOption(Options.TCP_KEEPIDLE));
+                    assertEquals(Integer.valueOf(5), connection.getOption(Options.TCP_KEEPINTERVAL));
+                    assertEquals(Integer.valueOf(3), connection.getOption(Options.TCP_KEEPCOUNT));
+                    assertEquals(Integer.valueOf(30), connection.setOption(Options.TCP_KEEPIDLE, 60));
+                    assertEquals(Integer.valueOf(60), connection.getOption(Options.TCP_KEEPIDLE));
+                } else {
+                    assertNull(connection.getOption(Options.TCP_KEEPIDLE));
+                    assertNull(connection.setOption(Options.TCP_KEEPIDLE, 60));
+                }
+            } finally {
+                IoUtils.safeClose(connection);
+            }
+        }
+    }
+}
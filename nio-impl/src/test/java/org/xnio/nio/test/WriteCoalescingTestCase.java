@@ -0,0 +1,199 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2017 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xnio.nio.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.xnio.IoUtils;
+import org.xnio.OptionMap;
+import org.xnio.Options;
+import org.xnio.StreamConnection;
+import org.xnio.conduits.ConduitStreamSinkChannel;
+
+/**
+ * Test for {@link Options#WRITE_COALESCING}.
+ */
+public class WriteCoalescingTestCase {
+
+    private static final int SMALL_WRITES = 1000;
+    private static final int LARGE_WRITE = 1 << 20;
+    private static final OptionMap ONE_THREAD = OptionMap.create(Options.WORKER_IO_THREADS, 1);
+
+    @Test
+    public void coalescedWritesArriveInOrder() throws Exception {
+        final BlockingQueue<Throwable> problems = new LinkedBlockingQueue<Throwable>();
+        try (LoopbackServer server = new LoopbackServer(ONE_THREAD, OptionMap.create(Options.WRITE_COALESCING, true), connection -> {
+            final ConduitStreamSinkChannel sink = connection.getSinkChannel();
+            if (! connection.getOption(Options.WRITE_COALESCING).booleanValue()) {
+                problems.add(new AssertionError("Write coalescing not set on the accepted connection"));
+            }
+            // many small writes, each of which would otherwise be a write to the socket
+            for (int i = 0; i < SMALL_WRITES; i ++) {
+                final ByteBuffer buffer = ByteBuffer.allocate(4);
+                buffer.putInt(i).flip();
+                if (sink.write(buffer) != 4) {
+                    problems.add(new AssertionError("Small write not taken whole"));
+                }
+            }
+            // then more than the socket can take at once, which must follow what was gathered
+            final ByteBuffer large = ByteBuffer.wrap(pattern());
+            sink.setWriteListener(c -> {
+                try {
+                    while (large.hasRemaining()) {
+                        if (c.write(large) == 0) {
+                            return;
+                        }
+                    }
+                    c.shutdownWrites();
+                    if (c.flush()) {
+                        c.suspendWrites();
+                        IoUtils.safeClose(c);
+                    }
+                } catch (IOException e) {
+                    problems.add(e);
+                    IoUtils.safeClose(c);
+                }
+            });
+            sink.resumeWrites();
+        })) {
+            assertEquals(Boolean.TRUE, server.getServer().getOption(Options.WRITE_COALESCING));
+            server.resumeAccepts();
+            final Socket socket = server.connect();
+            socket.setSoTimeout(10000);
+            final InputStream in = socket.getInputStream();
+            final ByteArrayOutputStream received = new ByteArrayOutputStream();
+            final byte[] bytes = new byte[8192];
+            int res;
+            while ((res = in.read(bytes)) != -1) {
+                received.write(bytes, 0, res);
+            }
+            final ByteBuffer buffer = ByteBuffer.wrap(received.toByteArray());
+            assertEquals(SMALL_WRITES * 4 + LARGE_WRITE, buffer.remaining());
+            for (int i = 0; i < SMALL_WRITES; i ++) {
+                assertEquals(i, buffer.getInt());
+            }
+            final byte[] large = new byte[LARGE_WRITE];
+            buffer.get(large);
+            assertArrayEquals(pattern(), large);
+            assertNull(problems.poll());
+        }
+    }
+
+    @Test
+    public void coalescedWritesSentOnceWritable() throws Exception {
+        final BlockingQueue<Long> written = new LinkedBlockingQueue<Long>();
+        try (LoopbackServer server = new LoopbackServer(ONE_THREAD, OptionMap.create(Options.WRITE_COALESCING, true, Options.SEND_BUFFER, 8192), connection -> {
+            final ConduitStreamSinkChannel sink = connection.getSinkChannel();
+            // fill the socket, then gather a little more which cannot be sent at the end of the loop
+            final ByteBuffer large = ByteBuffer.wrap(pattern());
+            long total = 0L;
+            int res;
+            while ((res = sink.write(large)) > 0) {
+                total += res;
+            }
+            final ByteBuffer small = ByteBuffer.allocate(4);
+            small.putInt(-1).flip();
+            total += sink.write(small);
+            written.add(Long.valueOf(total));
+            // no write listener and no flush; the gathered data must still be sent
+        })) {
+            server.resumeAccepts();
+            final Socket socket = new Socket();
+            socket.setReceiveBufferSize(8192);
+            server.connect(socket);
+            socket.setSoTimeout(10000);
+            final Long total = written.poll(10L, TimeUnit.SECONDS);
+            assertTrue(total != null && total.longValue() > 4L && total.longValue() < LARGE_WRITE);
+            final InputStream in = socket.getInputStream();
+            final byte[] bytes = new byte[(int) total.longValue()];
+            int offs = 0;
+            while (offs < bytes.length) {
+                final int res = in.read(bytes, offs, bytes.length - offs);
+                assertTrue(res > 0);
+                offs += res;
+            }
+            final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            final byte[] expected = pattern();
+            for (int i = 0; i < bytes.length - 4; i ++) {
+                assertEquals(expected[i], buffer.get());
+            }
+            assertEquals(-1, buffer.getInt());
+        }
+    }
+
+    @Test
+    public void flushQueuesAnotherWriter() throws Exception {
+        final BlockingQueue<Throwable> problems = new LinkedBlockingQueue<Throwable>();
+        try (LoopbackServer server = new LoopbackServer(ONE_THREAD, OptionMap.create(Options.WRITE_COALESCING, true))) {
+            server.resumeAccepts();
+            final Socket first = server.connect();
+            final StreamConnection a = server.accept();
+            final Socket second = server.connect();
+            final StreamConnection b = server.accept();
+            // reset the first connection, so that sending what it gathers fails and closes it
+            first.setSoLinger(true, 0);
+            first.close();
+            Thread.sleep(200L);
+            server.getWorker().getIoThread(0).execute(() -> {
+                try {
+                    // the first connection is closed while the gathered writes are flushed, and writes to the second
+                    a.setCloseListener(c -> {
+                        try {
+                            final ByteBuffer buffer = ByteBuffer.allocate(4);
+                            buffer.putInt(42).flip();
+                            b.getSinkChannel().write(buffer);
+                        } catch (IOException e) {
+                            problems.add(e);
+                        }
+                    });
+                    final ByteBuffer buffer = ByteBuffer.allocate(4);
+                    buffer.putInt(7).flip();
+                    a.getSinkChannel().write(buffer);
+                } catch (IOException e) {
+                    problems.add(e);
+                }
+            });
+            second.setSoTimeout(10000);
+            assertEquals(42, new DataInputStream(second.getInputStream()).readInt());
+            assertNull(problems.poll());
+        }
+    }
+
+    private static byte[] pattern() {
+        final byte[] bytes = new byte[LARGE_WRITE];
+        for (int i = 0; i < bytes.length; i ++) {
+            bytes[i] = (byte) (i * 31);
+        }
+        return bytes;
+    }
+}